@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.plugin.json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Jackson plugin with cached readers and writers, with and without Blackbird, against the generic
+ * {@link ObjectMapper} calls it used to make.
+ *
+ * @author esotericman
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonPluginBenchmark {
+  @Param({"generic", "cached", "accelerated"})
+  private String mode;
+
+  private JsonPlugin plugin;
+  private Order order;
+  private Type orderListType;
+  private String orderJson;
+  private byte[] orderListJson;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+
+  @Setup
+  public void setup() throws Exception {
+    switch (mode) {
+      case "generic":
+        plugin = new GenericJacksonPlugin();
+        break;
+      case "cached":
+        plugin = new JacksonPlugin(JsonStringPolicy.DETECT, false);
+        break;
+      default:
+        plugin = new JacksonPlugin(JsonStringPolicy.DETECT, true);
+    }
+    plugin.prepare(Collections.singletonList(Order.class));
+    order = Order.sample();
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      orders.add(Order.sample());
+    }
+    orderListType = JacksonPluginBenchmark.class.getDeclaredField("orders").getGenericType();
+    orderJson = plugin.toJson(order);
+    orderListJson = plugin.toJson(orders).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public String toJson() {
+    return plugin.toJson(order);
+  }
+
+  @Benchmark
+  public int writeJson() {
+    out.reset();
+    plugin.writeJson(order, out);
+    return out.size();
+  }
+
+  @Benchmark
+  public Order toObject() {
+    return plugin.toObject(orderJson, Order.class);
+  }
+
+  @Benchmark
+  public List<Order> toObjectOfType() {
+    return plugin.toObject(new ByteArrayInputStream(orderListJson), orderListType);
+  }
+
+  @SuppressWarnings("unused")
+  private List<Order> orders;
+
+  /** Calls of {@link JacksonPlugin} before readers and writers were cached. */
+  private static final class GenericJacksonPlugin implements JsonPlugin {
+    private final ObjectMapper objectMapper =
+        new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .configure(DeserializationFeature.FAIL_ON_TRAILING_TOKENS, true);
+
+    @Override
+    public <I> String toJson(I data) {
+      try {
+        return objectMapper.writeValueAsString(data);
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public <I> void writeJson(I data, OutputStream out) {
+      try {
+        objectMapper
+            .writer()
+            .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+            .writeValue(out, data);
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public <O> O toObject(String json, Class<O> clazz) {
+      try {
+        return objectMapper.readValue(json, clazz);
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public <I, O> O toObject(I data, Type type) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public <O> O toObject(InputStream json, Type type) {
+      try {
+        return objectMapper.readValue(json, objectMapper.constructType(type));
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  public static class Order {
+    public long id;
+    public String customer;
+    public double amount;
+    public boolean paid;
+    public List<String> items;
+
+    static Order sample() {
+      Order order = new Order();
+      order.id = 20231016L;
+      order.customer = "windward";
+      order.amount = 99.5;
+      order.paid = true;
+      order.items = new ArrayList<>();
+      order.items.add("netty");
+      order.items.add("jackson");
+      return order;
+    }
+  }
+}
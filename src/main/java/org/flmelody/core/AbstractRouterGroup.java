@@ -16,25 +16,15 @@
 
 package org.flmelody.core;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.StringTokenizer;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import org.flmelody.core.context.EnhancedWindwardContext;
 import org.flmelody.core.context.ResourceWindwardContext;
 import org.flmelody.core.context.SimpleWindwardContext;
 import org.flmelody.core.context.WindwardContext;
 import org.flmelody.core.context.support.HttpKind;
-import org.flmelody.core.exception.RouterMappingException;
 import org.flmelody.core.exception.WindwardException;
 import org.flmelody.core.plugin.resource.ResourcePluginProxy;
 import org.flmelody.core.sse.SseEjector;
@@ -42,9 +32,9 @@ import org.flmelody.core.sse.SseWindwardContext;
 import org.flmelody.core.wind.event.RouterBindEvent;
 import org.flmelody.core.ws.WebSocketWindwardContext;
 import org.flmelody.core.ws.authentication.AuthorizationProvider;
+import org.flmelody.support.AimdLimiter;
 import org.flmelody.support.EnhancedFunction;
 import org.flmelody.support.FunctionDefinition;
-import org.flmelody.util.AntPathMatcher;
 import org.flmelody.util.UrlUtil;
 
 /**
@@ -53,11 +43,10 @@ import org.flmelody.util.UrlUtil;
 public abstract class AbstractRouterGroup<M> implements RouterGroup<M> {
   private final M manager;
   private String groupPath;
-  private final Map<String, Map<String, ? super Object>> routers =
-      Collections.synchronizedMap(new LinkedHashMap<>(2 << 3));
-  private final AntPathMatcher antPathMatcher = AntPathMatcher.newBuild().build();
-  private final Map<String, Boolean> matchedRouter = new ConcurrentHashMap<>();
+  private final RouterTree routerTree = new RouterTree();
   protected boolean resourceRouter;
+  // Options of routers registered from now on
+  private final RouteOptions.RouteOptionsBuilder routeOptions = RouteOptions.newBuilder();
 
   protected AbstractRouterGroup(M manager) {
     this(manager, "/");
@@ -192,6 +181,39 @@ public abstract class AbstractRouterGroup<M> implements RouterGroup<M> {
     return this;
   }
 
+  @Override
+  public RouterGroup<M> executeOn(ExecutionMode executionMode) {
+    if (executionMode == ExecutionMode.EXECUTOR) {
+      throw new WindwardException("Executor is required, use executeOn(Executor) instead!");
+    }
+    routeOptions.executeOn(Objects.requireNonNull(executionMode), null);
+    return this;
+  }
+
+  @Override
+  public RouterGroup<M> executeOn(Executor executor) {
+    routeOptions.executeOn(ExecutionMode.EXECUTOR, Objects.requireNonNull(executor));
+    return this;
+  }
+
+  @Override
+  public RouterGroup<M> streamBody(boolean streamBody) {
+    routeOptions.streamBody(streamBody);
+    return this;
+  }
+
+  @Override
+  public RouterGroup<M> concurrencyLimit(AimdLimiter limiter) {
+    routeOptions.limiter(limiter);
+    return this;
+  }
+
+  @Override
+  public RouterGroup<M> limitExempt(boolean limitExempt) {
+    routeOptions.limitExempt(limitExempt);
+    return this;
+  }
+
   @Override
   public <R> RouterGroup<M> http(HttpMethod httpMethod, String relativePath, Supplier<R> supplier) {
     registerRouter(relativePath, httpMethod.name(), supplier, SimpleWindwardContext.class);
@@ -217,66 +239,25 @@ public abstract class AbstractRouterGroup<M> implements RouterGroup<M> {
     if (!relativePath.startsWith(groupPath)) {
       return null;
     }
-    if (relativePath.endsWith(UrlUtil.SLASH) && !UrlUtil.SLASH.equals(relativePath)) {
-      relativePath = relativePath.replaceFirst("/$", "");
-    }
-    relativePath = relativePath.replaceAll("[{}]", "");
-    if (!routers.containsKey(relativePath)) {
-      Set<String> routerKeys = routers.keySet();
-      for (String routerKey : routerKeys) {
-        Pattern compiledPattern = Pattern.compile("\\{(.*?)}");
-        Matcher compiledMatcher = compiledPattern.matcher(routerKey);
-        if (!compiledMatcher.find()) {
-          // If it's a GET request, try to match it again using Ant-style path patterns
-          if (HttpMethod.GET.name().equalsIgnoreCase(method) && resourceRouter) {
-            Boolean result = matchedRouter.get(relativePath);
-            if (Boolean.TRUE.equals(result)) {
-              //noinspection unchecked
-              return (R) routers.get(routerKey).get(method);
-            } else {
-              boolean matched = antPathMatcher.isMatch(routerKey, relativePath);
-              matchedRouter.put(relativePath, matched);
-              if (matched) {
-                //noinspection unchecked
-                return (R) routers.get(routerKey).get(method);
-              }
-              continue;
-            }
-          } else {
-            continue;
-          }
-        }
-        String routerRegex = routerKey.replaceAll("\\{(.*?)}", "(.+)");
-        if (relativePath.matches(routerRegex)) {
-          // Expected router
-          int pathCount = new StringTokenizer(relativePath, UrlUtil.SLASH).countTokens();
-          int routerCount = new StringTokenizer(routerRegex, UrlUtil.SLASH).countTokens();
-          if (pathCount != routerCount) {
-            return null;
-          }
-          FunctionMetaInfo<?> functionMetaInfo =
-              (FunctionMetaInfo<?>) routers.get(routerKey).get(method);
-          if (functionMetaInfo == null) {
-            return null;
-          }
-          Map<String, Object> pathVariables = functionMetaInfo.getPathVariables();
-          List<String> keys = new ArrayList<>(pathVariables.keySet());
-          Pattern pattern = Pattern.compile(routerRegex);
-          Matcher matcher = pattern.matcher(relativePath);
-          int groupCount = matcher.groupCount();
-          while (matcher.find()) {
-            for (int j = 0; j < Math.min(groupCount, keys.size()); j++) {
-              pathVariables.put(keys.get(j), matcher.group(j + 1));
-            }
-          }
-          //noinspection unchecked
-          return (R) functionMetaInfo;
-        }
-      }
+    relativePath = RouterTree.normalize(relativePath);
+    // If it's a GET request, try to match it using Ant-style path patterns as well
+    boolean patternMatching = HttpMethod.GET.name().equalsIgnoreCase(method) && resourceRouter;
+    int[] captures = routerTree.newCaptures();
+    RouterTree.Route route = routerTree.match(relativePath, method, patternMatching, captures);
+    if (route == null) {
       return null;
     }
     //noinspection unchecked
-    return (R) routers.get(relativePath).get(method);
+    return (R) route.toMatch(relativePath, relativePath.length(), captures);
+  }
+
+  /**
+   * Registered routers of this group.
+   *
+   * @return router tree
+   */
+  RouterTree routerTree() {
+    return routerTree;
   }
 
   private <I> void registerRouter(
@@ -286,16 +267,9 @@ public abstract class AbstractRouterGroup<M> implements RouterGroup<M> {
       Class<? extends WindwardContext> clazz,
       Object... args) {
     String path = UrlUtil.buildUrl(groupPath, relativePath);
-    Map<String, Object> pathVariables = checkPlaceholder(path);
     FunctionMetaInfo<I> functionMetaInfo =
-        new FunctionMetaInfo<>(path, i, clazz, pathVariables, args);
-    if (routers.containsKey(path)) {
-      routers.get(path).put(method, functionMetaInfo);
-    } else {
-      Map<String, Object> routerMap = new HashMap<>(2 << 3);
-      routerMap.put(method, functionMetaInfo);
-      routers.put(path, routerMap);
-    }
+        new FunctionMetaInfo<>(path, i, clazz, routeOptions.build(), args);
+    routerTree.insert(path, method, functionMetaInfo);
     if (this.manager instanceof Windward) {
       FunctionDefinition functionDefinition = functionMetaInfo.getFunctionDefinition();
       if (functionDefinition.equals(FunctionDefinition.empty())) {
@@ -310,18 +284,4 @@ public abstract class AbstractRouterGroup<M> implements RouterGroup<M> {
                   .build());
     }
   }
-
-  private Map<String, Object> checkPlaceholder(String path) {
-    Map<String, Object> pathVariables = new LinkedHashMap<>(2 << 3);
-    Pattern pattern = Pattern.compile("(\\{(.*?)})");
-    Matcher matcher = pattern.matcher(path);
-    while (matcher.find()) {
-      String variable = matcher.group(2);
-      if (variable.trim().isEmpty()) {
-        throw new RouterMappingException("Path variable name is empty!");
-      }
-      pathVariables.put(variable, null);
-    }
-    return pathVariables;
-  }
 }
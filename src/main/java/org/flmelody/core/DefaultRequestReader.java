@@ -16,6 +16,7 @@
 
 package org.flmelody.core;
 
+import java.io.InputStream;
 import java.lang.reflect.Type;
 import org.flmelody.core.exception.ValidationException;
 import org.flmelody.core.plugin.json.JsonPlugin;
@@ -57,4 +58,36 @@ public class DefaultRequestReader implements RequestReader {
     }
     return ValidationUtil.validate(Windward.plugin(JsonPlugin.class), body, type, groups);
   }
+
+  @Override
+  public <I> I readJson(InputStream body, Class<I> clazz) {
+    if (body == null) {
+      return readJson((String) null, clazz);
+    }
+    return Windward.plugin(JsonPlugin.class).toObject(body, clazz);
+  }
+
+  @Override
+  public <I> I readJson(InputStream body, Type type) {
+    if (body == null) {
+      return readJson((String) null, type);
+    }
+    return Windward.plugin(JsonPlugin.class).toObject(body, type);
+  }
+
+  @Override
+  public <I> I bindJson(InputStream body, Class<I> clazz, Class<?>... groups) {
+    if (body == null) {
+      throw new ValidationException("Body is empty");
+    }
+    return ValidationUtil.validate(Windward.plugin(JsonPlugin.class), body, clazz, groups);
+  }
+
+  @Override
+  public <I> I bindJson(InputStream body, Type type, Class<?>... groups) {
+    if (body == null) {
+      throw new ValidationException("Body is empty");
+    }
+    return ValidationUtil.validate(Windward.plugin(JsonPlugin.class), body, type, groups);
+  }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+/**
+ * Where handlers of routers run. Responses are always written on event loop of the channel.
+ *
+ * @author esotericman
+ */
+public enum ExecutionMode {
+  /** Run on event loop that received the request, only for handlers that never block. */
+  EVENT_LOOP,
+  /** Run on bounded worker pool of Windward, requests are rejected with 503 when it's full. */
+  WORKER_POOL,
+  /** Run on executor given when routers are registered. */
+  EXECUTOR,
+  /**
+   * Run on a new virtual thread per request when running on Java 21 or later, falls back to
+   * {@link #WORKER_POOL} otherwise.
+   */
+  VIRTUAL_THREAD
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded body of {@code application/x-www-form-urlencoded} or {@code multipart/form-data}
+ * request. Files are only valid until response is written.
+ *
+ * @author esotericman
+ */
+public interface FormData {
+  /**
+   * First value of attribute
+   *
+   * @param name attributes name
+   * @return value or null
+   */
+  String getAttribute(String name);
+
+  /**
+   * All values of attribute
+   *
+   * @param name attributes name
+   * @return values or empty
+   */
+  List<String> getAttributes(String name);
+
+  /**
+   * All attributes in order of appearance
+   *
+   * @return attributes
+   */
+  Map<String, List<String>> getAttributes();
+
+  /**
+   * First file uploaded with name
+   *
+   * @param name parts name
+   * @return file or null
+   */
+  FormFile getFile(String name);
+
+  /**
+   * All files uploaded with name
+   *
+   * @param name parts name
+   * @return files or empty
+   */
+  List<FormFile> getFiles(String name);
+
+  /**
+   * All uploaded files in order of appearance
+   *
+   * @return files
+   */
+  Map<String, List<FormFile>> getFiles();
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * File part of multipart request. Small files are kept in memory, larger ones are spilled to a
+ * temporary file that is deleted once response is written.
+ *
+ * @author esotericman
+ */
+public interface FormFile {
+  /**
+   * Name of part
+   *
+   * @return parts name
+   */
+  String getName();
+
+  /**
+   * File name given by client
+   *
+   * @return file name
+   */
+  String getFilename();
+
+  /**
+   * Content type given by client
+   *
+   * @return content type
+   */
+  String getContentType();
+
+  /**
+   * Size of file
+   *
+   * @return size in bytes
+   */
+  long length();
+
+  /**
+   * Whether content is kept in memory
+   *
+   * @return true if it's not spilled to disk
+   */
+  boolean isInMemory();
+
+  /**
+   * Content of file as a stream
+   *
+   * @return stream, should be closed by caller
+   * @throws IOException if file can't be read
+   */
+  InputStream getInputStream() throws IOException;
+
+  /**
+   * Content of file as a read only channel. Content kept in memory is written to a temporary file
+   * first, which is deleted when channel is closed.
+   *
+   * @return channel, should be closed by caller
+   * @throws IOException if file can't be read
+   */
+  FileChannel getFileChannel() throws IOException;
+
+  /**
+   * Move content to destination, spilled file is renamed rather than copied when possible.
+   *
+   * @param dest destination
+   * @throws IOException if content can't be moved
+   */
+  void transferTo(File dest) throws IOException;
+}
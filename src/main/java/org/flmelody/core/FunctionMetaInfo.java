@@ -19,9 +19,10 @@ package org.flmelody.core;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Executor;
 import org.flmelody.core.context.WindwardContext;
 import org.flmelody.core.exception.WindwardException;
+import org.flmelody.support.AimdLimiter;
 import org.flmelody.support.EnhancedFunction;
 import org.flmelody.support.FunctionDefinition;
 import org.flmelody.support.FunctionHelper;
@@ -35,20 +36,37 @@ public class FunctionMetaInfo<I> {
   private final Class<? extends WindwardContext> context;
   private final Class<? extends WindwardContext> parameterType;
   private final Class<?> resultType;
-  private final Map<String, Object> pathVariables;
   private final FunctionDefinition functionDefinition;
   private final List<?> args;
+  private final RouteOptions routeOptions;
 
   public FunctionMetaInfo(
       String path,
       I function,
       Class<? extends WindwardContext> context,
-      Map<String, Object> pathVariables,
+      Object... args) {
+    this(path, function, context, RouteOptions.DEFAULT, args);
+  }
+
+  /**
+   * Router with options given to its group.
+   *
+   * @param path full path of router
+   * @param function handler of router
+   * @param context type of context handler takes
+   * @param routeOptions options of router
+   * @param args extra arguments of context
+   */
+  public FunctionMetaInfo(
+      String path,
+      I function,
+      Class<? extends WindwardContext> context,
+      RouteOptions routeOptions,
       Object... args) {
     this.path = path;
     this.function = function;
     this.context = context;
-    this.pathVariables = pathVariables;
+    this.routeOptions = routeOptions;
     // Only for EnhancedFunction
     if (function instanceof EnhancedFunction) {
       EnhancedFunction<?, ?> enhancedFunction = (EnhancedFunction<?, ?>) function;
@@ -98,10 +116,6 @@ public class FunctionMetaInfo<I> {
     return resultType;
   }
 
-  public Map<String, Object> getPathVariables() {
-    return pathVariables;
-  }
-
   public FunctionDefinition getFunctionDefinition() {
     return functionDefinition;
   }
@@ -109,4 +123,48 @@ public class FunctionMetaInfo<I> {
   public List<?> getArgs() {
     return args;
   }
+
+  public RouteOptions getRouteOptions() {
+    return routeOptions;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return routeOptions.getExecutionMode();
+  }
+
+  /**
+   * Executor given at registration.
+   *
+   * @return executor, or null unless execution mode is {@link ExecutionMode#EXECUTOR}
+   */
+  public Executor getExecutor() {
+    return routeOptions.getExecutor();
+  }
+
+  /**
+   * Whether request body is delivered as a stream instead of being aggregated.
+   *
+   * @return stream body flag
+   */
+  public boolean isStreamBody() {
+    return routeOptions.isStreamBody();
+  }
+
+  /**
+   * Concurrency limit of this router.
+   *
+   * @return limiter, or null if router is not limited on its own
+   */
+  public AimdLimiter getLimiter() {
+    return routeOptions.getLimiter();
+  }
+
+  /**
+   * Whether requests of this router bypass concurrency limit of server.
+   *
+   * @return limit exempt flag
+   */
+  public boolean isLimitExempt() {
+    return routeOptions.isLimitExempt();
+  }
 }
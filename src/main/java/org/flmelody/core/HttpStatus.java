@@ -27,6 +27,7 @@ public enum HttpStatus {
   UNAUTHORIZED(401, "Unauthorized"),
   FORBIDDEN(403, "Forbidden"),
   NOT_FOUND(404, "Not Found"),
+  TOO_MANY_REQUESTS(429, "Too Many Requests"),
   INTERNAL_SERVER_ERROR(500, "Internal Server Error"),
   BAD_GATEWAY(502, "Bad Gateway"),
   SERVICE_UNAVAILABLE(503, "Service Unavailable"),
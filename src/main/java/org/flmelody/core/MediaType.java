@@ -23,6 +23,8 @@ public enum MediaType {
   WEB_SOCKET_BINARY("websocket", "binary", "websocket/binary;"),
   TEXT_EVENT_STREAM_VALUE("text", "event-stream", "text/event-stream"),
   MULTIPART_FORM_DATA_VALUE("multipart", "form-data", "multipart/form-data"),
+  APPLICATION_FORM_URLENCODED_VALUE(
+      "application", "x-www-form-urlencoded", "application/x-www-form-urlencoded"),
   APPLICATION_JSON_VALUE("application", "json", "application/json;charset=UTF-8"),
   APPLICATION_STREAM_VALUE("application", "octet-stream", "application/octet-stream;charset=UTF-8"),
 
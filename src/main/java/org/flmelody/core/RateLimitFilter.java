@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.flmelody.core.context.WindwardContext;
+import org.flmelody.support.RateLimiter;
+
+/**
+ * Filter that rejects requests above rate limit with 429, before their handlers run. Requests are
+ * limited per client, and per route pattern as well unless it's turned off.
+ *
+ * @author esotericman
+ */
+public class RateLimitFilter implements Filter {
+  private final RateLimiter rateLimiter;
+  private final Function<WindwardContext, String> clientKey;
+  private final boolean perRoute;
+
+  private RateLimitFilter(RateLimitFilterBuilder builder) {
+    this.rateLimiter = Objects.requireNonNull(builder.rateLimiter, "Rate limit is required!");
+    this.clientKey = builder.clientKey;
+    this.perRoute = builder.perRoute;
+  }
+
+  public static RateLimitFilterBuilder newBuilder() {
+    return new RateLimitFilterBuilder();
+  }
+
+  @Override
+  public void filter(WindwardContext windwardContext) {
+    String client = clientKey.apply(windwardContext);
+    if (client == null) {
+      return;
+    }
+    String key = client;
+    if (perRoute) {
+      String routePath = windwardContext.windwardRequest().getRoutePath();
+      key = (routePath == null ? "" : routePath) + ' ' + client;
+    }
+    if (!rateLimiter.tryAcquire(key)) {
+      windwardContext.writeString(
+          HttpStatus.TOO_MANY_REQUESTS.value(), HttpStatus.TOO_MANY_REQUESTS.reasonPhrase());
+      windwardContext.close();
+    }
+  }
+
+  /**
+   * Limiter of this filter, its counters tell how often clients are throttled.
+   *
+   * @return rate limiter
+   */
+  public RateLimiter getRateLimiter() {
+    return rateLimiter;
+  }
+
+  /**
+   * Client is identified by its ip address.
+   *
+   * @return key extractor
+   */
+  public static Function<WindwardContext, String> clientAddress() {
+    return RateLimitFilter::addressOf;
+  }
+
+  /**
+   * Client is identified by first value of header, such as an api key, or by its ip address if
+   * header is missing.
+   *
+   * @param name headers name
+   * @return key extractor
+   */
+  public static Function<WindwardContext, String> header(String name) {
+    return windwardContext -> {
+      List<String> values = windwardContext.windwardRequest().getHeader(name);
+      return values.isEmpty() ? addressOf(windwardContext) : values.get(0);
+    };
+  }
+
+  private static String addressOf(WindwardContext windwardContext) {
+    SocketAddress remoteAddress = windwardContext.windwardRequest().getRemoteAddress();
+    if (remoteAddress instanceof InetSocketAddress) {
+      InetSocketAddress inetSocketAddress = (InetSocketAddress) remoteAddress;
+      return inetSocketAddress.getAddress() == null
+          ? inetSocketAddress.getHostString()
+          : inetSocketAddress.getAddress().getHostAddress();
+    }
+    return String.valueOf(remoteAddress);
+  }
+
+  /** Builder for RateLimitFilter */
+  public static final class RateLimitFilterBuilder {
+    private static final long DEFAULT_EVICT_AFTER_MINUTES = 1;
+    private RateLimiter rateLimiter;
+    private Function<WindwardContext, String> clientKey = RateLimitFilter::addressOf;
+    private boolean perRoute = true;
+
+    private RateLimitFilterBuilder() {}
+
+    /**
+     * Token bucket per key, idle buckets are evicted after a minute.
+     *
+     * @param capacity maximum burst
+     * @param permitsPerSecond rate of refilling
+     * @return builder
+     */
+    public RateLimitFilterBuilder tokenBucket(int capacity, double permitsPerSecond) {
+      this.rateLimiter =
+          RateLimiter.tokenBucket(
+              capacity, permitsPerSecond, DEFAULT_EVICT_AFTER_MINUTES, TimeUnit.MINUTES);
+      return this;
+    }
+
+    /**
+     * Sliding window per key.
+     *
+     * @param limit requests allowed in a window
+     * @param window length of window
+     * @param unit unit of time
+     * @return builder
+     */
+    public RateLimitFilterBuilder slidingWindow(int limit, long window, TimeUnit unit) {
+      this.rateLimiter = RateLimiter.slidingWindow(limit, window, unit);
+      return this;
+    }
+
+    public RateLimitFilterBuilder rateLimiter(RateLimiter rateLimiter) {
+      this.rateLimiter = rateLimiter;
+      return this;
+    }
+
+    /**
+     * How client is identified, requests whose key is null are not limited.
+     *
+     * @param clientKey key extractor
+     * @return builder
+     */
+    public RateLimitFilterBuilder clientKey(Function<WindwardContext, String> clientKey) {
+      this.clientKey = Objects.requireNonNull(clientKey);
+      return this;
+    }
+
+    /**
+     * Whether each route pattern has its own limit, otherwise a client shares one limit across
+     * routes.
+     *
+     * @param perRoute whether to limit per route
+     * @return builder
+     */
+    public RateLimitFilterBuilder perRoute(boolean perRoute) {
+      this.perRoute = perRoute;
+      return this;
+    }
+
+    public RateLimitFilter build() {
+      return new RateLimitFilter(this);
+    }
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Aggregated body of a request, read without being copied. It's valid while request is being
+ * handled, read it before handing request over to another thread.
+ *
+ * @author esotericman
+ */
+public interface RequestContent {
+
+  /**
+   * Length of content.
+   *
+   * @return length in bytes
+   */
+  int length();
+
+  /**
+   * Copy of content.
+   *
+   * @return bytes of content
+   */
+  byte[] toByteArray();
+
+  /**
+   * Read-only view of content, which stays valid after request is handled.
+   *
+   * @return byte buffer
+   */
+  ByteBuffer asByteBuffer();
+
+  /**
+   * New stream over content.
+   *
+   * @return input stream
+   */
+  InputStream asInputStream();
+
+  /**
+   * Decode content.
+   *
+   * @param charset charset of content
+   * @return decoded string
+   */
+  String toString(Charset charset);
+}
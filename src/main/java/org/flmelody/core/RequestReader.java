@@ -16,6 +16,7 @@
 
 package org.flmelody.core;
 
+import java.io.InputStream;
 import java.lang.reflect.Type;
 
 /**
@@ -63,4 +64,46 @@ public interface RequestReader {
    * @return object
    */
   <I> I bindJson(String body, Type type, Class<?>... groups);
+
+  /**
+   * Read request body into new object possibly, without decoding it into string first
+   *
+   * @param body json stream
+   * @param clazz objects class
+   * @param <I> objects type
+   * @return object
+   */
+  <I> I readJson(InputStream body, Class<I> clazz);
+
+  /**
+   * Read request body into new object possibly, without decoding it into string first
+   *
+   * @param body json stream
+   * @param type objects type
+   * @param <I> objects type
+   * @return object
+   */
+  <I> I readJson(InputStream body, Type type);
+
+  /**
+   * Bind request body to specific class, without decoding it into string first
+   *
+   * @param body json stream
+   * @param clazz objects class
+   * @param groups validate group
+   * @param <I> objects type
+   * @return object
+   */
+  <I> I bindJson(InputStream body, Class<I> clazz, Class<?>... groups);
+
+  /**
+   * Bind request body to specific type, without decoding it into string first
+   *
+   * @param body json stream
+   * @param type objects type
+   * @param groups validate group
+   * @param <I> objects type
+   * @return object
+   */
+  <I> I bindJson(InputStream body, Type type, Class<?>... groups);
 }
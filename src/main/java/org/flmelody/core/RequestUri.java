@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+/**
+ * Request target scanned once. It knows where the path ends and the query starts, and which part
+ * of the path should be routed, so nothing is split or copied before routing.
+ *
+ * @author esotericman
+ */
+public final class RequestUri {
+  private static final char SLASH = '/';
+  private final String uri;
+  // Index of '?' or '#', or length of uri
+  private final int pathEnd;
+  // Path used for routing, which is uri itself unless path contains braces
+  private final String routePath;
+  // Routed part of routePath, trailing slash excluded
+  private final int routeEnd;
+  private String path;
+
+  private RequestUri(String uri, int pathEnd, String routePath, int routeEnd) {
+    this.uri = uri;
+    this.pathEnd = pathEnd;
+    this.routePath = routePath;
+    this.routeEnd = routeEnd;
+  }
+
+  /**
+   * Scan request target in a single pass.
+   *
+   * @param uri request target of request line, absolute-form targets are routed by their path
+   * @return scanned uri, or null if it's neither an origin-form nor an absolute-form target, or it
+   *     contains control characters
+   */
+  public static RequestUri parse(String uri) {
+    if (uri.isEmpty()) {
+      return null;
+    }
+    if (uri.charAt(0) != SLASH) {
+      uri = stripSchemeAndAuthority(uri);
+      if (uri == null) {
+        return null;
+      }
+    }
+    int length = uri.length();
+    int pathEnd = length;
+    boolean braces = false;
+    for (int i = 1; i < length; i++) {
+      char c = uri.charAt(i);
+      if (c == '?' || c == '#') {
+        pathEnd = i;
+        break;
+      }
+      if (c <= ' ' || c == 0x7f) {
+        return null;
+      } else if (c == '{' || c == '}') {
+        braces = true;
+      }
+    }
+    // Characters of query are checked as well, they end up in request line
+    for (int i = pathEnd + 1; i < length; i++) {
+      char c = uri.charAt(i);
+      if (c <= ' ' || c == 0x7f) {
+        return null;
+      }
+    }
+    int routeEnd = pathEnd;
+    if (routeEnd > 1 && uri.charAt(routeEnd - 1) == SLASH) {
+      routeEnd--;
+    }
+    if (!braces) {
+      return new RequestUri(uri, pathEnd, uri, routeEnd);
+    }
+    // Rare, braces are not allowed by rfc3986, drop them as we always did
+    StringBuilder stringBuilder = new StringBuilder(routeEnd);
+    for (int i = 0; i < routeEnd; i++) {
+      char c = uri.charAt(i);
+      if (c != '{' && c != '}') {
+        stringBuilder.append(c);
+      }
+    }
+    String routePath = stringBuilder.toString();
+    return new RequestUri(uri, pathEnd, routePath, routePath.length());
+  }
+
+  // Origin-form of absolute-form target, "http://host:port/path?query" becomes "/path?query"
+  private static String stripSchemeAndAuthority(String uri) {
+    int length = uri.length();
+    int colon = 0;
+    while (colon < length && isSchemeChar(uri.charAt(colon), colon == 0)) {
+      colon++;
+    }
+    if (colon == 0 || !uri.startsWith("://", colon)) {
+      return null;
+    }
+    int authorityStart = colon + 3;
+    int authorityEnd = authorityStart;
+    while (authorityEnd < length) {
+      char c = uri.charAt(authorityEnd);
+      if (c == SLASH || c == '?' || c == '#') {
+        break;
+      }
+      if (c <= ' ' || c == 0x7f) {
+        return null;
+      }
+      authorityEnd++;
+    }
+    if (authorityEnd == authorityStart) {
+      return null;
+    }
+    if (authorityEnd == length) {
+      return "/";
+    }
+    String rest = uri.substring(authorityEnd);
+    // Path of absolute-form target may be empty, which is the root
+    return rest.charAt(0) == SLASH ? rest : SLASH + rest;
+  }
+
+  private static boolean isSchemeChar(char c, boolean first) {
+    if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+      return true;
+    }
+    return !first && ((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.');
+  }
+
+  /**
+   * Request target in origin-form, absolute-form targets have scheme and authority dropped.
+   *
+   * @return uri
+   */
+  public String getUri() {
+    return uri;
+  }
+
+  /**
+   * Path of request target, without query.
+   *
+   * @return path
+   */
+  public String getPath() {
+    if (path == null) {
+      path = pathEnd == uri.length() ? uri : uri.substring(0, pathEnd);
+    }
+    return path;
+  }
+
+  /**
+   * Whether request target has query.
+   *
+   * @return true if it has query
+   */
+  public boolean hasQuery() {
+    return pathEnd < uri.length() && uri.charAt(pathEnd) == '?';
+  }
+
+  /**
+   * String that contains path to route.
+   *
+   * @return route path, only the first {@link #routeEnd()} characters should be routed
+   */
+  String routePath() {
+    return routePath;
+  }
+
+  /**
+   * End index of path to route.
+   *
+   * @return end index
+   */
+  int routeEnd() {
+    return routeEnd;
+  }
+}
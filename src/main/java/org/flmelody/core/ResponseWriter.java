@@ -109,4 +109,9 @@ public interface ResponseWriter {
 
   /** Close connection */
   void close();
+
+  /** Finish current response, connection is closed unless it should be kept alive */
+  default void complete() {
+    close();
+  }
 }
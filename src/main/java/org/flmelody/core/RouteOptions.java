@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.util.concurrent.Executor;
+import org.flmelody.support.AimdLimiter;
+
+/**
+ * How requests of a router are handled: where it runs, whether its body is streamed and how it's
+ * limited.
+ *
+ * @author esotericman
+ */
+public final class RouteOptions {
+  /** Handled on event loop with aggregated body and only limit of server. */
+  public static final RouteOptions DEFAULT = newBuilder().build();
+
+  private final ExecutionMode executionMode;
+  private final Executor executor;
+  private final boolean streamBody;
+  private final AimdLimiter limiter;
+  private final boolean limitExempt;
+
+  private RouteOptions(RouteOptionsBuilder builder) {
+    this.executionMode = builder.executionMode;
+    this.executor = builder.executor;
+    this.streamBody = builder.streamBody;
+    this.limiter = builder.limiter;
+    this.limitExempt = builder.limitExempt;
+  }
+
+  public static RouteOptionsBuilder newBuilder() {
+    return new RouteOptionsBuilder();
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return executionMode;
+  }
+
+  /**
+   * Executor given at registration.
+   *
+   * @return executor, or null unless execution mode is {@link ExecutionMode#EXECUTOR}
+   */
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Whether request body is delivered as a stream instead of being aggregated.
+   *
+   * @return stream body flag
+   */
+  public boolean isStreamBody() {
+    return streamBody;
+  }
+
+  /**
+   * Concurrency limit of router.
+   *
+   * @return limiter, or null if router is not limited on its own
+   */
+  public AimdLimiter getLimiter() {
+    return limiter;
+  }
+
+  /**
+   * Whether requests of router bypass concurrency limit of server.
+   *
+   * @return limit exempt flag
+   */
+  public boolean isLimitExempt() {
+    return limitExempt;
+  }
+
+  /** Builder for RouteOptions */
+  public static final class RouteOptionsBuilder {
+    private ExecutionMode executionMode = ExecutionMode.EVENT_LOOP;
+    private Executor executor;
+    private boolean streamBody;
+    private AimdLimiter limiter;
+    private boolean limitExempt;
+
+    private RouteOptionsBuilder() {}
+
+    /**
+     * Run handler in given mode, executor is only kept for {@link ExecutionMode#EXECUTOR}.
+     *
+     * @param executionMode execution mode
+     * @param executor executor of mode {@link ExecutionMode#EXECUTOR}
+     * @return builder
+     */
+    public RouteOptionsBuilder executeOn(ExecutionMode executionMode, Executor executor) {
+      this.executionMode = executionMode;
+      this.executor = executionMode == ExecutionMode.EXECUTOR ? executor : null;
+      return this;
+    }
+
+    public RouteOptionsBuilder streamBody(boolean streamBody) {
+      this.streamBody = streamBody;
+      return this;
+    }
+
+    public RouteOptionsBuilder limiter(AimdLimiter limiter) {
+      this.limiter = limiter;
+      return this;
+    }
+
+    public RouteOptionsBuilder limitExempt(boolean limitExempt) {
+      this.limitExempt = limitExempt;
+      return this;
+    }
+
+    public RouteOptions build() {
+      return new RouteOptions(this);
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package org.flmelody.core;
 
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.flmelody.core.context.EnhancedWindwardContext;
@@ -25,6 +26,7 @@ import org.flmelody.core.sse.SseEjector;
 import org.flmelody.core.sse.SseWindwardContext;
 import org.flmelody.core.ws.WebSocketWindwardContext;
 import org.flmelody.core.ws.authentication.AuthorizationProvider;
+import org.flmelody.support.AimdLimiter;
 import org.flmelody.support.EnhancedFunction;
 
 /**
@@ -234,4 +236,48 @@ public interface Router<T> {
    * @return this
    */
   T resources(String staticResourceLocation, String... pathPatterns);
+
+  /**
+   * Run handlers of routers registered after this call in specific mode, event loop by default
+   *
+   * @param executionMode execution mode, use {@link #executeOn(Executor)} for a custom executor
+   * @return this
+   */
+  T executeOn(ExecutionMode executionMode);
+
+  /**
+   * Run handlers of routers registered after this call on specific executor
+   *
+   * @param executor executor
+   * @return this
+   */
+  T executeOn(Executor executor);
+
+  /**
+   * Deliver request bodies of routers registered after this call as a stream, read with {@link
+   * WindwardRequest#getBodyStream()}. Bodies are neither aggregated nor limited by maximum content
+   * length, handlers of these routers never run on event loop.
+   *
+   * @param streamBody whether to stream request body
+   * @return this
+   */
+  T streamBody(boolean streamBody);
+
+  /**
+   * Limit concurrency of routers registered after this call, requests above limit are rejected
+   * with 503 right away. Routers registered with the same limiter share it, null removes limit.
+   *
+   * @param limiter adaptive concurrency limit
+   * @return this
+   */
+  T concurrencyLimit(AimdLimiter limiter);
+
+  /**
+   * Let requests of routers registered after this call bypass concurrency limit of server, such as
+   * health checks and other priority routers. Their own limit still applies.
+   *
+   * @param limitExempt whether to bypass limit of server
+   * @return this
+   */
+  T limitExempt(boolean limitExempt);
 }
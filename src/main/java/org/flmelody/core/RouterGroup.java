@@ -25,7 +25,7 @@ public interface RouterGroup<M> extends Router<RouterGroup<M>> {
    *
    * @param relativePath relativePath
    * @param method method
-   * @return router function
+   * @return matched router of this request, or null
    * @param <R> router type
    */
   <R> R matchRouter(String relativePath, String method);
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Result of matching one request against registered routers. Path variables are kept as offsets
+ * into the request path, their values are only created when they are read.
+ *
+ * @author esotericman
+ */
+public final class RouterMatch<I> {
+  private final FunctionMetaInfo<I> functionMetaInfo;
+  // String that contains request path
+  private final String source;
+  private final int end;
+  private final String[] variables;
+  private final int[] captures;
+  private String path;
+  private Map<String, Object> pathVariables;
+
+  RouterMatch(
+      FunctionMetaInfo<I> functionMetaInfo,
+      String path,
+      int end,
+      String[] variables,
+      int[] captures) {
+    this.functionMetaInfo = functionMetaInfo;
+    this.source = path;
+    this.end = end;
+    this.variables = variables;
+    this.captures = captures;
+    this.path = end == path.length() ? path : null;
+  }
+
+  /**
+   * Matched function.
+   *
+   * @return function
+   */
+  public FunctionMetaInfo<I> getFunctionMetaInfo() {
+    return functionMetaInfo;
+  }
+
+  /**
+   * Request path that has been matched.
+   *
+   * @return request path
+   */
+  public String getPath() {
+    if (path == null) {
+      path = source.substring(0, end);
+    }
+    return path;
+  }
+
+  /**
+   * Read only view of path variables captured by this request.
+   *
+   * @return path variables
+   */
+  public Map<String, Object> getPathVariables() {
+    if (pathVariables == null) {
+      pathVariables = variables.length == 0 ? Collections.emptyMap() : new PathVariables();
+    }
+    return pathVariables;
+  }
+
+  private String value(int index) {
+    return source.substring(captures[index << 1], captures[(index << 1) + 1]);
+  }
+
+  private final class PathVariables extends AbstractMap<String, Object> {
+    private final Object[] values = new Object[variables.length];
+
+    @Override
+    public Object get(Object key) {
+      for (int i = 0; i < variables.length; i++) {
+        if (variables[i].equals(key)) {
+          return valueAt(i);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      for (String variable : variables) {
+        if (variable.equals(key)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public int size() {
+      return variables.length;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+      return new AbstractSet<Entry<String, Object>>() {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+          return new Iterator<Entry<String, Object>>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+              return index < variables.length;
+            }
+
+            @Override
+            public Entry<String, Object> next() {
+              if (!hasNext()) {
+                throw new NoSuchElementException();
+              }
+              int i = index++;
+              return new SimpleImmutableEntry<>(variables[i], valueAt(i));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return variables.length;
+        }
+      };
+    }
+
+    private Object valueAt(int index) {
+      Object value = values[index];
+      if (value == null) {
+        value = value(index);
+        values[index] = value;
+      }
+      return value;
+    }
+  }
+}
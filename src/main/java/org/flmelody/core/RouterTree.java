@@ -0,0 +1,617 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.flmelody.core.exception.RouterMappingException;
+import org.flmelody.support.TinyLfuCache;
+import org.flmelody.util.AntPathMatcher;
+
+/**
+ * Segment based tree of registered routers. Paths are split into segments once when they are
+ * registered, matching a request path is then a single walk over its segments without any regex.
+ *
+ * <p>Static segments take precedence over segments with path variables, which take precedence
+ * over Ant-style patterns.
+ *
+ * @author esotericman
+ */
+final class RouterTree {
+  private static final char SEPARATOR = '/';
+  private final Node root = new Node("");
+  private static final AntPathMatcher antPathMatcher = AntPathMatcher.newBuild().build();
+  private final List<Route> routes = new ArrayList<>();
+  private int maxVariables;
+  // Whether any router reads its request body as a stream
+  private boolean streamBody;
+  private volatile boolean frozen;
+  // Results of GET requests that needed Ant-style matching, only present when frozen
+  private TinyLfuCache<String, Resolved> patternCache;
+
+  /**
+   * Register function of path with specific method, an existed one will be overwritten.
+   *
+   * @param path full path of router
+   * @param method http methods name
+   * @param functionMetaInfo function
+   */
+  void insert(String path, String method, FunctionMetaInfo<?> functionMetaInfo) {
+    insert(path, method, functionMetaInfo, true, true);
+  }
+
+  /**
+   * Whether any router reads its request body as a stream.
+   *
+   * @return true if request bodies of some routers should not be aggregated
+   */
+  boolean hasStreamBody() {
+    return streamBody;
+  }
+
+  /**
+   * Copy routes of another tree into this one, routes that already registered are kept.
+   *
+   * @param routerTree another tree
+   * @param antMatching whether patterns of another tree are Ant-style patterns
+   */
+  void merge(RouterTree routerTree, boolean antMatching) {
+    for (Route route : routerTree.routes) {
+      insert(route.path, route.method, route.functionMetaInfo, antMatching, false);
+    }
+  }
+
+  /**
+   * Drop the trailing separator and braces of request path, so it can be matched against tree.
+   *
+   * @param path request path
+   * @return normalized path
+   */
+  static String normalize(String path) {
+    if (path.length() > 1 && path.charAt(path.length() - 1) == SEPARATOR) {
+      path = path.substring(0, path.length() - 1);
+    }
+    if (path.indexOf('{') < 0 && path.indexOf('}') < 0) {
+      return path;
+    }
+    return path.replaceAll("[{}]", "");
+  }
+
+  /** Make this tree read only, any registering after that is illegal. */
+  void freeze() {
+    freeze(0);
+  }
+
+  /**
+   * Make this tree read only, and remember results of Ant-style matching.
+   *
+   * @param patternCacheSize maximum size of cache, zero means no cache
+   */
+  void freeze(int patternCacheSize) {
+    if (patternCacheSize > 0) {
+      this.patternCache = new TinyLfuCache<>(patternCacheSize);
+    }
+    this.frozen = true;
+  }
+
+  /**
+   * Cache of Ant-style matching results.
+   *
+   * @return cache or null
+   */
+  TinyLfuCache<String, ?> patternCache() {
+    return patternCache;
+  }
+
+  /**
+   * Find out router of path, Ant-style patterns are only tried for GET requests. Results of such
+   * requests are cached if this tree has a pattern cache.
+   *
+   * @param path string that contains normalized request path
+   * @param end end index of request path in string
+   * @param method http methods name
+   * @param <I> function type
+   * @return matched router or null
+   */
+  <I> RouterMatch<I> lookup(String path, int end, String method) {
+    int[] captures = newCaptures();
+    if (!HttpMethod.GET.name().equalsIgnoreCase(method)) {
+      Route route = match(path, end, method, false, captures);
+      return route == null ? null : route.toMatch(path, end, captures);
+    }
+    TinyLfuCache<String, Resolved> cache = patternCache;
+    if (cache == null) {
+      Route route = match(path, end, method, true, captures);
+      return route == null ? null : route.toMatch(path, end, captures);
+    }
+    // Static and template routers are cheap, and must not occupy the cache
+    Route route = match(path, end, method, false, captures);
+    if (route != null && !route.antMatching) {
+      return route.toMatch(path, end, captures);
+    }
+    String key = end == path.length() ? path : path.substring(0, end);
+    Resolved resolved = cache.get(key);
+    if (resolved == null) {
+      route = match(path, end, method, true, captures);
+      resolved = route == null ? Resolved.MISSED : new Resolved(route, captures);
+      cache.put(key, resolved);
+    }
+    return resolved.route == null
+        ? null
+        : resolved.route.toMatch(path, end, resolved.captures);
+  }
+
+  private void insert(
+      String path,
+      String method,
+      FunctionMetaInfo<?> functionMetaInfo,
+      boolean antMatching,
+      boolean overwrite) {
+    if (frozen) {
+      throw new RouterMappingException("Routers are frozen, can't register " + path);
+    }
+    if (path.isEmpty() || path.charAt(0) != SEPARATOR) {
+      throw new RouterMappingException("Router must start with " + SEPARATOR);
+    }
+    streamBody |= functionMetaInfo.isStreamBody();
+    Node node = root;
+    List<String> variables = new ArrayList<>();
+    int from = 0;
+    while (from < path.length()) {
+      int end = path.indexOf(SEPARATOR, from + 1);
+      if (end < 0) {
+        end = path.length();
+      }
+      String segment = path.substring(from + 1, end);
+      if (isPattern(segment)) {
+        // The rest of path will be matched by Ant-style pattern
+        PatternNode patternNode = node.pattern(path.substring(from));
+        register(
+            patternNode.routes,
+            new Route(path, method, functionMetaInfo, variables, antMatching),
+            overwrite);
+        return;
+      }
+      Template template = Template.parse(segment);
+      if (template == null) {
+        node = node.staticChild(segment);
+      } else {
+        variables.addAll(Arrays.asList(template.variables));
+        node = node.templateChild(template);
+      }
+      from = end;
+    }
+    if (node.routes == null) {
+      node.routes = new HashMap<>(2 << 3);
+    }
+    register(node.routes, new Route(path, method, functionMetaInfo, variables, false), overwrite);
+  }
+
+  private void register(Map<String, Route> routeMap, Route route, boolean overwrite) {
+    Route replaced = routeMap.get(route.method);
+    if (replaced != null) {
+      if (!overwrite) {
+        return;
+      }
+      routes.remove(replaced);
+    }
+    routeMap.put(route.method, route);
+    routes.add(route);
+    maxVariables = Math.max(maxVariables, route.variables.length);
+  }
+
+  /**
+   * Prepare captures holder that suitable for {@link #match(String, String, boolean, int[])}.
+   *
+   * @return captures holder
+   */
+  int[] newCaptures() {
+    return new int[maxVariables << 1];
+  }
+
+  /**
+   * Find out router of path.
+   *
+   * @param path request path
+   * @param method http methods name
+   * @param patternMatching whether Ant-style patterns should be tried, patterns that are not
+   *     Ant-style or not allowed are compared literally
+   * @param captures start and end index of every path variable in path
+   * @return matched route or null
+   */
+  Route match(String path, String method, boolean patternMatching, int[] captures) {
+    return match(path, path.length(), method, patternMatching, captures);
+  }
+
+  /**
+   * Find out router of the first end characters of path.
+   *
+   * @param path string that contains request path
+   * @param end end index of request path in string
+   * @param method http methods name
+   * @param patternMatching whether Ant-style patterns should be tried
+   * @param captures start and end index of every path variable in path
+   * @return matched route or null
+   */
+  Route match(String path, int end, String method, boolean patternMatching, int[] captures) {
+    if (end == 0 || path.charAt(0) != SEPARATOR) {
+      return null;
+    }
+    return find(root, path, 0, end, method, patternMatching, captures, 0);
+  }
+
+  /**
+   * All registered routes.
+   *
+   * @return routes
+   */
+  List<Route> routes() {
+    return Collections.unmodifiableList(routes);
+  }
+
+  // "from" always points at separator or end of path
+  private Route find(
+      Node node,
+      String path,
+      int from,
+      int length,
+      String method,
+      boolean patternMatching,
+      int[] captures,
+      int captured) {
+    if (from == length) {
+      Route route = node.routes == null ? null : node.routes.get(method);
+      if (route != null) {
+        return route;
+      }
+    } else {
+      int start = from + 1;
+      int end = path.indexOf(SEPARATOR, start);
+      if (end < 0 || end > length) {
+        end = length;
+      }
+      Node child = node.findStaticChild(path, start, end);
+      if (child != null) {
+        Route route =
+            find(child, path, end, length, method, patternMatching, captures, captured);
+        if (route != null) {
+          return route;
+        }
+      }
+      for (Node templateChild : node.templateChildren) {
+        Template template = templateChild.template;
+        if (template.match(path, start, end, captures, captured << 1)) {
+          Route route =
+              find(
+                  templateChild,
+                  path,
+                  end,
+                  length,
+                  method,
+                  patternMatching,
+                  captures,
+                  captured + template.variables.length);
+          if (route != null) {
+            return route;
+          }
+        }
+      }
+    }
+    for (PatternNode patternNode : node.patterns) {
+      Route route = patternNode.routes.get(method);
+      if (route == null) {
+        continue;
+      }
+      boolean matched;
+      if (patternMatching && route.antMatching) {
+        matched = patternNode.compiledPattern.isMatch(path, from, length);
+      } else {
+        String pattern = patternNode.pattern;
+        matched =
+            pattern.length() == length - from
+                && path.regionMatches(from, pattern, 0, pattern.length());
+      }
+      if (matched) {
+        return route;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isPattern(String segment) {
+    return segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0;
+  }
+
+  private static int hash(String path, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + path.charAt(i);
+    }
+    return hash;
+  }
+
+  /** Registered function of specific path and method. */
+  static final class Route {
+    private final String path;
+    private final String method;
+    private final FunctionMetaInfo<?> functionMetaInfo;
+    private final String[] variables;
+    private final boolean antMatching;
+
+    private Route(
+        String path,
+        String method,
+        FunctionMetaInfo<?> functionMetaInfo,
+        List<String> variables,
+        boolean antMatching) {
+      this.path = path;
+      this.method = method;
+      this.functionMetaInfo = functionMetaInfo;
+      this.variables = variables.toArray(new String[0]);
+      this.antMatching = antMatching;
+    }
+
+    String getPath() {
+      return path;
+    }
+
+    String getMethod() {
+      return method;
+    }
+
+    FunctionMetaInfo<?> getFunctionMetaInfo() {
+      return functionMetaInfo;
+    }
+
+    String[] getVariables() {
+      return variables;
+    }
+
+    /**
+     * Result of request that matched this route.
+     *
+     * @param path string that contains request path
+     * @param end end index of request path in string
+     * @param captures start and end index of every path variable in path
+     * @param <I> function type
+     * @return router match
+     */
+    <I> RouterMatch<I> toMatch(String path, int end, int[] captures) {
+      // Routes of one tree hold functions of any type, caller knows which one it expects
+      @SuppressWarnings("unchecked")
+      FunctionMetaInfo<I> matched = (FunctionMetaInfo<I>) functionMetaInfo;
+      return new RouterMatch<>(matched, path, end, variables, captures);
+    }
+  }
+
+  /** Cached result of Ant-style matching, route is null if nothing matched. */
+  private static final class Resolved {
+    private static final Resolved MISSED = new Resolved(null, new int[0]);
+    private final Route route;
+    private final int[] captures;
+
+    private Resolved(Route route, int[] captures) {
+      this.route = route;
+      this.captures = captures;
+    }
+  }
+
+  private static final class Node {
+    private final String segment;
+    private final int hash;
+    private final Template template;
+    private final List<Node> templateChildren = new ArrayList<>();
+    private final List<PatternNode> patterns = new ArrayList<>();
+    // Static children, open addressing table indexed by hash of segment
+    private Node[] table;
+    private int size;
+    private Map<String, Route> routes;
+
+    private Node(String segment) {
+      this.segment = segment;
+      this.hash = segment.hashCode();
+      this.template = null;
+    }
+
+    private Node(Template template) {
+      this.segment = null;
+      this.hash = 0;
+      this.template = template;
+    }
+
+    private Node findStaticChild(String path, int start, int end) {
+      if (table == null) {
+        return null;
+      }
+      int length = end - start;
+      int hash = hash(path, start, end);
+      int mask = table.length - 1;
+      for (int i = spread(hash) & mask; ; i = (i + 1) & mask) {
+        Node node = table[i];
+        if (node == null) {
+          return null;
+        }
+        if (node.hash == hash
+            && node.segment.length() == length
+            && node.segment.regionMatches(0, path, start, length)) {
+          return node;
+        }
+      }
+    }
+
+    private Node staticChild(String segment) {
+      Node node = findStaticChild(segment, 0, segment.length());
+      if (node != null) {
+        return node;
+      }
+      if (table == null || (size + 1) << 1 > table.length) {
+        Node[] oldTable = table;
+        table = new Node[oldTable == null ? 8 : oldTable.length << 1];
+        if (oldTable != null) {
+          for (Node old : oldTable) {
+            if (old != null) {
+              put(old);
+            }
+          }
+        }
+      }
+      node = new Node(segment);
+      put(node);
+      size++;
+      return node;
+    }
+
+    private void put(Node node) {
+      int mask = table.length - 1;
+      int i = spread(node.hash) & mask;
+      while (table[i] != null) {
+        i = (i + 1) & mask;
+      }
+      table[i] = node;
+    }
+
+    private Node templateChild(Template template) {
+      for (Node templateChild : templateChildren) {
+        if (templateChild.template.sameShape(template)) {
+          return templateChild;
+        }
+      }
+      Node node = new Node(template);
+      templateChildren.add(node);
+      return node;
+    }
+
+    private PatternNode pattern(String pattern) {
+      for (PatternNode patternNode : patterns) {
+        if (patternNode.pattern.equals(pattern)) {
+          return patternNode;
+        }
+      }
+      PatternNode patternNode = new PatternNode(pattern);
+      patterns.add(patternNode);
+      return patternNode;
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  // Rest of router which contains Ant-style wildcards
+  private static final class PatternNode {
+    private final String pattern;
+    private final AntPathMatcher.CompiledPattern compiledPattern;
+    private final Map<String, Route> routes = new HashMap<>(2 << 3);
+
+    private PatternNode(String pattern) {
+      this.pattern = pattern;
+      this.compiledPattern = antPathMatcher.compile(pattern);
+    }
+  }
+
+  /**
+   * Segment that contains path variables, like {@code {id}} or {@code v{major}.{minor}}. Each
+   * variable matches at least one character, and the former variable is greedy.
+   */
+  private static final class Template {
+    // literals.length == variables.length + 1
+    private final String[] literals;
+    private final String[] variables;
+    // Minimum length after each variable, excluding the last literal
+    private final int[] minRemaining;
+
+    private Template(List<String> literals, List<String> variables) {
+      this.literals = literals.toArray(new String[0]);
+      this.variables = variables.toArray(new String[0]);
+      this.minRemaining = new int[this.variables.length];
+      for (int i = this.variables.length - 2; i >= 0; i--) {
+        minRemaining[i] = this.literals[i + 1].length() + 1 + minRemaining[i + 1];
+      }
+    }
+
+    private static Template parse(String segment) {
+      List<String> literals = new ArrayList<>();
+      List<String> variables = new ArrayList<>();
+      int literalStart = 0;
+      int open = segment.indexOf('{');
+      while (open >= 0) {
+        int close = segment.indexOf('}', open + 1);
+        if (close < 0) {
+          break;
+        }
+        String variable = segment.substring(open + 1, close);
+        if (variable.trim().isEmpty()) {
+          throw new RouterMappingException("Path variable name is empty!");
+        }
+        literals.add(segment.substring(literalStart, open));
+        variables.add(variable);
+        literalStart = close + 1;
+        open = segment.indexOf('{', literalStart);
+      }
+      if (variables.isEmpty()) {
+        return null;
+      }
+      literals.add(segment.substring(literalStart));
+      return new Template(literals, variables);
+    }
+
+    private boolean sameShape(Template template) {
+      return Arrays.equals(literals, template.literals);
+    }
+
+    private boolean match(String path, int start, int end, int[] captures, int offset) {
+      String first = literals[0];
+      String last = literals[variables.length];
+      if (end - start < first.length() + last.length() + variables.length) {
+        return false;
+      }
+      if (!path.startsWith(first, start)
+          || !path.regionMatches(end - last.length(), last, 0, last.length())) {
+        return false;
+      }
+      return matchVariable(path, 0, start + first.length(), end - last.length(), captures, offset);
+    }
+
+    private boolean matchVariable(
+        String path, int index, int start, int end, int[] captures, int offset) {
+      int slot = offset + (index << 1);
+      if (index == variables.length - 1) {
+        if (end - start < 1) {
+          return false;
+        }
+        captures[slot] = start;
+        captures[slot + 1] = end;
+        return true;
+      }
+      String next = literals[index + 1];
+      for (int variableEnd = end - minRemaining[index]; variableEnd > start; variableEnd--) {
+        if (path.startsWith(next, variableEnd)
+            && matchVariable(
+                path, index + 1, variableEnd + next.length(), end, captures, offset)) {
+          captures[slot] = start;
+          captures[slot + 1] = variableEnd;
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
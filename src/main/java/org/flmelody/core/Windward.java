@@ -22,8 +22,12 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -32,10 +36,16 @@ import org.flmelody.core.context.SimpleWindwardContext;
 import org.flmelody.core.context.support.HttpKind;
 import org.flmelody.core.exception.PluginMissException;
 import org.flmelody.core.exception.ServerException;
+import org.flmelody.core.netty.ConnectionStats;
+import org.flmelody.core.netty.CorsPolicy;
 import org.flmelody.core.netty.NettyHttpServer;
+import org.flmelody.core.netty.NettyTransport;
+import org.flmelody.core.netty.ServerOptions;
+import org.flmelody.core.netty.ssl.TlsOptions;
 import org.flmelody.core.plugin.Plugin;
 import org.flmelody.core.plugin.PluginSlot;
 import org.flmelody.core.plugin.json.AutoJsonBinder;
+import org.flmelody.core.plugin.json.JsonPlugin;
 import org.flmelody.core.plugin.resolver.CompositePluginResolver;
 import org.flmelody.core.plugin.resolver.PluginResolver;
 import org.flmelody.core.plugin.resource.BaseStaticResourcePlugin;
@@ -45,13 +55,16 @@ import org.flmelody.core.plugin.view.groovy.GroovyView;
 import org.flmelody.core.plugin.view.thymeleaf.ThymeleafView;
 import org.flmelody.core.sse.SseEjector;
 import org.flmelody.core.sse.SseWindwardContext;
+import org.flmelody.core.support.WorkerPool;
 import org.flmelody.core.wind.DefaultWindManager;
 import org.flmelody.core.wind.WindManager;
 import org.flmelody.core.wind.event.Event;
 import org.flmelody.core.wind.listener.Listener;
 import org.flmelody.core.ws.WebSocketWindwardContext;
 import org.flmelody.core.ws.authentication.AuthorizationProvider;
+import org.flmelody.support.AimdLimiter;
 import org.flmelody.support.EnhancedFunction;
+import org.flmelody.support.TinyLfuCache;
 import org.flmelody.util.ConsoleUtil;
 import org.flmelody.util.UrlUtil;
 
@@ -77,6 +90,16 @@ public final class Windward implements Router<Windward> {
   private static final List<ExceptionHandler> globalExceptionHandlers = new ArrayList<>();
   // Plugins
   private static final Map<Class<?>, Plugin> globalPlugins = new HashMap<>();
+  // Routers of all groups, merged when server starts
+  private static volatile RouterTree routerTree;
+  // Maximum size of cache for resource routers matching
+  private static int routerCacheSize = 1 << 10;
+  // Pool for handlers that may block
+  private static volatile WorkerPool workerPool;
+  // Counters of connections closed by running server
+  private static volatile ConnectionStats connectionStats;
+  // Concurrency limit of whole server
+  private static volatile AimdLimiter concurrencyLimiter;
   // Root context of application
   private final String contextPath;
   // Template files location
@@ -85,10 +108,16 @@ public final class Windward implements Router<Windward> {
   private final String staticResourceLocation;
   private final PluginResolver pluginResolver = new CompositePluginResolver();
   private final WindManager windManager = new DefaultWindManager(this);
+  // Options of server
+  private ServerOptions serverOptions;
   // NettyHttpServer default
   private HttpServer httpServer;
   // Whether to use ssl or not
   private SslPair sslPair;
+  // Group of routers registered on Windward directly
+  private RouterGroup<Windward> rootGroup;
+  // Group of resources registered on Windward directly
+  private RouterGroup<Windward> rootResourceGroup;
 
   private Windward(String contextPath, String templateRoot, String staticResourceLocation) {
     this.contextPath = contextPath;
@@ -139,8 +168,43 @@ public final class Windward implements Router<Windward> {
       String templateRoot,
       String staticResourceLocation,
       Filter... filters) {
+    return setup(
+        ServerOptions.newBuilder().port(port).build(),
+        contextPath,
+        templateRoot,
+        staticResourceLocation,
+        filters);
+  }
+
+  /**
+   * Prepare core engine of Windward
+   *
+   * @param serverOptions options of server
+   * @param filters request filters
+   * @return core engine of Windward
+   */
+  public static Windward setup(ServerOptions serverOptions, Filter... filters) {
+    return setup(serverOptions, UrlUtil.SLASH, "/templates", "/static", filters);
+  }
+
+  /**
+   * Prepare core engine of Windward
+   *
+   * @param serverOptions options of server
+   * @param contextPath path of root
+   * @param templateRoot root for template files
+   * @param staticResourceLocation location of static resource
+   * @param filters request filters
+   * @return core engine of Windward
+   */
+  public static Windward setup(
+      ServerOptions serverOptions,
+      String contextPath,
+      String templateRoot,
+      String staticResourceLocation,
+      Filter... filters) {
     Windward windward = new Windward(contextPath, templateRoot, staticResourceLocation);
-    windward.httpServer = new NettyHttpServer(port);
+    windward.serverOptions = Objects.requireNonNull(serverOptions);
     windward
         .registerExceptionHandler(new DefaultNotFoundHandler())
         .registerFilter(filters)
@@ -179,7 +243,15 @@ public final class Windward implements Router<Windward> {
             + ConsoleUtil.ANSI_RESET);
     prepareDefault(this);
     beforeStart();
+    RouterTree merged = mergeRouters();
+    merged.freeze(routerCacheSize);
+    routerTree = merged;
+    prepareJsonPlugins(merged);
+    prepareWorkerPool(serverOptions);
     // Start server
+    NettyHttpServer nettyHttpServer = new NettyHttpServer(serverOptions);
+    connectionStats = nettyHttpServer.getConnectionStats();
+    httpServer = nettyHttpServer;
     httpServer.run(this.sslPair);
   }
 
@@ -210,6 +282,39 @@ public final class Windward implements Router<Windward> {
     return defaultRouterGroup;
   }
 
+  // Group shared by routers registered on Windward directly
+  private RouterGroup<Windward> rootGroup() {
+    if (rootGroup == null) {
+      rootGroup = group(UrlUtil.SLASH);
+    }
+    return rootGroup;
+  }
+
+  // Group shared by resources registered on Windward directly
+  private RouterGroup<Windward> rootResourceGroup() {
+    if (rootResourceGroup == null) {
+      rootResourceGroup = resourceGroup(UrlUtil.SLASH);
+    }
+    return rootResourceGroup;
+  }
+
+  /**
+   * Merge routers of all groups into one frozen tree. Groups registered earlier win, and resource
+   * groups come after normal ones, the same order in which groups used to be probed.
+   *
+   * @return merged router tree
+   */
+  private static RouterTree mergeRouters() {
+    RouterTree merged = new RouterTree();
+    for (AbstractRouterGroup<Windward> routerGroup : routerGroups) {
+      merged.merge(routerGroup.routerTree(), routerGroup.resourceRouter);
+    }
+    for (AbstractRouterGroup<Windward> routerGroup : resourceRouterGroups) {
+      merged.merge(routerGroup.routerTree(), routerGroup.resourceRouter);
+    }
+    return merged;
+  }
+
   /**
    * Use ssl for server
    *
@@ -221,6 +326,164 @@ public final class Windward implements Router<Windward> {
     return this;
   }
 
+  /**
+   * Serve TLS with options, which allow reloading certificates, choosing them by server name and
+   * resuming sessions
+   *
+   * @param tlsOptions options of TLS
+   * @return windward instance
+   */
+  public Windward withTls(TlsOptions tlsOptions) {
+    this.serverOptions = serverOptions.toBuilder().tls(tlsOptions).build();
+    return this;
+  }
+
+  /**
+   * Use specific transport for server, native epoll is preferred by default when it's available
+   *
+   * @param transport transport of server
+   * @return windward instance
+   */
+  public Windward withTransport(NettyTransport transport) {
+    return withTransport(transport, false);
+  }
+
+  /**
+   * Use specific transport for server
+   *
+   * @param transport transport of server
+   * @param reusePort whether to bind one acceptor per event loop with SO_REUSEPORT, epoll only
+   * @return windward instance
+   */
+  public Windward withTransport(NettyTransport transport, boolean reusePort) {
+    this.serverOptions =
+        serverOptions.toBuilder().transport(transport).reusePort(reusePort).build();
+    return this;
+  }
+
+  /**
+   * Accept HTTP/2 besides HTTP/1.1, every stream is handled like a request of HTTP/1.1
+   *
+   * @return windward instance
+   */
+  public Windward withHttp2() {
+    this.serverOptions = serverOptions.toBuilder().http2(true).build();
+    return this;
+  }
+
+  /**
+   * Compress responses of text and json with gzip or deflate, as negotiated with client
+   *
+   * @return windward instance
+   */
+  public Windward withCompression() {
+    this.serverOptions = serverOptions.toBuilder().compression(true).build();
+    return this;
+  }
+
+  /**
+   * Allow cross-origin requests according to policy, instead of from any origin
+   *
+   * @param corsPolicy policy of cross-origin requests, null to turn it off
+   * @return windward instance
+   */
+  public Windward withCors(CorsPolicy corsPolicy) {
+    this.serverOptions = serverOptions.toBuilder().cors(corsPolicy).build();
+    return this;
+  }
+
+  // Let json plugins resolve result types of routers before the first request
+  private static void prepareJsonPlugins(RouterTree routerTree) {
+    Set<Class<?>> resultTypes = new HashSet<>();
+    for (RouterTree.Route route : routerTree.routes()) {
+      FunctionMetaInfo<?> functionMetaInfo = route.getFunctionMetaInfo();
+      if (functionMetaInfo.getFunction() instanceof EnhancedFunction
+          && functionMetaInfo.getResultType() != null) {
+        resultTypes.add(functionMetaInfo.getResultType());
+      }
+    }
+    for (JsonPlugin jsonPlugin : plugins(JsonPlugin.class)) {
+      jsonPlugin.prepare(resultTypes);
+    }
+  }
+
+  private static synchronized void prepareWorkerPool(ServerOptions serverOptions) {
+    if (workerPool == null) {
+      workerPool =
+          new WorkerPool(
+              serverOptions.getWorkerPoolThreads(), serverOptions.getWorkerPoolQueueCapacity());
+    }
+  }
+
+  /**
+   * Bounded pool that runs handlers registered with {@link ExecutionMode#WORKER_POOL}
+   *
+   * @return worker pool
+   */
+  public static Executor workerPool() {
+    WorkerPool pool = workerPool;
+    if (pool == null) {
+      prepareWorkerPool(ServerOptions.newBuilder().build());
+      pool = workerPool;
+    }
+    return pool;
+  }
+
+  /**
+   * Set maximum size of cache that remembers which resource router matched a path, zero disables
+   * it.
+   *
+   * @param maximumSize maximum size of cache
+   * @return windward instance
+   */
+  public Windward withRouterCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size of cache must not be negative!");
+    }
+    routerCacheSize = maximumSize;
+    return this;
+  }
+
+  /**
+   * Cache that remembers which resource router matched a path, its counters help to size it.
+   *
+   * @return cache of routers, or null if server is not started or cache is disabled
+   */
+  public static TinyLfuCache<String, ?> routerCache() {
+    RouterTree tree = routerTree;
+    return tree == null ? null : tree.patternCache();
+  }
+
+  /**
+   * Limit concurrency of whole server, requests above limit are rejected with 503 right away
+   * unless their routers are exempt.
+   *
+   * @param limiter adaptive concurrency limit, null removes limit
+   * @return windward instance
+   */
+  public Windward withConcurrencyLimit(AimdLimiter limiter) {
+    concurrencyLimiter = limiter;
+    return this;
+  }
+
+  /**
+   * Concurrency limit of whole server, its limit and counters tell how loaded server is.
+   *
+   * @return limiter, or null if server is not limited
+   */
+  public static AimdLimiter concurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  /**
+   * Counters of connections that server closed for being idle, slow or used up.
+   *
+   * @return connection stats, or null if server is not started
+   */
+  public static ConnectionStats connectionStats() {
+    return connectionStats;
+  }
+
   /**
    * Register filter
    *
@@ -319,22 +582,42 @@ public final class Windward implements Router<Windward> {
    * @param relativePath relativePath
    * @param method http methods name
    * @param <I> routers metadata
-   * @return registered function
+   * @return matched function of this request, or null
    */
-  public static <I> FunctionMetaInfo<I> findRouter(String relativePath, String method) {
-    for (AbstractRouterGroup<Windward> routerGroup : routerGroups) {
-      FunctionMetaInfo<I> functionMetaInfo = routerGroup.matchRouter(relativePath, method);
-      if (functionMetaInfo != null) {
-        return functionMetaInfo;
-      }
-    }
-    for (AbstractRouterGroup<Windward> routerGroup : resourceRouterGroups) {
-      FunctionMetaInfo<I> functionMetaInfo = routerGroup.matchRouter(relativePath, method);
-      if (functionMetaInfo != null) {
-        return functionMetaInfo;
-      }
+  public static <I> RouterMatch<I> findRouter(String relativePath, String method) {
+    relativePath = RouterTree.normalize(relativePath);
+    // If it's a GET request, try to match it using Ant-style path patterns as well
+    return routerTree().lookup(relativePath, relativePath.length(), method);
+  }
+
+  /**
+   * Find out registered function or resource by scanned request uri, without copying its path
+   *
+   * @param requestUri request uri
+   * @param method http methods name
+   * @param <I> routers metadata
+   * @return matched function of this request, or null
+   */
+  public static <I> RouterMatch<I> findRouter(RequestUri requestUri, String method) {
+    return routerTree().lookup(requestUri.routePath(), requestUri.routeEnd(), method);
+  }
+
+  /**
+   * Whether any router reads its request body as a stream
+   *
+   * @return true if request bodies of some routers should not be aggregated
+   */
+  public static boolean hasStreamBodyRouters() {
+    return routerTree().hasStreamBody();
+  }
+
+  private static RouterTree routerTree() {
+    RouterTree tree = routerTree;
+    if (tree == null) {
+      // Server not started yet, routers may still change
+      tree = mergeRouters();
     }
-    return null;
+    return tree;
   }
 
   /**
@@ -407,7 +690,7 @@ public final class Windward implements Router<Windward> {
   /** {@inheritDoc} */
   @Override
   public <R> Windward http(HttpMethod httpMethod, String relativePath, Supplier<R> supplier) {
-    group(UrlUtil.SLASH).http(httpMethod, relativePath, supplier);
+    rootGroup().http(httpMethod, relativePath, supplier);
     return this;
   }
 
@@ -415,7 +698,7 @@ public final class Windward implements Router<Windward> {
   @Override
   public Windward http(
       HttpMethod httpMethod, String relativePath, Consumer<SimpleWindwardContext> consumer) {
-    group(UrlUtil.SLASH).http(httpMethod, relativePath, consumer);
+    rootGroup().http(httpMethod, relativePath, consumer);
     return this;
   }
 
@@ -423,19 +706,19 @@ public final class Windward implements Router<Windward> {
   @Override
   public <C extends EnhancedWindwardContext & HttpKind> Windward http(
       HttpMethod httpMethod, String relativePath, EnhancedFunction<C, ?> function) {
-    group(UrlUtil.SLASH).http(httpMethod, relativePath, function);
+    rootGroup().http(httpMethod, relativePath, function);
     return this;
   }
 
   /** {@inheritDoc} */
   public <R> Windward get(String relativePath, Supplier<R> supplier) {
-    group(UrlUtil.SLASH).get(relativePath, supplier);
+    rootGroup().get(relativePath, supplier);
     return this;
   }
 
   /** {@inheritDoc} */
   public Windward get(String relativePath, Consumer<SimpleWindwardContext> consumer) {
-    group(UrlUtil.SLASH).get(relativePath, consumer);
+    rootGroup().get(relativePath, consumer);
     return this;
   }
 
@@ -443,20 +726,20 @@ public final class Windward implements Router<Windward> {
   @Override
   public <C extends EnhancedWindwardContext & HttpKind> Windward get(
       String relativePath, EnhancedFunction<C, ?> function) {
-    group(UrlUtil.SLASH).get(relativePath, function);
+    rootGroup().get(relativePath, function);
     return this;
   }
 
   /** {@inheritDoc} */
   @Override
   public <R> Windward put(String relativePath, Supplier<R> supplier) {
-    group(UrlUtil.SLASH).put(relativePath, supplier);
+    rootGroup().put(relativePath, supplier);
     return this;
   }
 
   /** {@inheritDoc} */
   public Windward put(String relativePath, Consumer<SimpleWindwardContext> consumer) {
-    group(UrlUtil.SLASH).put(relativePath, consumer);
+    rootGroup().put(relativePath, consumer);
     return this;
   }
 
@@ -464,20 +747,20 @@ public final class Windward implements Router<Windward> {
   @Override
   public <C extends EnhancedWindwardContext & HttpKind> Windward put(
       String relativePath, EnhancedFunction<C, ?> function) {
-    group(UrlUtil.SLASH).put(relativePath, function);
+    rootGroup().put(relativePath, function);
     return this;
   }
 
   /** {@inheritDoc} */
   @Override
   public <R> Windward post(String relativePath, Supplier<R> supplier) {
-    group(UrlUtil.SLASH).post(relativePath, supplier);
+    rootGroup().post(relativePath, supplier);
     return this;
   }
 
   /** {@inheritDoc} */
   public Windward post(String relativePath, Consumer<SimpleWindwardContext> consumer) {
-    group(UrlUtil.SLASH).post(relativePath, consumer);
+    rootGroup().post(relativePath, consumer);
     return this;
   }
 
@@ -485,20 +768,20 @@ public final class Windward implements Router<Windward> {
   @Override
   public <C extends EnhancedWindwardContext & HttpKind> Windward post(
       String relativePath, EnhancedFunction<C, ?> function) {
-    group(UrlUtil.SLASH).post(relativePath, function);
+    rootGroup().post(relativePath, function);
     return this;
   }
 
   /** {@inheritDoc} */
   @Override
   public <R> Windward delete(String relativePath, Supplier<R> supplier) {
-    group(UrlUtil.SLASH).delete(relativePath, supplier);
+    rootGroup().delete(relativePath, supplier);
     return this;
   }
 
   /** {@inheritDoc} */
   public Windward delete(String relativePath, Consumer<SimpleWindwardContext> consumer) {
-    group(UrlUtil.SLASH).delete(relativePath, consumer);
+    rootGroup().delete(relativePath, consumer);
     return this;
   }
 
@@ -506,7 +789,7 @@ public final class Windward implements Router<Windward> {
   @Override
   public <C extends EnhancedWindwardContext & HttpKind> Windward delete(
       String relativePath, EnhancedFunction<C, ?> function) {
-    group(UrlUtil.SLASH).delete(relativePath, function);
+    rootGroup().delete(relativePath, function);
     return this;
   }
 
@@ -514,7 +797,7 @@ public final class Windward implements Router<Windward> {
   @Override
   public Windward sse(
       String relativePath, EnhancedFunction<SseWindwardContext, SseEjector> function) {
-    group(UrlUtil.SLASH).sse(relativePath, function);
+    rootGroup().sse(relativePath, function);
     return this;
   }
 
@@ -524,7 +807,7 @@ public final class Windward implements Router<Windward> {
       HttpMethod httpMethod,
       String relativePath,
       EnhancedFunction<SseWindwardContext, SseEjector> function) {
-    group(UrlUtil.SLASH).sse(httpMethod, relativePath, function);
+    rootGroup().sse(httpMethod, relativePath, function);
     return this;
   }
 
@@ -534,7 +817,7 @@ public final class Windward implements Router<Windward> {
       String relativePath,
       Consumer<WebSocketWindwardContext> consumer,
       AuthorizationProvider... authorizationProviders) {
-    group(UrlUtil.SLASH).ws(relativePath, consumer, authorizationProviders);
+    rootGroup().ws(relativePath, consumer, authorizationProviders);
     return this;
   }
 
@@ -547,7 +830,47 @@ public final class Windward implements Router<Windward> {
   /** {@inheritDoc} */
   @Override
   public Windward resources(String staticResourceLocation, String... pathPatterns) {
-    resourceGroup(UrlUtil.SLASH).resources(staticResourceLocation, pathPatterns);
+    rootResourceGroup().resources(staticResourceLocation, pathPatterns);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Windward executeOn(ExecutionMode executionMode) {
+    rootGroup().executeOn(executionMode);
+    rootResourceGroup().executeOn(executionMode);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Windward executeOn(Executor executor) {
+    rootGroup().executeOn(executor);
+    rootResourceGroup().executeOn(executor);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Windward streamBody(boolean streamBody) {
+    rootGroup().streamBody(streamBody);
+    rootResourceGroup().streamBody(streamBody);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Windward concurrencyLimit(AimdLimiter limiter) {
+    rootGroup().concurrencyLimit(limiter);
+    rootResourceGroup().concurrencyLimit(limiter);
+    return this;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Windward limitExempt(boolean limitExempt) {
+    rootGroup().limitExempt(limitExempt);
+    rootResourceGroup().limitExempt(limitExempt);
     return this;
   }
 }
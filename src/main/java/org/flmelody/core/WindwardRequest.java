@@ -16,12 +16,18 @@
 
 package org.flmelody.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.lang.reflect.Type;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 
 /**
  * @author esotericman
@@ -30,10 +36,22 @@ public class WindwardRequest implements RequestReader {
   private String method;
   private String uri;
   private Boolean keepAlive;
-  private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-  private final Map<String, List<String>> querystring = new HashMap<>(2 << 3);
-  private final Map<String, Object> pathVariables = new HashMap<>(2 << 3);
+  private SocketAddress remoteAddress;
+  // Path of matched router, such as /user/{id}
+  private String routePath;
+  // Looked up ignoring case
+  private Map<String, List<String>> headers = Collections.emptyMap();
+  private Map<String, List<String>> querystring;
+  // Decodes querystring when it's read for the first time
+  private Supplier<Map<String, List<String>>> querystringDecoder = HashMap::new;
+  private Map<String, Object> pathVariables = Collections.emptyMap();
   private String requestBody;
+  // Decoded into requestBody when it's read for the first time
+  private RequestContent content;
+  private InputStream bodyStream;
+  private FormData form;
+  // Decodes form when it's read for the first time
+  private Supplier<FormData> formDecoder;
   private final RequestReader requestReader = new DefaultRequestReader();
 
   public static WindwardRequestBuilder newBuild() {
@@ -58,10 +76,11 @@ public class WindwardRequest implements RequestReader {
    * @return headers values
    */
   public List<String> getHeader(String name) {
-    if (!headers.containsKey(name)) {
+    List<String> values = headers.get(name);
+    if (values == null) {
       return Collections.emptyList();
     }
-    return headers.get(name);
+    return values;
   }
 
   /**
@@ -82,12 +101,33 @@ public class WindwardRequest implements RequestReader {
     return uri;
   }
 
+  /**
+   * Address of client, or of the proxy in front of it
+   *
+   * @return remote address or null
+   */
+  public SocketAddress getRemoteAddress() {
+    return remoteAddress;
+  }
+
+  /**
+   * Path that matched router was registered with, such as {@code /user/{id}}
+   *
+   * @return route path or null if no router matched
+   */
+  public String getRoutePath() {
+    return routePath;
+  }
+
   /**
    * Get request querystring
    *
    * @return querystring or empty
    */
   public Map<String, List<String>> getQuerystring() {
+    if (querystring == null) {
+      querystring = querystringDecoder.get();
+    }
     return querystring;
   }
 
@@ -106,9 +146,78 @@ public class WindwardRequest implements RequestReader {
    * @return request body or null
    */
   public String getRequestBody() {
+    if (requestBody == null && content != null) {
+      requestBody = content.toString(StandardCharsets.UTF_8);
+    }
     return requestBody;
   }
 
+  /**
+   * Aggregated body of request, which is read without being copied
+   *
+   * @return content or null
+   */
+  public RequestContent getContent() {
+    return content;
+  }
+
+  /**
+   * Get request body as bytes
+   *
+   * @return copy of request body or null
+   */
+  public byte[] getBodyBytes() {
+    if (content != null) {
+      return content.toByteArray();
+    }
+    return requestBody == null ? null : requestBody.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Get request body as a read-only buffer
+   *
+   * @return request body or null
+   */
+  public ByteBuffer getBodyBuffer() {
+    if (content != null) {
+      return content.asByteBuffer();
+    }
+    return requestBody == null
+        ? null
+        : ByteBuffer.wrap(requestBody.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+  }
+
+  /**
+   * Body of request as a stream. Body of a router that streams its body is read as it arrives,
+   * reading blocks until more content arrives, so it must not be read on event loop.
+   *
+   * @return body stream or null
+   */
+  public InputStream getBodyStream() {
+    if (bodyStream != null) {
+      return bodyStream;
+    }
+    if (content != null) {
+      return content.asInputStream();
+    }
+    return requestBody == null
+        ? null
+        : new ByteArrayInputStream(requestBody.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Get decoded form, only present when request is {@code application/x-www-form-urlencoded} or
+   * {@code multipart/form-data}. Body of a streamed request is consumed by decoding.
+   *
+   * @return form or null
+   */
+  public FormData getForm() {
+    if (form == null && formDecoder != null) {
+      form = formDecoder.get();
+    }
+    return form;
+  }
+
   /** {@inheritDoc} */
   @Override
   public <I> I readJson(String body, Class<I> clazz) {
@@ -133,6 +242,30 @@ public class WindwardRequest implements RequestReader {
     return requestReader.bindJson(body, type, groups);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public <I> I readJson(InputStream body, Class<I> clazz) {
+    return requestReader.readJson(body, clazz);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <I> I readJson(InputStream body, Type type) {
+    return requestReader.readJson(body, type);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <I> I bindJson(InputStream body, Class<I> clazz, Class<?>... groups) {
+    return requestReader.bindJson(body, clazz, groups);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <I> I bindJson(InputStream body, Type type, Class<?>... groups) {
+    return requestReader.bindJson(body, type, groups);
+  }
+
   /** Builder for WindwardRequest */
   public static class WindwardRequestBuilder {
     private final WindwardRequest windwardRequest;
@@ -156,18 +289,50 @@ public class WindwardRequest implements RequestReader {
       return this;
     }
 
+    public WindwardRequestBuilder remoteAddress(SocketAddress remoteAddress) {
+      windwardRequest.remoteAddress = remoteAddress;
+      return this;
+    }
+
+    public WindwardRequestBuilder routePath(String routePath) {
+      windwardRequest.routePath = routePath;
+      return this;
+    }
+
     public WindwardRequestBuilder headers(Map<String, List<String>> headers) {
-      windwardRequest.headers.putAll(headers);
+      Map<String, List<String>> copy = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      copy.putAll(windwardRequest.headers);
+      copy.putAll(headers);
+      windwardRequest.headers = copy;
+      return this;
+    }
+
+    /**
+     * Headers that are used as they are instead of being copied, they must be looked up ignoring
+     * case.
+     *
+     * @param headers view of headers
+     * @return builder
+     */
+    public WindwardRequestBuilder headersView(Map<String, List<String>> headers) {
+      windwardRequest.headers = headers;
       return this;
     }
 
     public WindwardRequestBuilder querystring(Map<String, List<String>> querystring) {
-      windwardRequest.querystring.putAll(querystring);
+      windwardRequest.querystring = new HashMap<>(querystring);
+      return this;
+    }
+
+    public WindwardRequestBuilder querystring(
+        Supplier<Map<String, List<String>>> querystringDecoder) {
+      windwardRequest.querystring = null;
+      windwardRequest.querystringDecoder = querystringDecoder;
       return this;
     }
 
     public WindwardRequestBuilder pathVariables(Map<String, Object> pathVariables) {
-      windwardRequest.pathVariables.putAll(pathVariables);
+      windwardRequest.pathVariables = pathVariables;
       return this;
     }
 
@@ -176,6 +341,28 @@ public class WindwardRequest implements RequestReader {
       return this;
     }
 
+    public WindwardRequestBuilder content(RequestContent content) {
+      windwardRequest.requestBody = null;
+      windwardRequest.content = content;
+      return this;
+    }
+
+    public WindwardRequestBuilder bodyStream(InputStream bodyStream) {
+      windwardRequest.bodyStream = bodyStream;
+      return this;
+    }
+
+    public WindwardRequestBuilder form(FormData form) {
+      windwardRequest.form = form;
+      return this;
+    }
+
+    public WindwardRequestBuilder form(Supplier<FormData> formDecoder) {
+      windwardRequest.form = null;
+      windwardRequest.formDecoder = formDecoder;
+      return this;
+    }
+
     public WindwardRequest build() {
       return windwardRequest;
     }
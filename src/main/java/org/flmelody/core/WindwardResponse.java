@@ -65,6 +65,11 @@ public class WindwardResponse {
     responseWriter.close();
   }
 
+  /** Finish response, connection is kept if client asked for keep-alive */
+  public void complete() {
+    responseWriter.complete();
+  }
+
   public static WindwardResponseBuild newBuilder() {
     return new WindwardResponseBuild(new WindwardResponse());
   }
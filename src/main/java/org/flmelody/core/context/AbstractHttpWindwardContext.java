@@ -20,9 +20,11 @@ import java.lang.reflect.Type;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Optional;
+import org.flmelody.core.FormData;
 import org.flmelody.core.HttpHeader;
 import org.flmelody.core.HttpStatus;
 import org.flmelody.core.MediaType;
+import org.flmelody.core.RequestContent;
 import org.flmelody.core.Windward;
 import org.flmelody.core.WindwardRequest;
 import org.flmelody.core.WindwardResponse;
@@ -47,27 +49,49 @@ public abstract class AbstractHttpWindwardContext extends AbstractWindwardContex
   /** {@inheritDoc} */
   @Override
   public <I> I readJson(Class<I> clazz) {
+    RequestContent content = windwardRequest.getContent();
+    if (content != null) {
+      return windwardRequest.readJson(content.asInputStream(), clazz);
+    }
     return windwardRequest.readJson(windwardRequest.getRequestBody(), clazz);
   }
 
   /** {@inheritDoc} */
   @Override
   public <I> I readJson(Type type) {
+    RequestContent content = windwardRequest.getContent();
+    if (content != null) {
+      return windwardRequest.readJson(content.asInputStream(), type);
+    }
     return windwardRequest.readJson(windwardRequest.getRequestBody(), type);
   }
 
   /** {@inheritDoc} */
   @Override
   public <I> I bindJson(Class<I> clazz, Class<?>... groups) {
+    RequestContent content = windwardRequest.getContent();
+    if (content != null) {
+      return windwardRequest.bindJson(content.asInputStream(), clazz, groups);
+    }
     return windwardRequest.bindJson(windwardRequest.getRequestBody(), clazz, groups);
   }
 
   /** {@inheritDoc} */
   @Override
   public <I> I bindJson(Type type, Class<?>... groups) {
+    RequestContent content = windwardRequest.getContent();
+    if (content != null) {
+      return windwardRequest.bindJson(content.asInputStream(), type, groups);
+    }
     return windwardRequest.bindJson(windwardRequest.getRequestBody(), type, groups);
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public FormData getForm() {
+    return windwardRequest.getForm();
+  }
+
   /** {@inheritDoc} */
   @Override
   public void redirect(String redirectUrl) {
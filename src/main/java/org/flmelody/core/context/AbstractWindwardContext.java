@@ -81,10 +81,16 @@ public abstract class AbstractWindwardContext implements WindwardContext {
   @Override
   public void close() {
     if (closed.compareAndSet(false, true)) {
-      windwardResponse.close();
+      windwardResponse.complete();
     }
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public boolean isDone() {
+    return alreadyDone.get();
+  }
+
   /** {@inheritDoc} */
   @Override
   public boolean isClosed() {
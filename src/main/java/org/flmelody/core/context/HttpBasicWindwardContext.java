@@ -17,6 +17,7 @@
 package org.flmelody.core.context;
 
 import java.lang.reflect.Type;
+import org.flmelody.core.FormData;
 
 /**
  * @author esotericman
@@ -60,6 +61,13 @@ public interface HttpBasicWindwardContext extends WindwardContext {
    */
   <I> I bindJson(Type type, Class<?>... groups);
 
+  /**
+   * Decoded form of request
+   *
+   * @return form or null if request is neither urlencoded nor multipart
+   */
+  FormData getForm();
+
   /**
    * Redirect the client to a new address
    *
@@ -74,6 +74,15 @@ public interface WindwardContext {
    */
   boolean isClosed();
 
+  /**
+   * Check if response of current context has been written
+   *
+   * @return is done
+   */
+  default boolean isDone() {
+    return isClosed();
+  }
+
   /**
    * Whether context can be cached
    *
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of connections that are closed by server for being idle, slow or used up.
+ *
+ * @author esotericman
+ */
+public final class ConnectionStats {
+  private final LongAdder readIdleClosed = new LongAdder();
+  private final LongAdder writeIdleClosed = new LongAdder();
+  private final LongAdder allIdleClosed = new LongAdder();
+  private final LongAdder requestHeaderTimeouts = new LongAdder();
+  private final LongAdder writeTimeouts = new LongAdder();
+  private final LongAdder maxRequestsReached = new LongAdder();
+
+  public void recordReadIdle() {
+    readIdleClosed.increment();
+  }
+
+  public void recordWriteIdle() {
+    writeIdleClosed.increment();
+  }
+
+  public void recordAllIdle() {
+    allIdleClosed.increment();
+  }
+
+  public void recordRequestHeaderTimeout() {
+    requestHeaderTimeouts.increment();
+  }
+
+  public void recordWriteTimeout() {
+    writeTimeouts.increment();
+  }
+
+  public void recordMaxRequestsReached() {
+    maxRequestsReached.increment();
+  }
+
+  public long getReadIdleClosedCount() {
+    return readIdleClosed.sum();
+  }
+
+  public long getWriteIdleClosedCount() {
+    return writeIdleClosed.sum();
+  }
+
+  public long getAllIdleClosedCount() {
+    return allIdleClosed.sum();
+  }
+
+  public long getRequestHeaderTimeoutCount() {
+    return requestHeaderTimeouts.sum();
+  }
+
+  public long getWriteTimeoutCount() {
+    return writeTimeouts.sum();
+  }
+
+  public long getMaxRequestsReachedCount() {
+    return maxRequestsReached.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "ConnectionStats{readIdleClosed="
+        + getReadIdleClosedCount()
+        + ", writeIdleClosed="
+        + getWriteIdleClosedCount()
+        + ", allIdleClosed="
+        + getAllIdleClosedCount()
+        + ", requestHeaderTimeouts="
+        + getRequestHeaderTimeoutCount()
+        + ", writeTimeouts="
+        + getWriteTimeoutCount()
+        + ", maxRequestsReached="
+        + getMaxRequestsReachedCount()
+        + '}';
+  }
+}
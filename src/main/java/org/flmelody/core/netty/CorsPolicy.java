@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.HttpMethod;
+
+/**
+ * Which cross-origin requests are allowed. Policy is built once and shared by all connections.
+ *
+ * @author esotericman
+ */
+public final class CorsPolicy {
+  private static final String ANY_ORIGIN = "*";
+  private static final String NULL_ORIGIN = "null";
+  private final boolean anyOrigin;
+  private final Set<String> origins;
+  private final boolean allowNullOrigin;
+  private final boolean allowCredentials;
+  private final Set<HttpMethod> allowedMethods;
+  private final boolean anyHeader;
+  private final Set<String> allowedHeaders;
+  private final Set<String> exposedHeaders;
+  private final long maxAgeSeconds;
+
+  private CorsPolicy(CorsPolicyBuilder builder) {
+    this.anyOrigin = builder.anyOrigin;
+    this.origins = Collections.unmodifiableSet(new LinkedHashSet<>(builder.origins));
+    this.allowNullOrigin = builder.allowNullOrigin;
+    this.allowCredentials = builder.allowCredentials;
+    this.allowedMethods = Collections.unmodifiableSet(EnumSet.copyOf(builder.allowedMethods));
+    this.anyHeader = builder.anyHeader;
+    this.allowedHeaders = Collections.unmodifiableSet(new LinkedHashSet<>(builder.allowedHeaders));
+    this.exposedHeaders = Collections.unmodifiableSet(new LinkedHashSet<>(builder.exposedHeaders));
+    this.maxAgeSeconds = builder.maxAgeSeconds;
+  }
+
+  public static CorsPolicyBuilder newBuilder() {
+    return new CorsPolicyBuilder();
+  }
+
+  /**
+   * Policy that allows any origin, null origin included, with credentials and any header, which
+   * is what server allows unless another policy is configured.
+   *
+   * @return permissive policy
+   */
+  public static CorsPolicy permissive() {
+    return newBuilder()
+        .anyOrigin()
+        .allowNullOrigin(true)
+        .allowCredentials(true)
+        .anyHeader()
+        .build();
+  }
+
+  /**
+   * Value of Access-Control-Allow-Origin for origin of a request.
+   *
+   * @param origin origin of request
+   * @return value of header, or null if origin is not allowed
+   */
+  public String allowOrigin(String origin) {
+    if (origin == null) {
+      return null;
+    }
+    if (NULL_ORIGIN.equals(origin)) {
+      return allowNullOrigin ? NULL_ORIGIN : null;
+    }
+    if (anyOrigin) {
+      // Wildcard is not accepted by browsers along with credentials
+      return allowCredentials ? origin : ANY_ORIGIN;
+    }
+    return origins.contains(origin) ? origin : null;
+  }
+
+  public boolean isAllowCredentials() {
+    return allowCredentials;
+  }
+
+  public Set<HttpMethod> getAllowedMethods() {
+    return allowedMethods;
+  }
+
+  public boolean isAnyHeader() {
+    return anyHeader;
+  }
+
+  public Set<String> getAllowedHeaders() {
+    return allowedHeaders;
+  }
+
+  public Set<String> getExposedHeaders() {
+    return exposedHeaders;
+  }
+
+  public long getMaxAgeSeconds() {
+    return maxAgeSeconds;
+  }
+
+  /** Builder for CorsPolicy */
+  public static final class CorsPolicyBuilder {
+    private boolean anyOrigin;
+    private final Set<String> origins = new LinkedHashSet<>();
+    private boolean allowNullOrigin;
+    private boolean allowCredentials;
+    private Set<HttpMethod> allowedMethods =
+        EnumSet.of(
+            HttpMethod.GET,
+            HttpMethod.HEAD,
+            HttpMethod.POST,
+            HttpMethod.PUT,
+            HttpMethod.PATCH,
+            HttpMethod.DELETE);
+    private boolean anyHeader;
+    private final Set<String> allowedHeaders = new LinkedHashSet<>();
+    private final Set<String> exposedHeaders = new LinkedHashSet<>();
+    private long maxAgeSeconds;
+
+    private CorsPolicyBuilder() {}
+
+    public CorsPolicyBuilder anyOrigin() {
+      this.anyOrigin = true;
+      return this;
+    }
+
+    /**
+     * Origins that are allowed, such as {@code https://example.com}.
+     *
+     * @param origins allowed origins
+     * @return builder
+     */
+    public CorsPolicyBuilder origins(String... origins) {
+      this.origins.addAll(Arrays.asList(origins));
+      return this;
+    }
+
+    /**
+     * Allow origin "null", which is sent by sandboxed pages and local files.
+     *
+     * @param allowNullOrigin whether to allow null origin
+     * @return builder
+     */
+    public CorsPolicyBuilder allowNullOrigin(boolean allowNullOrigin) {
+      this.allowNullOrigin = allowNullOrigin;
+      return this;
+    }
+
+    public CorsPolicyBuilder allowCredentials(boolean allowCredentials) {
+      this.allowCredentials = allowCredentials;
+      return this;
+    }
+
+    public CorsPolicyBuilder allowedMethods(HttpMethod... allowedMethods) {
+      Set<HttpMethod> methods = EnumSet.noneOf(HttpMethod.class);
+      methods.addAll(Arrays.asList(allowedMethods));
+      this.allowedMethods = methods;
+      return this;
+    }
+
+    /**
+     * Allow whatever headers a preflight request asks for.
+     *
+     * @return builder
+     */
+    public CorsPolicyBuilder anyHeader() {
+      this.anyHeader = true;
+      return this;
+    }
+
+    public CorsPolicyBuilder allowedHeaders(String... allowedHeaders) {
+      this.allowedHeaders.addAll(Arrays.asList(allowedHeaders));
+      return this;
+    }
+
+    /**
+     * Response headers that scripts are allowed to read.
+     *
+     * @param exposedHeaders exposed headers
+     * @return builder
+     */
+    public CorsPolicyBuilder exposedHeaders(String... exposedHeaders) {
+      this.exposedHeaders.addAll(Arrays.asList(exposedHeaders));
+      return this;
+    }
+
+    /**
+     * How long browsers may cache result of a preflight request, 0 leaves it to browsers.
+     *
+     * @param maxAge time to cache
+     * @param unit unit of time
+     * @return builder
+     */
+    public CorsPolicyBuilder maxAge(long maxAge, TimeUnit unit) {
+      if (maxAge < 0) {
+        throw new IllegalArgumentException("maxAge must not be negative!");
+      }
+      this.maxAgeSeconds = Objects.requireNonNull(unit).toSeconds(maxAge);
+      return this;
+    }
+
+    public CorsPolicy build() {
+      if (!anyOrigin && origins.isEmpty() && !allowNullOrigin) {
+        throw new IllegalStateException("No origin is allowed!");
+      }
+      return new CorsPolicy(this);
+    }
+  }
+}
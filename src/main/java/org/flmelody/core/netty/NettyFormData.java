@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.codec.http.multipart.Attribute;
+import io.netty.handler.codec.http.multipart.FileUpload;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpPostRequestDecoder;
+import io.netty.handler.codec.http.multipart.InterfaceHttpData;
+import io.netty.util.AsciiString;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.flmelody.core.FormData;
+import org.flmelody.core.FormFile;
+import org.flmelody.core.exception.FormDecodeException;
+
+/**
+ * Form decoded by {@link HttpPostRequestDecoder}. Parts larger than threshold of data factory are
+ * spilled to disk, everything is released by {@link #release()}.
+ *
+ * @author esotericman
+ */
+public final class NettyFormData implements FormData {
+  private static final int READ_BUFFER_SIZE = 8192;
+  private final HttpPostRequestDecoder decoder;
+  private final Map<String, List<String>> attributes = new LinkedHashMap<>();
+  private final Map<String, List<FormFile>> files = new LinkedHashMap<>();
+
+  private NettyFormData(HttpPostRequestDecoder decoder) throws IOException {
+    this.decoder = decoder;
+    for (InterfaceHttpData data : decoder.getBodyHttpDatas()) {
+      if (data instanceof FileUpload) {
+        FileUpload fileUpload = (FileUpload) data;
+        if (fileUpload.isCompleted()) {
+          files
+              .computeIfAbsent(fileUpload.getName(), k -> new ArrayList<>())
+              .add(new NettyFormFile(fileUpload));
+        }
+      } else if (data instanceof Attribute) {
+        Attribute attribute = (Attribute) data;
+        attributes
+            .computeIfAbsent(attribute.getName(), k -> new ArrayList<>())
+            .add(attribute.getValue());
+      }
+    }
+  }
+
+  /**
+   * Whether request carries a form.
+   *
+   * @param httpRequest request
+   * @return true if it's multipart or urlencoded
+   */
+  public static boolean isForm(HttpRequest httpRequest) {
+    CharSequence mimeType = HttpUtil.getMimeType(httpRequest);
+    return mimeType != null
+        && (AsciiString.contentEqualsIgnoreCase(
+                mimeType, HttpHeaderValues.APPLICATION_X_WWW_FORM_URLENCODED)
+            || HttpPostRequestDecoder.isMultipart(httpRequest));
+  }
+
+  /**
+   * Decode aggregated request.
+   *
+   * @param factory factory of decoded parts
+   * @param fullHttpRequest request, its content is retained by decoder until release
+   * @return form
+   * @throws FormDecodeException if form is malformed
+   */
+  public static NettyFormData decode(HttpDataFactory factory, FullHttpRequest fullHttpRequest) {
+    HttpPostRequestDecoder decoder = null;
+    try {
+      decoder = new HttpPostRequestDecoder(factory, fullHttpRequest);
+      return new NettyFormData(decoder);
+    } catch (Exception e) {
+      if (decoder != null) {
+        decoder.destroy();
+      }
+      throw new FormDecodeException("Malformed form", e);
+    }
+  }
+
+  /**
+   * Decode request whose body is streamed, the body is consumed chunk by chunk so that only parts
+   * below threshold are held in memory.
+   *
+   * @param factory factory of decoded parts
+   * @param httpRequest head of request
+   * @param body body of request
+   * @return form
+   * @throws FormDecodeException if form is malformed or body can't be read
+   */
+  public static NettyFormData decode(
+      HttpDataFactory factory, HttpRequest httpRequest, InputStream body) {
+    HttpPostRequestDecoder decoder = null;
+    try {
+      decoder = new HttpPostRequestDecoder(factory, httpRequest);
+      // Decoded bytes are dropped as soon as possible
+      decoder.setDiscardThreshold(0);
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      int read;
+      while ((read = body.read(buffer)) != -1) {
+        // Decoder copies what it keeps, so buffer can be reused
+        HttpContent httpContent = new DefaultHttpContent(Unpooled.wrappedBuffer(buffer, 0, read));
+        try {
+          decoder.offer(httpContent);
+        } finally {
+          httpContent.release();
+        }
+      }
+      decoder.offer(LastHttpContent.EMPTY_LAST_CONTENT);
+      return new NettyFormData(decoder);
+    } catch (Exception e) {
+      if (decoder != null) {
+        decoder.destroy();
+      }
+      throw new FormDecodeException("Malformed form", e);
+    }
+  }
+
+  /** Release buffers and delete spilled files of this form. */
+  public void release() {
+    decoder.destroy();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getAttribute(String name) {
+    List<String> values = attributes.get(name);
+    return values == null ? null : values.get(0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<String> getAttributes(String name) {
+    return attributes.getOrDefault(name, Collections.emptyList());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, List<String>> getAttributes() {
+    return Collections.unmodifiableMap(attributes);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public FormFile getFile(String name) {
+    List<FormFile> values = files.get(name);
+    return values == null ? null : values.get(0);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<FormFile> getFiles(String name) {
+    return files.getOrDefault(name, Collections.emptyList());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, List<FormFile>> getFiles() {
+    return Collections.unmodifiableMap(files);
+  }
+
+  private static final class NettyFormFile implements FormFile {
+    private final FileUpload fileUpload;
+
+    private NettyFormFile(FileUpload fileUpload) {
+      this.fileUpload = fileUpload;
+    }
+
+    @Override
+    public String getName() {
+      return fileUpload.getName();
+    }
+
+    @Override
+    public String getFilename() {
+      return fileUpload.getFilename();
+    }
+
+    @Override
+    public String getContentType() {
+      return fileUpload.getContentType();
+    }
+
+    @Override
+    public long length() {
+      return fileUpload.length();
+    }
+
+    @Override
+    public boolean isInMemory() {
+      return fileUpload.isInMemory();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+      if (fileUpload.isInMemory()) {
+        return new ByteBufInputStream(fileUpload.getByteBuf().retainedDuplicate(), true);
+      }
+      return new FileInputStream(fileUpload.getFile());
+    }
+
+    @Override
+    public FileChannel getFileChannel() throws IOException {
+      if (!fileUpload.isInMemory()) {
+        return FileChannel.open(fileUpload.getFile().toPath(), StandardOpenOption.READ);
+      }
+      Path path = Files.createTempFile("windward-", ".tmp");
+      try {
+        try (InputStream inputStream = getInputStream()) {
+          Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return FileChannel.open(
+            path, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+      } catch (IOException e) {
+        Files.deleteIfExists(path);
+        throw e;
+      }
+    }
+
+    @Override
+    public void transferTo(File dest) throws IOException {
+      if (!fileUpload.renameTo(dest)) {
+        throw new IOException("Failed to move " + fileUpload.getFilename() + " to " + dest);
+      }
+    }
+  }
+}
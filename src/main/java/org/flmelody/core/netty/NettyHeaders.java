@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import io.netty.handler.codec.http.HttpHeaders;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Read-only view of netty's headers, names are looked up ignoring case. Nothing is copied unless
+ * all headers are iterated.
+ *
+ * @author esotericman
+ */
+public final class NettyHeaders extends AbstractMap<String, List<String>> {
+  private final HttpHeaders httpHeaders;
+  // Grouped by name when iterated for the first time
+  private Map<String, List<String>> grouped;
+
+  public NettyHeaders(HttpHeaders httpHeaders) {
+    this.httpHeaders = httpHeaders;
+  }
+
+  @Override
+  public List<String> get(Object key) {
+    if (!(key instanceof String)) {
+      return null;
+    }
+    List<String> values = httpHeaders.getAll((String) key);
+    return values.isEmpty() ? null : Collections.unmodifiableList(values);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof String && httpHeaders.contains((String) key);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return httpHeaders.isEmpty();
+  }
+
+  @Override
+  public int size() {
+    return grouped().size();
+  }
+
+  @Override
+  public Set<Entry<String, List<String>>> entrySet() {
+    return grouped().entrySet();
+  }
+
+  private Map<String, List<String>> grouped() {
+    if (grouped == null) {
+      Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      Iterator<Entry<String, String>> entryIterator = httpHeaders.iteratorAsString();
+      while (entryIterator.hasNext()) {
+        Entry<String, String> next = entryIterator.next();
+        headers.computeIfAbsent(next.getKey(), k -> new ArrayList<>()).add(next.getValue());
+      }
+      grouped = Collections.unmodifiableMap(headers);
+    }
+    return grouped;
+  }
+}
@@ -17,27 +17,62 @@
 package org.flmelody.core.netty;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerAdapter;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.http.HttpServerCodec;
-import io.netty.handler.codec.http.cors.CorsConfigBuilder;
-import io.netty.handler.codec.http.cors.CorsHandler;
-import io.netty.handler.ssl.OptionalSslHandler;
-import io.netty.handler.ssl.SslContext;
-import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
+import io.netty.handler.ssl.SslHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import io.netty.util.AsciiString;
+import io.netty.util.CharsetUtil;
+import io.netty.util.NettyRuntime;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.flmelody.core.HttpServer;
 import org.flmelody.core.SslPair;
 import org.flmelody.core.exception.ServerException;
+import org.flmelody.core.netty.handler.ConnectionGuardHandler;
+import org.flmelody.core.netty.handler.HttpBodyAggregator;
+import org.flmelody.core.netty.handler.HttpCorsHandler;
 import org.flmelody.core.netty.handler.HttpEventHandler;
+import org.flmelody.core.netty.handler.HttpResponseCompressor;
 import org.flmelody.core.netty.handler.HttpServerHandler;
+import org.flmelody.core.netty.handler.RequestGuardHandler;
+import org.flmelody.core.netty.ssl.TlsContexts;
+import org.flmelody.core.netty.ssl.TlsOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,26 +81,105 @@ import org.slf4j.LoggerFactory;
  */
 public class NettyHttpServer implements HttpServer {
   private static final Logger logger = LoggerFactory.getLogger(NettyHttpServer.class);
-  private final int port;
+  private final ServerOptions serverOptions;
+  private final ConnectionStats connectionStats = new ConnectionStats();
 
   public NettyHttpServer(int port) {
-    this.port = port;
+    this(port, NettyTransport.AUTO, false);
+  }
+
+  /**
+   * Server with specific transport.
+   *
+   * @param port server port
+   * @param transport transport of server
+   * @param reusePort whether to bind one acceptor per event loop with SO_REUSEPORT, which only
+   *     takes effect on epoll transport
+   */
+  public NettyHttpServer(int port, NettyTransport transport, boolean reusePort) {
+    this(ServerOptions.newBuilder().port(port).transport(transport).reusePort(reusePort).build());
+  }
+
+  /**
+   * Server with specific options.
+   *
+   * @param serverOptions options of server
+   */
+  public NettyHttpServer(ServerOptions serverOptions) {
+    this.serverOptions = Objects.requireNonNull(serverOptions);
+  }
+
+  /**
+   * Counters of connections closed by server.
+   *
+   * @return connection stats
+   */
+  public ConnectionStats getConnectionStats() {
+    return connectionStats;
   }
 
   @Override
   public void run(Object... args) throws ServerException {
-    EventLoopGroup bossGroup = new NioEventLoopGroup();
-    EventLoopGroup workerGroup = new NioEventLoopGroup();
+    int port = serverOptions.getPort();
+    boolean reusePort = serverOptions.isReusePort();
+    NettyTransport resolvedTransport = serverOptions.getTransport().resolve();
+    boolean multipleAcceptors = reusePort && resolvedTransport == NettyTransport.EPOLL;
+    if (reusePort && !multipleAcceptors) {
+      logger.atWarn().log("SO_REUSEPORT requires epoll transport, only one acceptor is bound");
+    }
+    int bossThreads = serverOptions.getBossThreads();
+    int acceptors =
+        multipleAcceptors
+            ? (bossThreads > 0 ? bossThreads : NettyRuntime.availableProcessors())
+            : 1;
+    EventLoopGroup bossGroup =
+        resolvedTransport.newEventLoopGroup(bossThreads > 0 ? bossThreads : acceptors);
+    EventLoopGroup workerGroup =
+        resolvedTransport.newEventLoopGroup(serverOptions.getWorkerThreads());
+    ScheduledExecutorService reloadScheduler = null;
 
     try {
+      ServerChannelInitializer serverChannelInitializer =
+          new ServerChannelInitializer(serverOptions, connectionStats, args);
+      reloadScheduler = serverChannelInitializer.scheduleReload();
       ServerBootstrap b = new ServerBootstrap();
       b.group(bossGroup, workerGroup)
-          .channel(NioServerSocketChannel.class)
-          .childHandler(new ServerChannelInitializer(args));
+          .channel(resolvedTransport.serverChannelClass())
+          .childHandler(serverChannelInitializer)
+          .childOption(ChannelOption.TCP_NODELAY, serverOptions.isTcpNoDelay())
+          .childOption(ChannelOption.SO_KEEPALIVE, serverOptions.isKeepAlive())
+          .childOption(
+              ChannelOption.WRITE_BUFFER_WATER_MARK,
+              new WriteBufferWaterMark(
+                  serverOptions.getWriteBufferLowWaterMark(),
+                  serverOptions.getWriteBufferHighWaterMark()));
+      if (serverOptions.getBacklog() > 0) {
+        b.option(ChannelOption.SO_BACKLOG, serverOptions.getBacklog());
+      }
+      if (serverOptions.getAllocator() != null) {
+        b.option(ChannelOption.ALLOCATOR, serverOptions.getAllocator())
+            .childOption(ChannelOption.ALLOCATOR, serverOptions.getAllocator());
+      }
+      if (multipleAcceptors) {
+        b.option(EpollChannelOption.SO_REUSEPORT, true);
+      }
       try {
-        ChannelFuture f = b.bind(port).sync();
-        logger.atInfo().log("Service started successfully, listening on port {}", port);
-        f.channel().closeFuture().sync();
+        // Every bind registers a new acceptor on next event loop of boss group
+        List<Channel> channels = new ArrayList<>(acceptors);
+        for (int i = 0; i < acceptors; i++) {
+          channels.add(b.bind(port).sync().channel());
+        }
+        logger
+            .atInfo()
+            .log(
+                "Service started successfully, listening on port {} with {} transport and {}"
+                    + " acceptor(s)",
+                port,
+                resolvedTransport,
+                acceptors);
+        for (Channel channel : channels) {
+          channel.closeFuture().sync();
+        }
       } catch (InterruptedException e) {
         logger.atInfo().log("Service run error", e);
         Thread.currentThread().interrupt();
@@ -74,56 +188,293 @@ public class NettyHttpServer implements HttpServer {
     } finally {
       bossGroup.shutdownGracefully();
       workerGroup.shutdownGracefully();
+      if (reloadScheduler != null) {
+        reloadScheduler.shutdownNow();
+      }
       logger.atInfo().log("Server shutdown");
     }
   }
 
   /** Initializer for server */
-  private static class ServerChannelInitializer extends ChannelInitializer<Channel> {
-    private SslContext sslContext;
-    private boolean forceSsl;
+  static class ServerChannelInitializer extends ChannelInitializer<Channel> {
+    private final ServerOptions serverOptions;
+    private final ConnectionStats connectionStats;
+    // Stateless handlers, shared by all connections
+    private final ConnectionGuardHandler connectionGuardHandler;
+    private final HttpCorsHandler httpCorsHandler;
+    private final HttpEventHandler httpEventHandler = new HttpEventHandler();
+    private final ChannelInitializer<Http2StreamChannel> http2StreamInitializer =
+        new ChannelInitializer<Http2StreamChannel>() {
+          @Override
+          protected void initChannel(Http2StreamChannel ch) {
+            // Every stream is converted to HTTP/1.1 objects, so handlers stay the same
+            ch.pipeline().addLast(new Http2StreamFrameToHttpObjectCodec(true));
+            configureHandlers(ch.pipeline());
+          }
+        };
+    private final HttpServerUpgradeHandler.UpgradeCodecFactory upgradeCodecFactory =
+        protocol -> {
+          if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+            return new Http2ServerUpgradeCodec(
+                newHttp2FrameCodec(), newHttp2MultiplexHandler(), Http1HandlersRemover.INSTANCE);
+          }
+          return null;
+        };
+    private final ChannelInitializer<Channel> priorKnowledgeInitializer =
+        new ChannelInitializer<Channel>() {
+          @Override
+          protected void initChannel(Channel ch) {
+            configureHttp2(ch.pipeline());
+            ch.pipeline().addLast(Http1HandlersRemover.INSTANCE);
+          }
+        };
+    // Shared by all connections, it tracks parts of every request until they are released
+    private final HttpDataFactory httpDataFactory;
+    private TlsContexts tlsContexts;
 
-    private ServerChannelInitializer(Object... args) {
+    ServerChannelInitializer(
+        ServerOptions serverOptions, ConnectionStats connectionStats, Object... args) {
+      this.serverOptions = serverOptions;
+      this.connectionStats = connectionStats;
+      this.connectionGuardHandler = new ConnectionGuardHandler(connectionStats);
+      this.httpCorsHandler =
+          serverOptions.getCorsPolicy() == null
+              ? null
+              : new HttpCorsHandler(serverOptions.getCorsPolicy());
+      DefaultHttpDataFactory defaultHttpDataFactory =
+          new DefaultHttpDataFactory(serverOptions.getFormSpillThreshold(), CharsetUtil.UTF_8);
+      // Spilled files are deleted once request is done, not kept until exit
+      defaultHttpDataFactory.setDeleteOnExit(false);
+      this.httpDataFactory = defaultHttpDataFactory;
       detectSsl(args);
     }
 
+    /**
+     * Check certificates on a thread of their own, file reading and key parsing would otherwise
+     * stall accepting or serving connections.
+     *
+     * @return scheduler of reloading, or null if certificates are not reloaded
+     */
+    private ScheduledExecutorService scheduleReload() {
+      if (tlsContexts == null || tlsContexts.getReloadIntervalMillis() <= 0) {
+        return null;
+      }
+      long interval = tlsContexts.getReloadIntervalMillis();
+      ScheduledExecutorService scheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              new DefaultThreadFactory("windward-tls-reload", true));
+      scheduler.scheduleWithFixedDelay(
+          tlsContexts::reloadIfModified, interval, interval, TimeUnit.MILLISECONDS);
+      return scheduler;
+    }
+
     @Override
     protected void initChannel(Channel ch) throws Exception {
       ChannelPipeline p = ch.pipeline();
-      if (Objects.nonNull(sslContext)) {
-        if (forceSsl) {
-          p.addLast(sslContext.newHandler(ch.alloc()));
+      if (serverOptions.getFlushConsolidation() > 0) {
+        // Pipelined responses and frames of streams are flushed together
+        p.addLast(new FlushConsolidationHandler(serverOptions.getFlushConsolidation(), true));
+      }
+      configureTimeouts(p);
+      if (Objects.isNull(tlsContexts)) {
+        configureCleartext(p);
+      } else if (tlsContexts.isForceSsl()) {
+        p.addLast(tlsContexts.newHandler(ch.alloc()));
+        if (serverOptions.isHttp2()) {
+          p.addLast(new ProtocolNegotiationHandler());
         } else {
-          p.addLast(new OptionalSslHandler(sslContext));
+          configureHttp1(p);
+        }
+      } else {
+        p.addLast(new OptionalTlsHandler());
+        if (!serverOptions.isHttp2()) {
+          configureHttp1(p);
         }
       }
-      p.addLast(new HttpServerCodec());
+    }
+
+    // Timeouts of connection, whatever protocol it speaks
+    private void configureTimeouts(ChannelPipeline p) {
+      boolean idle =
+          serverOptions.getReaderIdleTimeMillis() > 0
+              || serverOptions.getWriterIdleTimeMillis() > 0
+              || serverOptions.getAllIdleTimeMillis() > 0;
+      if (idle) {
+        p.addLast(
+            new IdleStateHandler(
+                serverOptions.getReaderIdleTimeMillis(),
+                serverOptions.getWriterIdleTimeMillis(),
+                serverOptions.getAllIdleTimeMillis(),
+                TimeUnit.MILLISECONDS));
+      }
+      if (serverOptions.getWriteTimeoutMillis() > 0) {
+        p.addLast(
+            new WriteTimeoutHandler(serverOptions.getWriteTimeoutMillis(), TimeUnit.MILLISECONDS));
+      }
+      if (idle || serverOptions.getWriteTimeoutMillis() > 0) {
+        p.addLast(connectionGuardHandler);
+      }
+    }
+
+    private void configureRequestGuard(ChannelPipeline p) {
+      if (serverOptions.getRequestHeaderTimeoutMillis() > 0
+          || serverOptions.getMaxRequestsPerConnection() > 0) {
+        p.addLast(
+            new RequestGuardHandler(
+                connectionStats,
+                serverOptions.getRequestHeaderTimeoutMillis(),
+                serverOptions.getMaxRequestsPerConnection()));
+      }
+    }
+
+    private void configureCleartext(ChannelPipeline p) {
+      if (!serverOptions.isHttp2()) {
+        configureHttp1(p);
+        return;
+      }
+      // Prior knowledge and h2c upgrade, anything else stays on HTTP/1.1
+      HttpServerCodec httpServerCodec = newHttpServerCodec();
       p.addLast(
-          new CorsHandler(
-              CorsConfigBuilder.forAnyOrigin().allowNullOrigin().allowCredentials().build()));
-      p.addLast(new HttpObjectAggregator(65536));
+          new CleartextHttp2ServerUpgradeHandler(
+              httpServerCodec,
+              new HttpServerUpgradeHandler(
+                  httpServerCodec, upgradeCodecFactory, serverOptions.getMaxContentLength()),
+              priorKnowledgeInitializer));
+      configureRequestGuard(p);
+      configureHandlers(p);
+    }
+
+    private void configureHttp1(ChannelPipeline p) {
+      p.addLast(newHttpServerCodec());
+      configureRequestGuard(p);
+      configureHandlers(p);
+    }
+
+    private void configureHttp2(ChannelPipeline p) {
+      p.addLast(newHttp2FrameCodec());
+      p.addLast(newHttp2MultiplexHandler());
+    }
+
+    // Handlers after codec, shared by connections of HTTP/1.1 and streams of HTTP/2
+    private void configureHandlers(ChannelPipeline p) {
+      if (serverOptions.isCompression()) {
+        p.addLast(
+            new HttpResponseCompressor(
+                serverOptions.getCompressionLevel(),
+                serverOptions.getCompressionThreshold(),
+                serverOptions.getCompressibleTypes()));
+      }
+      if (httpCorsHandler != null) {
+        p.addLast(httpCorsHandler);
+      }
+      p.addLast(new HttpBodyAggregator(serverOptions.getMaxContentLength()));
       p.addLast(new ChunkedWriteHandler());
-      p.addLast(new HttpServerHandler());
-      p.addLast(new HttpEventHandler());
+      p.addLast(new HttpServerHandler(httpDataFactory));
+      p.addLast(httpEventHandler);
+    }
+
+    private HttpServerCodec newHttpServerCodec() {
+      return new HttpServerCodec(
+          serverOptions.getMaxInitialLineLength(),
+          serverOptions.getMaxHeaderSize(),
+          serverOptions.getMaxChunkSize());
+    }
+
+    private Http2FrameCodec newHttp2FrameCodec() {
+      return Http2FrameCodecBuilder.forServer()
+          .initialSettings(
+              Http2Settings.defaultSettings().maxHeaderListSize(serverOptions.getMaxHeaderSize()))
+          .build();
+    }
+
+    private Http2MultiplexHandler newHttp2MultiplexHandler() {
+      return new Http2MultiplexHandler(http2StreamInitializer);
     }
 
     private void detectSsl(Object... args) {
-      if (args != null) {
+      TlsOptions tlsOptions = serverOptions.getTlsOptions();
+      if (tlsOptions == null && args != null) {
         for (Object arg : args) {
-          if (Objects.isNull(sslContext)) {
-            if (arg instanceof SslPair) {
-              SslPair sslPair = (SslPair) arg;
-              try {
-                this.forceSsl = sslPair.forceStatus();
-                this.sslContext =
-                    SslContextBuilder.forServer(sslPair.certFile(), sslPair.keyFile()).build();
-              } catch (Exception e) {
-                throw new ServerException("Failed to initialize ssl context");
-              }
-            }
+          if (arg instanceof SslPair) {
+            tlsOptions = TlsOptions.of((SslPair) arg);
+            break;
           }
         }
       }
+      if (tlsOptions != null) {
+        this.tlsContexts = new TlsContexts(tlsOptions, serverOptions.isHttp2());
+      }
+    }
+
+    /** Speak TLS or cleartext on the same port, whichever client starts with. */
+    private final class OptionalTlsHandler extends ByteToMessageDecoder {
+      // Enough to tell a TLS record from a request line
+      private static final int TLS_RECORD_HEADER_LENGTH = 5;
+
+      @Override
+      protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (in.readableBytes() < TLS_RECORD_HEADER_LENGTH) {
+          return;
+        }
+        ChannelPipeline p = ctx.pipeline();
+        if (SslHandler.isEncrypted(in)) {
+          if (serverOptions.isHttp2()) {
+            // Protocol is negotiated right after handshake
+            p.addAfter(ctx.name(), null, new ProtocolNegotiationHandler());
+          }
+          p.replace(this, null, tlsContexts.newHandler(ctx.alloc()));
+          return;
+        }
+        if (serverOptions.isHttp2()) {
+          configureCleartext(p);
+        }
+        // Buffered bytes go on to codec
+        p.remove(this);
+      }
+    }
+
+    /** Choose HTTP/2 or HTTP/1.1 according to ALPN. */
+    private final class ProtocolNegotiationHandler extends ApplicationProtocolNegotiationHandler {
+
+      private ProtocolNegotiationHandler() {
+        super(ApplicationProtocolNames.HTTP_1_1);
+      }
+
+      @Override
+      protected void configurePipeline(ChannelHandlerContext ctx, String protocol) {
+        if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+          configureHttp2(ctx.pipeline());
+        } else {
+          configureHttp1(ctx.pipeline());
+        }
+      }
+    }
+  }
+
+  /** Remove handlers of HTTP/1.1 from connection once it's upgraded to HTTP/2. */
+  @ChannelHandler.Sharable
+  private static final class Http1HandlersRemover extends ChannelHandlerAdapter {
+    private static final Http1HandlersRemover INSTANCE = new Http1HandlersRemover();
+    private static final List<Class<? extends ChannelHandler>> HTTP1_HANDLERS =
+        Arrays.asList(
+            RequestGuardHandler.class,
+            HttpResponseCompressor.class,
+            HttpCorsHandler.class,
+            HttpBodyAggregator.class,
+            ChunkedWriteHandler.class,
+            HttpServerHandler.class,
+            HttpEventHandler.class);
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+      ChannelPipeline p = ctx.pipeline();
+      // Exact classes only, upgrade handler is an aggregator as well
+      for (Map.Entry<String, ChannelHandler> entry : p) {
+        if (HTTP1_HANDLERS.contains(entry.getValue().getClass())) {
+          p.remove(entry.getKey());
+        }
+      }
+      p.remove(this);
     }
   }
 }
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Request body that is read while it's still arriving. Chunks are queued as they are, and the body
+ * reports itself paused once too many bytes are waiting, so whoever reads the channel can keep
+ * memory bounded whatever the size of body is.
+ *
+ * @author esotericman
+ */
+public final class NettyRequestBody extends InputStream {
+  private final Channel channel;
+  private final int highWaterMark;
+  private final int lowWaterMark;
+  private final Runnable drained;
+  // Everything below is guarded by lock, readers may be virtual threads that mustn't pin carriers
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Queue<ByteBuf> chunks = new ArrayDeque<>();
+  private int pending;
+  private boolean paused;
+  private boolean completed;
+  private boolean closed;
+  private Throwable cause;
+  // Buffer of single byte reads
+  private final byte[] single = new byte[1];
+
+  /**
+   * Stream of channel.
+   *
+   * @param channel channel that receives body
+   * @param highWaterMark body is paused once queued bytes exceed it
+   * @param drained run on event loop of channel once paused body is drained
+   */
+  public NettyRequestBody(Channel channel, int highWaterMark, Runnable drained) {
+    this.channel = channel;
+    this.highWaterMark = highWaterMark;
+    this.lowWaterMark = highWaterMark >>> 1;
+    this.drained = drained;
+  }
+
+  /**
+   * Queue content received by event loop.
+   *
+   * @param content content, retained if it's queued
+   */
+  public void offer(ByteBuf content) {
+    lock.lock();
+    try {
+      if (closed || !content.isReadable()) {
+        return;
+      }
+      chunks.offer(content.retain());
+      pending += content.readableBytes();
+      if (pending > highWaterMark) {
+        paused = true;
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** All content has been received. */
+  public void complete() {
+    lock.lock();
+    try {
+      completed = true;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Body can't be received completely.
+   *
+   * @param cause cause
+   */
+  public void fail(Throwable cause) {
+    lock.lock();
+    try {
+      if (!completed) {
+        this.cause = cause;
+      }
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public boolean isCompleted() {
+    lock.lock();
+    try {
+      return completed;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Whether too many bytes are waiting to be read, reading of channel should pause until drained
+   * callback runs.
+   *
+   * @return true if body is paused
+   */
+  public boolean isPaused() {
+    lock.lock();
+    try {
+      return paused;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int read() throws IOException {
+    lock.lock();
+    try {
+      return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int read(byte[] bytes, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int read;
+    boolean resumed;
+    lock.lock();
+    try {
+      ByteBuf chunk;
+      while ((chunk = chunks.peek()) == null) {
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+        if (cause != null) {
+          throw new IOException("Request body is incomplete", cause);
+        }
+        if (completed) {
+          return -1;
+        }
+        if (channel.eventLoop().inEventLoop()) {
+          throw new IllegalStateException("Request body can't be read on event loop");
+        }
+        try {
+          changed.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+      read = Math.min(len, chunk.readableBytes());
+      chunk.readBytes(bytes, off, read);
+      if (!chunk.isReadable()) {
+        chunks.poll().release();
+      }
+      pending -= read;
+      resumed = resumeIfDrained();
+    } finally {
+      lock.unlock();
+    }
+    if (resumed) {
+      channel.eventLoop().execute(drained);
+    }
+    return read;
+  }
+
+  @Override
+  public int available() {
+    lock.lock();
+    try {
+      return pending;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Discard queued and upcoming content, the connection keeps reading. */
+  @Override
+  public void close() {
+    boolean resumed;
+    lock.lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      ByteBuf chunk;
+      while ((chunk = chunks.poll()) != null) {
+        chunk.release();
+      }
+      pending = 0;
+      resumed = resumeIfDrained();
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    if (resumed) {
+      channel.eventLoop().execute(drained);
+    }
+  }
+
+  // Callback runs out of lock, owner of channel may query this body again
+  private boolean resumeIfDrained() {
+    if (paused && pending <= lowWaterMark) {
+      paused = false;
+      return true;
+    }
+    return false;
+  }
+}
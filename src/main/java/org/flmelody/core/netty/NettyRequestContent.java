@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import org.flmelody.core.RequestContent;
+
+/**
+ * Content of request backed by netty's buffer, which is retained until request is handled.
+ *
+ * @author esotericman
+ */
+public final class NettyRequestContent implements RequestContent {
+  private ByteBuf content;
+  // Whether content has been copied to heap
+  private boolean detached;
+
+  /**
+   * Content that retains given buffer.
+   *
+   * @param content content of request
+   */
+  public NettyRequestContent(ByteBuf content) {
+    this.content = content.retainedDuplicate();
+  }
+
+  @Override
+  public int length() {
+    return content().readableBytes();
+  }
+
+  @Override
+  public byte[] toByteArray() {
+    return ByteBufUtil.getBytes(content());
+  }
+
+  @Override
+  public ByteBuffer asByteBuffer() {
+    // Buffer may be kept by caller, pooled memory is never handed out
+    detach();
+    return content().nioBuffer().asReadOnlyBuffer();
+  }
+
+  @Override
+  public InputStream asInputStream() {
+    return new ByteBufInputStream(content().duplicate());
+  }
+
+  @Override
+  public String toString(Charset charset) {
+    return content().toString(charset);
+  }
+
+  /** Copy content to heap and release buffer, for requests that outlive their handling. */
+  public void detach() {
+    ByteBuf retained = content;
+    if (retained != null && !detached) {
+      detached = true;
+      content = Unpooled.wrappedBuffer(ByteBufUtil.getBytes(retained));
+      retained.release();
+    }
+  }
+
+  /** Release buffer, content can't be read afterwards. */
+  public void release() {
+    ByteBuf retained = content;
+    if (retained != null) {
+      content = null;
+      if (!detached) {
+        retained.release();
+      }
+    }
+  }
+
+  private ByteBuf content() {
+    ByteBuf retained = content;
+    if (retained == null) {
+      throw new IllegalStateException("Content is released once request is handled");
+    }
+    return retained;
+  }
+}
@@ -22,6 +22,8 @@ import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufHolder;
 import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
@@ -35,7 +37,6 @@ import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.stream.ChunkedStream;
-import io.netty.util.CharsetUtil;
 import java.util.Collections;
 import java.util.Map;
 import org.flmelody.core.HttpHeader;
@@ -108,7 +109,7 @@ public class NettyResponseWriter implements ResponseWriter {
         ctx.fireUserEventTriggered(DestroyDelayEvent.DESTROY_DELAY);
       } else {
         ByteBuf response = resolveRawResponse(mediaType, data);
-        ByteBufInputStream contentStream = new ByteBufInputStream(response);
+        ByteBufInputStream contentStream = new ByteBufInputStream(response, true);
         ctx.writeAndFlush(new ChunkedStream(contentStream));
       }
     } else {
@@ -137,6 +138,14 @@ public class NettyResponseWriter implements ResponseWriter {
     ctx.flush();
   }
 
+  @Override
+  public void complete() {
+    // Response has been written, keep-alive connection waits for next request
+    if (!keepConnection) {
+      close();
+    }
+  }
+
   @Override
   public void close() {
     if (ctx.channel().isActive()) {
@@ -151,11 +160,20 @@ public class NettyResponseWriter implements ResponseWriter {
       response = Unpooled.EMPTY_BUFFER;
     } else {
       if (MediaType.APPLICATION_JSON_VALUE.equals(mediaType)) {
-        response =
-            Unpooled.copiedBuffer(
-                Windward.plugin(JsonPlugin.class).toJson(rawResponse), CharsetUtil.UTF_8);
+        // Serialize straight into a pooled buffer, content length is what has been written
+        response = ctx.alloc().buffer();
+        boolean written = false;
+        try {
+          Windward.plugin(JsonPlugin.class)
+              .writeJson(rawResponse, new ByteBufOutputStream(response));
+          written = true;
+        } finally {
+          if (!written) {
+            response.release();
+          }
+        }
       } else {
-        response = Unpooled.copiedBuffer(String.valueOf(rawResponse), CharsetUtil.UTF_8);
+        response = ByteBufUtil.writeUtf8(ctx.alloc(), String.valueOf(rawResponse));
       }
     }
     return response;
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.util.Locale;
+import org.flmelody.core.exception.ServerException;
+
+/**
+ * Transport of server. {@link #AUTO} prefers native epoll on Linux and falls back to NIO, the
+ * choice can also be forced with system property {@value #TRANSPORT_PROPERTY}.
+ *
+ * @author esotericman
+ */
+public enum NettyTransport {
+  AUTO,
+  EPOLL,
+  NIO;
+
+  public static final String TRANSPORT_PROPERTY = "windward.transport";
+
+  /**
+   * Resolve transport that will actually be used.
+   *
+   * @return {@link #EPOLL} or {@link #NIO}
+   * @throws ServerException if epoll is required but not available
+   */
+  public NettyTransport resolve() throws ServerException {
+    NettyTransport transport = this;
+    if (transport == AUTO) {
+      String property = System.getProperty(TRANSPORT_PROPERTY);
+      if (property != null && !property.trim().isEmpty()) {
+        transport = valueOf(property.trim().toUpperCase(Locale.ROOT));
+      }
+    }
+    switch (transport) {
+      case EPOLL:
+        if (!Epoll.isAvailable()) {
+          throw new ServerException(
+              "Epoll transport is not available: " + Epoll.unavailabilityCause());
+        }
+        return EPOLL;
+      case NIO:
+        return NIO;
+      default:
+        return isEpollAvailable() ? EPOLL : NIO;
+    }
+  }
+
+  /**
+   * New event loop group of this transport.
+   *
+   * @param threads number of threads, 0 means netty's default
+   * @return event loop group
+   */
+  public EventLoopGroup newEventLoopGroup(int threads) {
+    if (resolve() == EPOLL) {
+      return new EpollEventLoopGroup(threads);
+    }
+    return new NioEventLoopGroup(threads);
+  }
+
+  /**
+   * Server channel of this transport.
+   *
+   * @return server channel class
+   */
+  public Class<? extends ServerChannel> serverChannelClass() {
+    if (resolve() == EPOLL) {
+      return EpollServerSocketChannel.class;
+    }
+    return NioServerSocketChannel.class;
+  }
+
+  private static boolean isEpollAvailable() {
+    try {
+      return Epoll.isAvailable();
+    } catch (Throwable e) {
+      // Classes of native transport are missing
+      return false;
+    }
+  }
+}
@@ -0,0 +1,679 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.MediaType;
+import org.flmelody.core.netty.ssl.TlsOptions;
+
+/**
+ * Tuning options of server. Options that are not set default to:
+ *
+ * <ul>
+ *   <li>port 8080, transport detected, boss threads as described by {@link
+ *       ServerOptionsBuilder#bossThreads(int)} and netty's number of workers
+ *   <li>TCP_NODELAY on, SO_KEEPALIVE off, backlog and allocator of netty, write buffer water
+ *       marks of 32 KiB and 64 KiB
+ *   <li>initial line of 4096 bytes, headers and chunks of 8192 bytes, aggregated content of 65536
+ *       bytes
+ *   <li>worker pool of max(8, processors * 4) threads queueing at most 1024 handlers
+ *   <li>HTTP/2 off, flushes consolidated after 256 of them, forms spilled to disk above 16 KiB
+ *   <li>compression off, at level 6 above 1024 bytes once it's turned on
+ *   <li>no idle, header or write timeouts and no limit of requests per connection
+ *   <li>permissive CORS policy, see {@link CorsPolicy#permissive()}, and no TLS
+ * </ul>
+ *
+ * @author esotericman
+ */
+public final class ServerOptions {
+  private final int port;
+  private final NettyTransport transport;
+  private final boolean reusePort;
+  private final int bossThreads;
+  private final int workerThreads;
+  private final ByteBufAllocator allocator;
+  private final boolean tcpNoDelay;
+  private final boolean keepAlive;
+  private final int backlog;
+  private final int writeBufferLowWaterMark;
+  private final int writeBufferHighWaterMark;
+  private final int maxInitialLineLength;
+  private final int maxHeaderSize;
+  private final int maxChunkSize;
+  private final int maxContentLength;
+  private final int workerPoolThreads;
+  private final int workerPoolQueueCapacity;
+  private final boolean http2;
+  private final int flushConsolidation;
+  private final long formSpillThreshold;
+  private final boolean compression;
+  private final int compressionLevel;
+  private final int compressionThreshold;
+  private final Set<MediaType> compressibleTypes;
+  private final long readerIdleTimeMillis;
+  private final long writerIdleTimeMillis;
+  private final long allIdleTimeMillis;
+  private final long requestHeaderTimeoutMillis;
+  private final long writeTimeoutMillis;
+  private final int maxRequestsPerConnection;
+  private final CorsPolicy corsPolicy;
+  private final TlsOptions tlsOptions;
+
+  private ServerOptions(ServerOptionsBuilder builder) {
+    this.port = builder.port;
+    this.transport = builder.transport;
+    this.reusePort = builder.reusePort;
+    this.bossThreads = builder.bossThreads;
+    this.workerThreads = builder.workerThreads;
+    this.allocator = builder.allocator;
+    this.tcpNoDelay = builder.tcpNoDelay;
+    this.keepAlive = builder.keepAlive;
+    this.backlog = builder.backlog;
+    this.writeBufferLowWaterMark = builder.writeBufferLowWaterMark;
+    this.writeBufferHighWaterMark = builder.writeBufferHighWaterMark;
+    this.maxInitialLineLength = builder.maxInitialLineLength;
+    this.maxHeaderSize = builder.maxHeaderSize;
+    this.maxChunkSize = builder.maxChunkSize;
+    this.maxContentLength = builder.maxContentLength;
+    this.workerPoolThreads = builder.workerPoolThreads;
+    this.workerPoolQueueCapacity = builder.workerPoolQueueCapacity;
+    this.http2 = builder.http2;
+    this.flushConsolidation = builder.flushConsolidation;
+    this.formSpillThreshold = builder.formSpillThreshold;
+    this.compression = builder.compression;
+    this.compressionLevel = builder.compressionLevel;
+    this.compressionThreshold = builder.compressionThreshold;
+    this.compressibleTypes = Collections.unmodifiableSet(EnumSet.copyOf(builder.compressibleTypes));
+    this.readerIdleTimeMillis = builder.readerIdleTimeMillis;
+    this.writerIdleTimeMillis = builder.writerIdleTimeMillis;
+    this.allIdleTimeMillis = builder.allIdleTimeMillis;
+    this.requestHeaderTimeoutMillis = builder.requestHeaderTimeoutMillis;
+    this.writeTimeoutMillis = builder.writeTimeoutMillis;
+    this.maxRequestsPerConnection = builder.maxRequestsPerConnection;
+    this.corsPolicy = builder.corsPolicy;
+    this.tlsOptions = builder.tlsOptions;
+  }
+
+  public static ServerOptionsBuilder newBuilder() {
+    return new ServerOptionsBuilder();
+  }
+
+  /**
+   * Builder that starts with options of this one.
+   *
+   * @return builder
+   */
+  public ServerOptionsBuilder toBuilder() {
+    return new ServerOptionsBuilder(this);
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  public NettyTransport getTransport() {
+    return transport;
+  }
+
+  public boolean isReusePort() {
+    return reusePort;
+  }
+
+  public int getBossThreads() {
+    return bossThreads;
+  }
+
+  public int getWorkerThreads() {
+    return workerThreads;
+  }
+
+  public ByteBufAllocator getAllocator() {
+    return allocator;
+  }
+
+  public boolean isTcpNoDelay() {
+    return tcpNoDelay;
+  }
+
+  public boolean isKeepAlive() {
+    return keepAlive;
+  }
+
+  public int getBacklog() {
+    return backlog;
+  }
+
+  public int getWriteBufferLowWaterMark() {
+    return writeBufferLowWaterMark;
+  }
+
+  public int getWriteBufferHighWaterMark() {
+    return writeBufferHighWaterMark;
+  }
+
+  public int getMaxInitialLineLength() {
+    return maxInitialLineLength;
+  }
+
+  public int getMaxHeaderSize() {
+    return maxHeaderSize;
+  }
+
+  public int getMaxChunkSize() {
+    return maxChunkSize;
+  }
+
+  public int getMaxContentLength() {
+    return maxContentLength;
+  }
+
+  public int getWorkerPoolThreads() {
+    return workerPoolThreads;
+  }
+
+  public int getWorkerPoolQueueCapacity() {
+    return workerPoolQueueCapacity;
+  }
+
+  public boolean isHttp2() {
+    return http2;
+  }
+
+  public int getFlushConsolidation() {
+    return flushConsolidation;
+  }
+
+  public long getFormSpillThreshold() {
+    return formSpillThreshold;
+  }
+
+  public boolean isCompression() {
+    return compression;
+  }
+
+  public int getCompressionLevel() {
+    return compressionLevel;
+  }
+
+  public int getCompressionThreshold() {
+    return compressionThreshold;
+  }
+
+  public Set<MediaType> getCompressibleTypes() {
+    return compressibleTypes;
+  }
+
+  public long getReaderIdleTimeMillis() {
+    return readerIdleTimeMillis;
+  }
+
+  public long getWriterIdleTimeMillis() {
+    return writerIdleTimeMillis;
+  }
+
+  public long getAllIdleTimeMillis() {
+    return allIdleTimeMillis;
+  }
+
+  public long getRequestHeaderTimeoutMillis() {
+    return requestHeaderTimeoutMillis;
+  }
+
+  public long getWriteTimeoutMillis() {
+    return writeTimeoutMillis;
+  }
+
+  public int getMaxRequestsPerConnection() {
+    return maxRequestsPerConnection;
+  }
+
+  public CorsPolicy getCorsPolicy() {
+    return corsPolicy;
+  }
+
+  public TlsOptions getTlsOptions() {
+    return tlsOptions;
+  }
+
+  /** Builder for ServerOptions */
+  public static final class ServerOptionsBuilder {
+    private int port = 8080;
+    private NettyTransport transport = NettyTransport.AUTO;
+    private boolean reusePort;
+    private int bossThreads;
+    private int workerThreads;
+    private ByteBufAllocator allocator;
+    private boolean tcpNoDelay = true;
+    private boolean keepAlive;
+    private int backlog;
+    private int writeBufferLowWaterMark = 32 * 1024;
+    private int writeBufferHighWaterMark = 64 * 1024;
+    private int maxInitialLineLength = 4096;
+    private int maxHeaderSize = 8192;
+    private int maxChunkSize = 8192;
+    private int maxContentLength = 65536;
+    private int workerPoolThreads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+    private int workerPoolQueueCapacity = 1024;
+    private boolean http2;
+    private int flushConsolidation = FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES;
+    private long formSpillThreshold = DefaultHttpDataFactory.MINSIZE;
+    private boolean compression;
+    private int compressionLevel = 6;
+    private int compressionThreshold = 1024;
+    private Set<MediaType> compressibleTypes =
+        EnumSet.of(
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.TEXT_PLAIN_VALUE,
+            MediaType.TEXT_HTML_VALUE,
+            MediaType.TEXT_JS_VALUE,
+            MediaType.TEXT_CSS_VALUE,
+            MediaType.TEXT_CSV_VALUE,
+            MediaType.IMAGE_SVG_VALUE);
+    private long readerIdleTimeMillis;
+    private long writerIdleTimeMillis;
+    private long allIdleTimeMillis;
+    private long requestHeaderTimeoutMillis;
+    private long writeTimeoutMillis;
+    private int maxRequestsPerConnection;
+    private CorsPolicy corsPolicy = CorsPolicy.permissive();
+    private TlsOptions tlsOptions;
+
+    private ServerOptionsBuilder() {}
+
+    private ServerOptionsBuilder(ServerOptions serverOptions) {
+      this.port = serverOptions.port;
+      this.transport = serverOptions.transport;
+      this.reusePort = serverOptions.reusePort;
+      this.bossThreads = serverOptions.bossThreads;
+      this.workerThreads = serverOptions.workerThreads;
+      this.allocator = serverOptions.allocator;
+      this.tcpNoDelay = serverOptions.tcpNoDelay;
+      this.keepAlive = serverOptions.keepAlive;
+      this.backlog = serverOptions.backlog;
+      this.writeBufferLowWaterMark = serverOptions.writeBufferLowWaterMark;
+      this.writeBufferHighWaterMark = serverOptions.writeBufferHighWaterMark;
+      this.maxInitialLineLength = serverOptions.maxInitialLineLength;
+      this.maxHeaderSize = serverOptions.maxHeaderSize;
+      this.maxChunkSize = serverOptions.maxChunkSize;
+      this.maxContentLength = serverOptions.maxContentLength;
+      this.workerPoolThreads = serverOptions.workerPoolThreads;
+      this.workerPoolQueueCapacity = serverOptions.workerPoolQueueCapacity;
+      this.http2 = serverOptions.http2;
+      this.flushConsolidation = serverOptions.flushConsolidation;
+      this.formSpillThreshold = serverOptions.formSpillThreshold;
+      this.compression = serverOptions.compression;
+      this.compressionLevel = serverOptions.compressionLevel;
+      this.compressionThreshold = serverOptions.compressionThreshold;
+      this.compressibleTypes = EnumSet.copyOf(serverOptions.compressibleTypes);
+      this.readerIdleTimeMillis = serverOptions.readerIdleTimeMillis;
+      this.writerIdleTimeMillis = serverOptions.writerIdleTimeMillis;
+      this.allIdleTimeMillis = serverOptions.allIdleTimeMillis;
+      this.requestHeaderTimeoutMillis = serverOptions.requestHeaderTimeoutMillis;
+      this.writeTimeoutMillis = serverOptions.writeTimeoutMillis;
+      this.maxRequestsPerConnection = serverOptions.maxRequestsPerConnection;
+      this.corsPolicy = serverOptions.corsPolicy;
+      this.tlsOptions = serverOptions.tlsOptions;
+    }
+
+    public ServerOptionsBuilder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    public ServerOptionsBuilder transport(NettyTransport transport) {
+      this.transport = Objects.requireNonNull(transport);
+      return this;
+    }
+
+    /**
+     * Bind one acceptor per boss event loop with SO_REUSEPORT, only takes effect on epoll.
+     *
+     * @param reusePort whether to reuse port
+     * @return builder
+     */
+    public ServerOptionsBuilder reusePort(boolean reusePort) {
+      this.reusePort = reusePort;
+      return this;
+    }
+
+    /**
+     * Threads of boss group, 0 means one thread per acceptor: a single thread, or one per
+     * available processor when SO_REUSEPORT binds multiple acceptors.
+     *
+     * @param bossThreads number of threads
+     * @return builder
+     */
+    public ServerOptionsBuilder bossThreads(int bossThreads) {
+      this.bossThreads = requireNonNegative(bossThreads, "bossThreads");
+      return this;
+    }
+
+    /**
+     * Threads of worker group, 0 means netty's default.
+     *
+     * @param workerThreads number of threads
+     * @return builder
+     */
+    public ServerOptionsBuilder workerThreads(int workerThreads) {
+      this.workerThreads = requireNonNegative(workerThreads, "workerThreads");
+      return this;
+    }
+
+    public ServerOptionsBuilder allocator(ByteBufAllocator allocator) {
+      this.allocator = allocator;
+      return this;
+    }
+
+    /**
+     * Use a dedicated pooled allocator.
+     *
+     * @param preferDirect whether to prefer direct buffers
+     * @param heapArenas number of heap arenas
+     * @param directArenas number of direct arenas
+     * @param pageSize page size, power of two and at least 4096
+     * @param maxOrder chunk size is pageSize &lt;&lt; maxOrder
+     * @return builder
+     */
+    public ServerOptionsBuilder pooledAllocator(
+        boolean preferDirect, int heapArenas, int directArenas, int pageSize, int maxOrder) {
+      this.allocator =
+          new PooledByteBufAllocator(
+              preferDirect,
+              heapArenas,
+              directArenas,
+              pageSize,
+              maxOrder,
+              PooledByteBufAllocator.defaultSmallCacheSize(),
+              PooledByteBufAllocator.defaultNormalCacheSize(),
+              PooledByteBufAllocator.defaultUseCacheForAllThreads());
+      return this;
+    }
+
+    public ServerOptionsBuilder tcpNoDelay(boolean tcpNoDelay) {
+      this.tcpNoDelay = tcpNoDelay;
+      return this;
+    }
+
+    public ServerOptionsBuilder keepAlive(boolean keepAlive) {
+      this.keepAlive = keepAlive;
+      return this;
+    }
+
+    /**
+     * Backlog of pending connections, 0 means system default.
+     *
+     * @param backlog backlog
+     * @return builder
+     */
+    public ServerOptionsBuilder backlog(int backlog) {
+      this.backlog = requireNonNegative(backlog, "backlog");
+      return this;
+    }
+
+    /**
+     * Channel turns unwritable when its outbound buffer exceeds high water mark, and writable
+     * again when it drops below low water mark.
+     *
+     * @param low low water mark in bytes
+     * @param high high water mark in bytes
+     * @return builder
+     */
+    public ServerOptionsBuilder writeBufferWaterMark(int low, int high) {
+      if (low < 0 || high < low) {
+        throw new IllegalArgumentException("Illegal write buffer water mark: " + low + ", " + high);
+      }
+      this.writeBufferLowWaterMark = low;
+      this.writeBufferHighWaterMark = high;
+      return this;
+    }
+
+    public ServerOptionsBuilder maxInitialLineLength(int maxInitialLineLength) {
+      this.maxInitialLineLength = requirePositive(maxInitialLineLength, "maxInitialLineLength");
+      return this;
+    }
+
+    public ServerOptionsBuilder maxHeaderSize(int maxHeaderSize) {
+      this.maxHeaderSize = requirePositive(maxHeaderSize, "maxHeaderSize");
+      return this;
+    }
+
+    public ServerOptionsBuilder maxChunkSize(int maxChunkSize) {
+      this.maxChunkSize = requirePositive(maxChunkSize, "maxChunkSize");
+      return this;
+    }
+
+    public ServerOptionsBuilder maxContentLength(int maxContentLength) {
+      this.maxContentLength = requirePositive(maxContentLength, "maxContentLength");
+      return this;
+    }
+
+    /**
+     * Size of pool that runs handlers registered with {@code ExecutionMode.WORKER_POOL}.
+     *
+     * @param threads number of threads
+     * @param queueCapacity maximum number of requests waiting for a thread
+     * @return builder
+     */
+    public ServerOptionsBuilder workerPool(int threads, int queueCapacity) {
+      this.workerPoolThreads = requirePositive(threads, "workerPoolThreads");
+      this.workerPoolQueueCapacity = requirePositive(queueCapacity, "workerPoolQueueCapacity");
+      return this;
+    }
+
+    /**
+     * Accept HTTP/2, negotiated with ALPN over ssl, or with prior knowledge and h2c upgrade over
+     * cleartext.
+     *
+     * @param http2 whether to accept HTTP/2
+     * @return builder
+     */
+    public ServerOptionsBuilder http2(boolean http2) {
+      this.http2 = http2;
+      return this;
+    }
+
+    /**
+     * Flushes of responses written while reading are merged into one at the end of read, and at
+     * most every given number of flushes. 0 disables consolidation.
+     *
+     * @param explicitFlushAfterFlushes flushes merged before an explicit flush
+     * @return builder
+     */
+    public ServerOptionsBuilder flushConsolidation(int explicitFlushAfterFlushes) {
+      this.flushConsolidation = requireNonNegative(explicitFlushAfterFlushes, "flushConsolidation");
+      return this;
+    }
+
+    /**
+     * Parts of form larger than threshold are spilled to temporary files instead of memory.
+     *
+     * @param formSpillThreshold threshold in bytes, 0 spills every part
+     * @return builder
+     */
+    public ServerOptionsBuilder formSpillThreshold(long formSpillThreshold) {
+      if (formSpillThreshold < 0) {
+        throw new IllegalArgumentException("formSpillThreshold must not be negative!");
+      }
+      this.formSpillThreshold = formSpillThreshold;
+      return this;
+    }
+
+    /**
+     * Compress responses with gzip or deflate, whichever client accepts.
+     *
+     * @param compression whether to compress responses
+     * @return builder
+     */
+    public ServerOptionsBuilder compression(boolean compression) {
+      this.compression = compression;
+      return this;
+    }
+
+    /**
+     * Level of compression, 1 yields the fastest compression and 9 yields the best compression.
+     *
+     * @param compressionLevel level of compression
+     * @return builder
+     */
+    public ServerOptionsBuilder compressionLevel(int compressionLevel) {
+      if (compressionLevel < 1 || compressionLevel > 9) {
+        throw new IllegalArgumentException("compressionLevel must be between 1 and 9!");
+      }
+      this.compressionLevel = compressionLevel;
+      return this;
+    }
+
+    /**
+     * Responses smaller than threshold are not compressed, it's not worth the cpu.
+     *
+     * @param compressionThreshold threshold in bytes
+     * @return builder
+     */
+    public ServerOptionsBuilder compressionThreshold(int compressionThreshold) {
+      this.compressionThreshold = requireNonNegative(compressionThreshold, "compressionThreshold");
+      return this;
+    }
+
+    /**
+     * Media types that are compressed, event stream is never compressed.
+     *
+     * @param compressibleTypes media types
+     * @return builder
+     */
+    public ServerOptionsBuilder compressibleTypes(MediaType... compressibleTypes) {
+      Set<MediaType> types = EnumSet.noneOf(MediaType.class);
+      types.addAll(Arrays.asList(compressibleTypes));
+      this.compressibleTypes = types;
+      return this;
+    }
+
+    /**
+     * Close connections that have not read, written, or done either for given time. 0 disables
+     * the respective check.
+     *
+     * @param readerIdleTime time without reading
+     * @param writerIdleTime time without writing
+     * @param allIdleTime time without reading or writing
+     * @param unit unit of time
+     * @return builder
+     */
+    public ServerOptionsBuilder idleTimeout(
+        long readerIdleTime, long writerIdleTime, long allIdleTime, TimeUnit unit) {
+      this.readerIdleTimeMillis = toMillis(readerIdleTime, unit, "readerIdleTime");
+      this.writerIdleTimeMillis = toMillis(writerIdleTime, unit, "writerIdleTime");
+      this.allIdleTimeMillis = toMillis(allIdleTime, unit, "allIdleTime");
+      return this;
+    }
+
+    /**
+     * Close HTTP/1.1 connections whose request headers are not received in time, counted from
+     * when connection is accepted or previous response is written. 0 disables it.
+     *
+     * @param requestHeaderTimeout time allowed for request headers
+     * @param unit unit of time
+     * @return builder
+     */
+    public ServerOptionsBuilder requestHeaderTimeout(long requestHeaderTimeout, TimeUnit unit) {
+      this.requestHeaderTimeoutMillis =
+          toMillis(requestHeaderTimeout, unit, "requestHeaderTimeout");
+      return this;
+    }
+
+    /**
+     * Close connections whose writes are not completed in time, such as clients that stop
+     * reading. 0 disables it.
+     *
+     * @param writeTimeout time allowed for a write
+     * @param unit unit of time
+     * @return builder
+     */
+    public ServerOptionsBuilder writeTimeout(long writeTimeout, TimeUnit unit) {
+      this.writeTimeoutMillis = toMillis(writeTimeout, unit, "writeTimeout");
+      return this;
+    }
+
+    /**
+     * HTTP/1.1 connection is closed after it has served given number of requests. 0 means no
+     * limit.
+     *
+     * @param maxRequestsPerConnection maximum requests of a connection
+     * @return builder
+     */
+    public ServerOptionsBuilder maxRequestsPerConnection(int maxRequestsPerConnection) {
+      this.maxRequestsPerConnection =
+          requireNonNegative(maxRequestsPerConnection, "maxRequestsPerConnection");
+      return this;
+    }
+
+    /**
+     * Policy of cross-origin requests, which allows any origin by default. Null turns handling of
+     * cross-origin requests off.
+     *
+     * @param corsPolicy policy of cross-origin requests
+     * @return builder
+     */
+    public ServerOptionsBuilder cors(CorsPolicy corsPolicy) {
+      this.corsPolicy = corsPolicy;
+      return this;
+    }
+
+    /**
+     * Serve TLS, these options take precedence over an ssl pair given to server.
+     *
+     * @param tlsOptions options of TLS
+     * @return builder
+     */
+    public ServerOptionsBuilder tls(TlsOptions tlsOptions) {
+      this.tlsOptions = tlsOptions;
+      return this;
+    }
+
+    public ServerOptions build() {
+      return new ServerOptions(this);
+    }
+
+    private static int requireNonNegative(int value, String name) {
+      if (value < 0) {
+        throw new IllegalArgumentException(name + " must not be negative!");
+      }
+      return value;
+    }
+
+    private static long toMillis(long time, TimeUnit unit, String name) {
+      if (time < 0) {
+        throw new IllegalArgumentException(name + " must not be negative!");
+      }
+      return unit.toMillis(time);
+    }
+
+    private static int requirePositive(int value, String name) {
+      if (value <= 0) {
+        throw new IllegalArgumentException(name + " must be positive!");
+      }
+      return value;
+    }
+  }
+}
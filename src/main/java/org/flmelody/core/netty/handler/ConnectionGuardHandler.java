@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.WriteTimeoutException;
+import org.flmelody.core.netty.ConnectionStats;
+
+/**
+ * Close connections that {@link io.netty.handler.timeout.IdleStateHandler} reports idle, or whose
+ * writes time out, and count them.
+ *
+ * @author esotericman
+ */
+@ChannelHandler.Sharable
+public class ConnectionGuardHandler extends ChannelDuplexHandler {
+  private final ConnectionStats connectionStats;
+
+  public ConnectionGuardHandler(ConnectionStats connectionStats) {
+    this.connectionStats = connectionStats;
+  }
+
+  @Override
+  public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+    if (!(evt instanceof IdleStateEvent)) {
+      super.userEventTriggered(ctx, evt);
+      return;
+    }
+    switch (((IdleStateEvent) evt).state()) {
+      case READER_IDLE:
+        connectionStats.recordReadIdle();
+        break;
+      case WRITER_IDLE:
+        connectionStats.recordWriteIdle();
+        break;
+      default:
+        connectionStats.recordAllIdle();
+    }
+    ctx.close();
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+    if (cause instanceof WriteTimeoutException) {
+      // Channel has been closed by timeout handler, nothing is worth logging
+      connectionStats.recordWriteTimeout();
+      return;
+    }
+    super.exceptionCaught(ctx, cause);
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.flmelody.core.netty.handler;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import org.flmelody.core.FunctionMetaInfo;
+import org.flmelody.core.RequestUri;
+import org.flmelody.core.RouterMatch;
+import org.flmelody.core.Windward;
+
+/**
+ * Aggregator that lets requests of routers that stream their bodies pass through untouched.
+ *
+ * @author esotericman
+ */
+public class HttpBodyAggregator extends HttpObjectAggregator {
+  // Route found for latest request, so handler doesn't route it again
+  private static final AttributeKey<Route> ROUTE =
+      AttributeKey.valueOf(HttpBodyAggregator.class, "route");
+  // Whether content of current request passes through
+  private boolean streaming;
+
+  public HttpBodyAggregator(int maxContentLength) {
+    super(maxContentLength);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpRequest && !(msg instanceof FullHttpRequest)) {
+      streaming = false;
+      if (Windward.hasStreamBodyRouters()) {
+        Route route = Route.of((HttpRequest) msg);
+        ctx.channel().attr(ROUTE).set(route);
+        streaming = route.isStreamBody();
+      }
+    }
+    super.channelRead(ctx, msg);
+  }
+
+  @Override
+  public boolean acceptInboundMessage(Object msg) throws Exception {
+    if (streaming) {
+      if (msg instanceof LastHttpContent) {
+        streaming = false;
+      }
+      return false;
+    }
+    return super.acceptInboundMessage(msg);
+  }
+
+  /**
+   * Take route found for request by aggregator of channel.
+   *
+   * @param channel channel of request
+   * @param httpRequest request, or request aggregated from it
+   * @return route, or null if request isn't routed yet
+   */
+  static Route takeRoute(Channel channel, HttpRequest httpRequest) {
+    Route route = channel.attr(ROUTE).getAndSet(null);
+    return route != null && route.isRouteOf(httpRequest) ? route : null;
+  }
+
+  /** Route of one request. */
+  static final class Route {
+    private final String uri;
+    private final HttpMethod method;
+    private final RequestUri requestUri;
+    private final RouterMatch<?> routerMatch;
+
+    private Route(
+        String uri, HttpMethod method, RequestUri requestUri, RouterMatch<?> routerMatch) {
+      this.uri = uri;
+      this.method = method;
+      this.requestUri = requestUri;
+      this.routerMatch = routerMatch;
+    }
+
+    static Route of(HttpRequest httpRequest) {
+      String uri = httpRequest.uri();
+      RequestUri requestUri = RequestUri.parse(uri);
+      RouterMatch<?> routerMatch =
+          requestUri == null ? null : Windward.findRouter(requestUri, httpRequest.method().name());
+      return new Route(uri, httpRequest.method(), requestUri, routerMatch);
+    }
+
+    // Aggregated request shares uri of its head, a later pipelined request replaces the route
+    private boolean isRouteOf(HttpRequest httpRequest) {
+      return uri == httpRequest.uri() && method.equals(httpRequest.method());
+    }
+
+    private boolean isStreamBody() {
+      FunctionMetaInfo<?> functionMetaInfo = getFunctionMetaInfo();
+      return functionMetaInfo != null && functionMetaInfo.isStreamBody();
+    }
+
+    RequestUri getRequestUri() {
+      return requestUri;
+    }
+
+    RouterMatch<?> getRouterMatch() {
+      return routerMatch;
+    }
+
+    FunctionMetaInfo<?> getFunctionMetaInfo() {
+      return routerMatch == null ? null : routerMatch.getFunctionMetaInfo();
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.EmptyHttpHeaders;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.stream.Collectors;
+import org.flmelody.core.netty.CorsPolicy;
+
+/**
+ * Apply {@link CorsPolicy} to requests. Headers of preflight responses are computed once, and the
+ * origins that pending responses are for are queued in channel, so one instance serves all
+ * connections. Preflight requests pipelined behind others are answered in their turn.
+ *
+ * @author esotericman
+ */
+@ChannelHandler.Sharable
+public class HttpCorsHandler extends ChannelDuplexHandler {
+  // Requests whose responses are not completely written, in order of arrival
+  private static final AttributeKey<Queue<Exchange>> EXCHANGES =
+      AttributeKey.valueOf(HttpCorsHandler.class, "exchanges");
+  // Content of a preflight request that has been answered already
+  private static final AttributeKey<Boolean> DISCARDING =
+      AttributeKey.valueOf(HttpCorsHandler.class, "discarding");
+  private static final String ANY_ORIGIN = "*";
+  private final CorsPolicy corsPolicy;
+  private final HttpHeaders preflightHeaders;
+  private final HttpHeaders forbiddenHeaders;
+  private final HttpHeaders responseHeaders;
+
+  public HttpCorsHandler(CorsPolicy corsPolicy) {
+    this.corsPolicy = corsPolicy;
+    this.responseHeaders = new DefaultHttpHeaders();
+    if (corsPolicy.isAllowCredentials()) {
+      responseHeaders.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+    }
+    if (!corsPolicy.getExposedHeaders().isEmpty()) {
+      responseHeaders.set(
+          HttpHeaderNames.ACCESS_CONTROL_EXPOSE_HEADERS,
+          String.join(",", corsPolicy.getExposedHeaders()));
+    }
+    this.preflightHeaders = new DefaultHttpHeaders();
+    preflightHeaders.set(
+        HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS,
+        corsPolicy.getAllowedMethods().stream().map(Enum::name).collect(Collectors.joining(",")));
+    if (!corsPolicy.isAnyHeader() && !corsPolicy.getAllowedHeaders().isEmpty()) {
+      preflightHeaders.set(
+          HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS,
+          String.join(",", corsPolicy.getAllowedHeaders()));
+    }
+    if (corsPolicy.isAllowCredentials()) {
+      preflightHeaders.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+    }
+    if (corsPolicy.getMaxAgeSeconds() > 0) {
+      preflightHeaders.set(HttpHeaderNames.ACCESS_CONTROL_MAX_AGE, corsPolicy.getMaxAgeSeconds());
+    }
+    preflightHeaders.set(HttpHeaderNames.CONTENT_LENGTH, HttpHeaderValues.ZERO);
+    this.forbiddenHeaders = new DefaultHttpHeaders();
+    forbiddenHeaders.set(HttpHeaderNames.CONTENT_LENGTH, HttpHeaderValues.ZERO);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpRequest) {
+      HttpRequest request = (HttpRequest) msg;
+      String allowOrigin = corsPolicy.allowOrigin(request.headers().get(HttpHeaderNames.ORIGIN));
+      Queue<Exchange> exchanges = exchanges(ctx);
+      if (isPreflight(request)) {
+        ctx.channel().attr(DISCARDING).set(!(msg instanceof LastHttpContent));
+        FullHttpResponse response = preflightResponse(request, allowOrigin);
+        ReferenceCountUtil.release(msg);
+        if (exchanges.isEmpty()) {
+          writePreflight(ctx, response);
+        } else {
+          // Answered once responses of requests ahead are written
+          exchanges.add(new Exchange(null, response));
+        }
+        return;
+      }
+      exchanges.add(new Exchange(allowOrigin, null));
+    } else if (msg instanceof HttpContent && isDiscarding(ctx)) {
+      if (msg instanceof LastHttpContent) {
+        ctx.channel().attr(DISCARDING).set(false);
+      }
+      ReferenceCountUtil.release(msg);
+      return;
+    }
+    ctx.fireChannelRead(msg);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    boolean informational =
+        msg instanceof HttpResponse
+            && ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+    Queue<Exchange> exchanges = ctx.channel().attr(EXCHANGES).get();
+    Exchange exchange = exchanges == null ? null : exchanges.peek();
+    if (msg instanceof HttpResponse && !informational && exchange != null) {
+      HttpResponse response = (HttpResponse) msg;
+      if (exchange.allowOrigin != null
+          && !response.headers().contains(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN)) {
+        setAllowOrigin(response.headers(), exchange.allowOrigin);
+        response.headers().add(responseHeaders);
+      }
+    }
+    ctx.write(msg, promise);
+    if (msg instanceof LastHttpContent && !informational && exchange != null) {
+      exchanges.poll();
+      while ((exchange = exchanges.peek()) != null && exchange.preflight != null) {
+        exchanges.poll();
+        writePreflight(ctx, exchange.preflight);
+      }
+    }
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    Queue<Exchange> exchanges = ctx.channel().attr(EXCHANGES).getAndSet(null);
+    if (exchanges != null) {
+      for (Exchange exchange : exchanges) {
+        ReferenceCountUtil.release(exchange.preflight);
+      }
+    }
+    super.channelInactive(ctx);
+  }
+
+  private static Queue<Exchange> exchanges(ChannelHandlerContext ctx) {
+    Queue<Exchange> exchanges = ctx.channel().attr(EXCHANGES).get();
+    if (exchanges == null) {
+      exchanges = new ArrayDeque<>();
+      ctx.channel().attr(EXCHANGES).set(exchanges);
+    }
+    return exchanges;
+  }
+
+  private FullHttpResponse preflightResponse(HttpRequest request, String allowOrigin) {
+    FullHttpResponse response;
+    if (allowOrigin == null) {
+      response =
+          new DefaultFullHttpResponse(
+              request.protocolVersion(),
+              HttpResponseStatus.FORBIDDEN,
+              Unpooled.EMPTY_BUFFER,
+              forbiddenHeaders.copy(),
+              EmptyHttpHeaders.INSTANCE);
+    } else {
+      response =
+          new DefaultFullHttpResponse(
+              request.protocolVersion(),
+              HttpResponseStatus.OK,
+              Unpooled.EMPTY_BUFFER,
+              preflightHeaders.copy(),
+              EmptyHttpHeaders.INSTANCE);
+      setAllowOrigin(response.headers(), allowOrigin);
+      String requestHeaders =
+          request.headers().get(HttpHeaderNames.ACCESS_CONTROL_REQUEST_HEADERS);
+      if (corsPolicy.isAnyHeader() && requestHeaders != null) {
+        response.headers().set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS, requestHeaders);
+      }
+    }
+    HttpUtil.setKeepAlive(response, HttpUtil.isKeepAlive(request));
+    return response;
+  }
+
+  private static void writePreflight(ChannelHandlerContext ctx, FullHttpResponse response) {
+    if (HttpUtil.isKeepAlive(response)) {
+      ctx.writeAndFlush(response);
+    } else {
+      ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+
+  private static void setAllowOrigin(HttpHeaders headers, String allowOrigin) {
+    headers.set(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN, allowOrigin);
+    if (!ANY_ORIGIN.equals(allowOrigin)) {
+      // Response differs from one origin to another
+      headers.add(HttpHeaderNames.VARY, HttpHeaderNames.ORIGIN);
+    }
+  }
+
+  private static boolean isDiscarding(ChannelHandlerContext ctx) {
+    return Boolean.TRUE.equals(ctx.channel().attr(DISCARDING).get());
+  }
+
+  private static boolean isPreflight(HttpRequest request) {
+    HttpHeaders headers = request.headers();
+    return HttpMethod.OPTIONS.equals(request.method())
+        && headers.contains(HttpHeaderNames.ORIGIN)
+        && headers.contains(HttpHeaderNames.ACCESS_CONTROL_REQUEST_METHOD);
+  }
+
+  /** Request waiting for its response, or answer of a preflight request waiting for its turn. */
+  private static final class Exchange {
+    private final String allowOrigin;
+    private final FullHttpResponse preflight;
+
+    private Exchange(String allowOrigin, FullHttpResponse preflight) {
+      this.allowOrigin = allowOrigin;
+      this.preflight = preflight;
+    }
+  }
+}
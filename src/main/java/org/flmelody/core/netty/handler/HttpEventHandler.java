@@ -17,30 +17,40 @@
 package org.flmelody.core.netty.handler;
 
 import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
-import org.flmelody.core.context.WindwardContext;
+import io.netty.util.AttributeKey;
 import org.flmelody.core.context.support.DelayContext;
 import org.flmelody.core.netty.event.DestroyDelayEvent;
-import org.flmelody.core.support.HttpRequestHolder;
 
 /**
  * @author esotericman
  */
+@ChannelHandler.Sharable
 public class HttpEventHandler extends ChannelDuplexHandler {
+  // Context of delayed response on channel, it's completed on any thread
+  static final AttributeKey<DelayContext> DELAY_CONTEXT =
+      AttributeKey.valueOf(HttpEventHandler.class, "delayContext");
 
   @Override
   public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
     if (evt instanceof DestroyDelayEvent) {
-      try {
-        WindwardContext context = HttpRequestHolder.getContext();
-        if (context != null) {
-          DelayContext delayContext = (DelayContext) context;
-          delayContext.destroy();
-        }
-      } finally {
-        HttpRequestHolder.resetContext();
-      }
+      destroy(ctx);
     }
     super.userEventTriggered(ctx, evt);
   }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    // Scheduled completion is useless once client is gone
+    destroy(ctx);
+    super.channelInactive(ctx);
+  }
+
+  private static void destroy(ChannelHandlerContext ctx) {
+    DelayContext delayContext = ctx.channel().attr(DELAY_CONTEXT).getAndSet(null);
+    if (delayContext != null) {
+      delayContext.destroy();
+    }
+  }
 }
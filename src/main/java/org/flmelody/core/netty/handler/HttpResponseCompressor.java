@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.handler;
+
+import io.netty.handler.codec.compression.StandardCompressionOptions;
+import io.netty.handler.codec.http.HttpContentCompressor;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import org.flmelody.core.MediaType;
+
+/**
+ * Compressor that negotiates gzip or deflate with {@code Accept-Encoding}, only responses of
+ * compressible media that are not smaller than threshold get compressed. Event stream is never
+ * compressed, its events would be held back by compressor.
+ *
+ * @author esotericman
+ */
+public class HttpResponseCompressor extends HttpContentCompressor {
+  // Window bits and memory level of zlib defaults
+  private static final int WINDOW_BITS = 15;
+  private static final int MEM_LEVEL = 8;
+  private final int contentSizeThreshold;
+  // Mime types in lower case, without parameters
+  private final Set<String> compressibleTypes = new HashSet<>();
+
+  /**
+   * Compressor of responses.
+   *
+   * @param compressionLevel 1 yields the fastest compression and 9 yields the best compression
+   * @param contentSizeThreshold responses smaller than this many bytes are sent as is
+   * @param compressibleTypes media types that are compressed
+   */
+  public HttpResponseCompressor(
+      int compressionLevel, int contentSizeThreshold, Set<MediaType> compressibleTypes) {
+    super(
+        contentSizeThreshold,
+        StandardCompressionOptions.gzip(compressionLevel, WINDOW_BITS, MEM_LEVEL),
+        StandardCompressionOptions.deflate(compressionLevel, WINDOW_BITS, MEM_LEVEL));
+    this.contentSizeThreshold = contentSizeThreshold;
+    for (MediaType mediaType : compressibleTypes) {
+      if (mediaType != MediaType.TEXT_EVENT_STREAM_VALUE) {
+        this.compressibleTypes.add(
+            (mediaType.type + "/" + mediaType.subtype).toLowerCase(Locale.ROOT));
+      }
+    }
+  }
+
+  @Override
+  protected Result beginEncode(HttpResponse httpResponse, String acceptEncoding) throws Exception {
+    if (!isCompressible(HttpUtil.getMimeType(httpResponse))) {
+      return null;
+    }
+    // Full responses are checked by compressor itself, others may declare their length
+    long contentLength = HttpUtil.getContentLength(httpResponse, -1L);
+    if (contentLength >= 0 && contentLength < contentSizeThreshold) {
+      return null;
+    }
+    return super.beginEncode(httpResponse, acceptEncoding);
+  }
+
+  private boolean isCompressible(CharSequence mimeType) {
+    return mimeType != null
+        && compressibleTypes.contains(mimeType.toString().trim().toLowerCase(Locale.ROOT));
+  }
+}
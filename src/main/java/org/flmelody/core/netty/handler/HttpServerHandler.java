@@ -16,36 +16,53 @@
 
 package org.flmelody.core.netty.handler;
 
+import static io.netty.handler.codec.http.HttpResponseStatus.CONTINUE;
+import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import static org.flmelody.core.netty.handler.WebSocketHandler.MULTIPLE_SUBSCRIBER;
 
-import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpContent;
 import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.handler.codec.http.multipart.HttpDataFactory;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
 import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.TreeMap;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import org.flmelody.core.ExceptionHandler;
 import org.flmelody.core.Filter;
+import org.flmelody.core.FormData;
 import org.flmelody.core.FunctionMetaInfo;
+import org.flmelody.core.HttpHeader;
 import org.flmelody.core.HttpStatus;
+import org.flmelody.core.MediaType;
+import org.flmelody.core.RequestUri;
+import org.flmelody.core.RouterMatch;
 import org.flmelody.core.Windward;
 import org.flmelody.core.WindwardRequest;
 import org.flmelody.core.WindwardResponse;
@@ -55,17 +72,24 @@ import org.flmelody.core.context.ResourceWindwardContext;
 import org.flmelody.core.context.SimpleWindwardContext;
 import org.flmelody.core.context.WindwardContext;
 import org.flmelody.core.context.support.DelayContext;
+import org.flmelody.core.exception.FormDecodeException;
 import org.flmelody.core.exception.HandlerNotFoundException;
+import org.flmelody.core.netty.NettyFormData;
+import org.flmelody.core.netty.NettyHeaders;
+import org.flmelody.core.netty.NettyRequestBody;
+import org.flmelody.core.netty.NettyRequestContent;
 import org.flmelody.core.netty.NettyResponseWriter;
 import org.flmelody.core.plugin.ws.ExtensionalWebSocketPlugin;
 import org.flmelody.core.plugin.ws.MultiWebSocketPlugin;
 import org.flmelody.core.support.HttpRequestHolder;
+import org.flmelody.core.support.VirtualThreads;
 import org.flmelody.core.ws.WebSocketEvent;
 import org.flmelody.core.ws.WebSocketFireEvent;
 import org.flmelody.core.ws.WebSocketParser;
 import org.flmelody.core.ws.WebSocketWindwardContext;
 import org.flmelody.core.ws.authentication.AuthorizationProvider;
 import org.flmelody.core.ws.codec.WebSocketCodec;
+import org.flmelody.support.AimdLimiter;
 import org.flmelody.support.EnhancedFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,67 +99,242 @@ import org.slf4j.LoggerFactory;
  */
 public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
   private static final Logger logger = LoggerFactory.getLogger(HttpServerHandler.class);
+  // Reading of streamed body pauses once this many bytes are waiting for handler
+  private static final int BODY_HIGH_WATER_MARK = 64 * 1024;
+  // Seconds that clients rejected by concurrency limit are asked to wait
+  private static final int RETRY_AFTER_SECONDS = 1;
+  private final HttpDataFactory httpDataFactory;
   private WindwardContext cachedWindwardContext;
   private FunctionMetaInfo<?> cachedFunctionMetaInfo;
+  // Body of current request that is being streamed
+  private NettyRequestBody requestBody;
+  // Pipelined messages that wait for request handled off event loop, responses keep their order
+  private final Queue<HttpObject> pipelined = new ArrayDeque<>();
+  private boolean offloaded;
+
+  public HttpServerHandler() {
+    this(new DefaultHttpDataFactory(DefaultHttpDataFactory.MINSIZE, CharsetUtil.UTF_8));
+  }
+
+  /**
+   * Handler that decodes forms with given factory.
+   *
+   * @param httpDataFactory factory of decoded parts, which decides when parts spill to disk
+   */
+  public HttpServerHandler(HttpDataFactory httpDataFactory) {
+    this.httpDataFactory = httpDataFactory;
+  }
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, Object msg) {
+    if (msg instanceof HttpObject
+        && (offloaded || !pipelined.isEmpty())
+        && !isStreamedContent(msg)) {
+      // Reading pauses until requests ahead are answered
+      pipelined.add((HttpObject) ReferenceCountUtil.retain(msg));
+      updateAutoRead(ctx);
+      return;
+    }
+    receive(ctx, msg);
+  }
+
+  private void receive(ChannelHandlerContext ctx, Object msg) {
     if (msg instanceof FullHttpRequest) {
       FullHttpRequest fullHttpRequest = (FullHttpRequest) msg;
-      String uri = fullHttpRequest.uri().split("\\?")[0];
-      FunctionMetaInfo<?> functionMetaInfo =
-          Windward.findRouter(uri, fullHttpRequest.method().name());
+      HttpBodyAggregator.Route route = route(ctx, fullHttpRequest);
+      RequestUri requestUri = route.getRequestUri();
+      if (requestUri == null) {
+        WindwardContext windwardContext =
+            initContext(ctx, fullHttpRequest, null, null, null, null, null);
+        windwardContext.writeString(
+            HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.reasonPhrase());
+        windwardContext.close();
+        return;
+      }
+      String uri = requestUri.getPath();
+      RouterMatch<?> routerMatch = route.getRouterMatch();
+      FunctionMetaInfo<?> functionMetaInfo = route.getFunctionMetaInfo();
+      Admission admission = Admission.UNLIMITED;
+      // Only websocket contexts are cached, their events are not limited
+      if (cachedWindwardContext == null) {
+        admission = Admission.admit(functionMetaInfo);
+        if (admission == null) {
+          reject(ctx, fullHttpRequest);
+          return;
+        }
+      }
       WindwardContext windwardContext = cachedWindwardContext;
+      FormDecoding form = null;
+      NettyRequestContent content = null;
       if (windwardContext == null) {
-        windwardContext = initContext(ctx, fullHttpRequest, functionMetaInfo);
-        if (windwardContext.isCacheable()) {
+        if (NettyFormData.isForm(fullHttpRequest)) {
+          form = FormDecoding.of(httpDataFactory, fullHttpRequest);
+        }
+        if (fullHttpRequest.content().isReadable()) {
+          // Retained until request is handled, so body is neither copied nor decoded eagerly
+          content = new NettyRequestContent(fullHttpRequest.content());
+        }
+        windwardContext =
+            initContext(ctx, fullHttpRequest, requestUri, routerMatch, null, form, content);
+        // Websocket context outlives upgrade request, so its content is copied rather than released
+        if (windwardContext.isCacheable() && isWebsocketUpgrade(fullHttpRequest.headers())) {
           cachedWindwardContext = windwardContext;
           cachedFunctionMetaInfo = functionMetaInfo;
+          if (content != null) {
+            content.detach();
+            content = null;
+          }
         }
       }
       if (isWebsocketUpgrade(fullHttpRequest.headers()) && cachedWindwardContext != null) {
-        if (!((WebSocketWindwardContext) cachedWindwardContext).authorized()) {
-          ctx.close();
-          return;
+        // Upgrade request is never dispatched, it's done here whether it's authorized or not
+        try {
+          upgrade(ctx, fullHttpRequest, uri);
+        } finally {
+          if (form != null) {
+            form.release();
+          }
+          if (content != null) {
+            content.release();
+          }
+          admission.release(false);
         }
-        ctx.pipeline()
-            .addBefore(
-                ctx.name(),
-                WebSocketServerCompressionHandler.class.getSimpleName(),
-                new WebSocketServerCompressionHandler());
-        ctx.pipeline()
-            .addBefore(ctx.name(), WebSocketHandler.class.getSimpleName(), new WebSocketHandler());
-        ctx.pipeline()
-            .addAfter(
-                ctx.name(),
-                WebSocketServerProtocolHandler.class.getSimpleName(),
-                new WebSocketServerProtocolHandler(fullHttpRequest.uri(), null, true));
-        // Adaptation of appropriate codecs and message parsers
-        extractHandlers(ctx, uri);
-        ctx.pipeline().addLast(new SocketTailHandler());
-        ctx.fireChannelRead(fullHttpRequest.retain());
         return;
       }
-      if (cachedWindwardContext != null
-          && cachedWindwardContext instanceof WebSocketWindwardContext) {
-        WebSocketWindwardContext websocketWindwardContext =
-            (WebSocketWindwardContext) cachedWindwardContext;
-        websocketWindwardContext.setHttpResponse(true);
+      if (windwardContext instanceof WebSocketWindwardContext) {
+        // Router of websocket is requested without upgrade
+        ((WebSocketWindwardContext) windwardContext).setHttpResponse(true);
       }
-      try {
-        HttpRequestHolder.setContext(windwardContext);
-        handle(functionMetaInfo, windwardContext);
-      } finally {
-        WindwardContext context = HttpRequestHolder.getContext();
-        if (!(context instanceof DelayContext)) {
-          HttpRequestHolder.resetContext();
+      dispatch(ctx, functionMetaInfo, windwardContext, null, form, content, admission);
+    } else if (msg instanceof HttpRequest) {
+      // Only requests of routers that stream their bodies are not aggregated
+      receiveStreamingRequest(ctx, (HttpRequest) msg);
+    } else if (msg instanceof HttpContent) {
+      NettyRequestBody body = requestBody;
+      // Content is dropped if nobody reads it
+      if (body != null) {
+        body.offer(((HttpContent) msg).content());
+        if (msg instanceof LastHttpContent) {
+          requestBody = null;
+          body.complete();
         }
+        updateAutoRead(ctx);
       }
     } else {
       ctx.fireChannelRead(msg);
     }
   }
 
+  private void upgrade(ChannelHandlerContext ctx, FullHttpRequest fullHttpRequest, String uri) {
+    if (!((WebSocketWindwardContext) cachedWindwardContext).authorized()) {
+      ctx.close();
+      return;
+    }
+    ctx.pipeline()
+        .addBefore(
+            ctx.name(),
+            WebSocketServerCompressionHandler.class.getSimpleName(),
+            new WebSocketServerCompressionHandler());
+    ctx.pipeline()
+        .addBefore(ctx.name(), WebSocketHandler.class.getSimpleName(), new WebSocketHandler());
+    ctx.pipeline()
+        .addAfter(
+            ctx.name(),
+            WebSocketServerProtocolHandler.class.getSimpleName(),
+            new WebSocketServerProtocolHandler(fullHttpRequest.uri(), null, true));
+    // Adaptation of appropriate codecs and message parsers
+    extractHandlers(ctx, uri);
+    ctx.pipeline().addLast(new SocketTailHandler());
+    ctx.fireChannelRead(fullHttpRequest.retain());
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    NettyRequestBody body = requestBody;
+    if (body != null) {
+      requestBody = null;
+      body.fail(new ClosedChannelException());
+    }
+    releasePipelined();
+    super.channelInactive(ctx);
+  }
+
+  // Route found by aggregator is reused, request is routed only once
+  private static HttpBodyAggregator.Route route(
+      ChannelHandlerContext ctx, HttpRequest httpRequest) {
+    HttpBodyAggregator.Route route = HttpBodyAggregator.takeRoute(ctx.channel(), httpRequest);
+    return route == null ? HttpBodyAggregator.Route.of(httpRequest) : route;
+  }
+
+  // Content of request whose body is being streamed to handler
+  private boolean isStreamedContent(Object msg) {
+    return requestBody != null && msg instanceof HttpContent && !(msg instanceof HttpRequest);
+  }
+
+  // Called on event loop once request handled off event loop is done
+  private void resumePipelined(ChannelHandlerContext ctx) {
+    offloaded = false;
+    if (!ctx.channel().isActive()) {
+      releasePipelined();
+      return;
+    }
+    HttpObject msg;
+    while ((msg = pipelined.peek()) != null && (!offloaded || isStreamedContent(msg))) {
+      pipelined.poll();
+      try {
+        receive(ctx, msg);
+      } catch (Exception e) {
+        exceptionCaught(ctx, e);
+      } finally {
+        ReferenceCountUtil.release(msg);
+      }
+    }
+    updateAutoRead(ctx);
+  }
+
+  // Only owner of reading of channel, it pauses while pipelined requests wait or streamed body is
+  // full. Reading goes on while request is offloaded, as its streamed body is still arriving
+  private void updateAutoRead(ChannelHandlerContext ctx) {
+    NettyRequestBody body = requestBody;
+    boolean autoRead = pipelined.isEmpty() && (body == null || !body.isPaused());
+    if (ctx.channel().config().isAutoRead() != autoRead) {
+      ctx.channel().config().setAutoRead(autoRead);
+    }
+  }
+
+  private void releasePipelined() {
+    HttpObject msg;
+    while ((msg = pipelined.poll()) != null) {
+      ReferenceCountUtil.release(msg);
+    }
+  }
+
+  private void receiveStreamingRequest(ChannelHandlerContext ctx, HttpRequest httpRequest) {
+    HttpBodyAggregator.Route route = route(ctx, httpRequest);
+    RequestUri requestUri = route.getRequestUri();
+    RouterMatch<?> routerMatch = route.getRouterMatch();
+    FunctionMetaInfo<?> functionMetaInfo = route.getFunctionMetaInfo();
+    Admission admission = Admission.admit(functionMetaInfo);
+    if (admission == null) {
+      // Body is dropped as nobody reads it
+      reject(ctx, httpRequest);
+      return;
+    }
+    NettyRequestBody body =
+        new NettyRequestBody(ctx.channel(), BODY_HIGH_WATER_MARK, () -> updateAutoRead(ctx));
+    requestBody = body;
+    if (HttpUtil.is100ContinueExpected(httpRequest)) {
+      ctx.writeAndFlush(new DefaultFullHttpResponse(HTTP_1_1, CONTINUE, Unpooled.EMPTY_BUFFER));
+    }
+    FormDecoding form =
+        NettyFormData.isForm(httpRequest)
+            ? FormDecoding.of(httpDataFactory, httpRequest, body)
+            : null;
+    WindwardContext windwardContext =
+        initContext(ctx, httpRequest, requestUri, routerMatch, body, form, null);
+    dispatch(ctx, functionMetaInfo, windwardContext, body, form, null, admission);
+  }
+
   @Override
   public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
     // Websocket context should always be cached
@@ -209,66 +408,65 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
     return true;
   }
 
-  private Map<String, List<String>> prepareHeaders(HttpHeaders httpHeaders) {
-    Iterator<Map.Entry<String, String>> entryIterator = httpHeaders.iteratorAsString();
-    Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-    while (entryIterator.hasNext()) {
-      Map.Entry<String, String> next = entryIterator.next();
-      if (headers.containsKey(next.getKey())) {
-        headers.get(next.getKey()).add(next.getValue());
-      } else {
-        ArrayList<String> values = new ArrayList<>();
-        values.add(next.getValue());
-        headers.put(next.getKey(), values);
-      }
-    }
-    return headers;
-  }
-
   private <I> WindwardContext initContext(
       ChannelHandlerContext ctx,
-      FullHttpRequest fullHttpRequest,
-      FunctionMetaInfo<I> functionMetaInfo) {
-    String uri = fullHttpRequest.uri();
-    ByteBuf content = fullHttpRequest.content();
-    boolean keepAlive = HttpUtil.isKeepAlive(fullHttpRequest);
-    QueryStringDecoder queryStringDecoder = new QueryStringDecoder(uri);
-    Map<String, List<String>> params = queryStringDecoder.parameters();
-
-    uri = uri.split("\\?")[0];
+      HttpRequest httpRequest,
+      RequestUri requestUri,
+      RouterMatch<I> routerMatch,
+      NettyRequestBody body,
+      FormDecoding form,
+      NettyRequestContent content) {
+    boolean keepAlive = HttpUtil.isKeepAlive(httpRequest);
     WindwardRequest.WindwardRequestBuilder windwardRequestBuilder =
         WindwardRequest.newBuild()
-            .headers(prepareHeaders(fullHttpRequest.headers()))
-            .method(fullHttpRequest.method().name())
-            .uri(uri)
+            .headersView(new NettyHeaders(httpRequest.headers()))
+            .method(httpRequest.method().name())
             .keepAlive(keepAlive)
-            .querystring(params);
-    if (content.isReadable()) {
-      String string = content.toString(CharsetUtil.UTF_8);
-      windwardRequestBuilder.requestBody(string);
+            .remoteAddress(ctx.channel().remoteAddress());
+    if (requestUri == null) {
+      windwardRequestBuilder.uri(httpRequest.uri());
+    } else {
+      windwardRequestBuilder.uri(requestUri.getPath());
+      if (requestUri.hasQuery()) {
+        // Decoded only if handler reads it
+        String uri = requestUri.getUri();
+        windwardRequestBuilder.querystring(() -> new QueryStringDecoder(uri).parameters());
+      }
+    }
+    if (body != null) {
+      windwardRequestBuilder.bodyStream(body);
+    } else if (content != null) {
+      windwardRequestBuilder.content(content);
+    }
+    if (form != null) {
+      windwardRequestBuilder.form(form);
     }
     WindwardResponse.WindwardResponseBuild windwardResponseBuild =
         WindwardResponse.newBuilder().responseWriter(new NettyResponseWriter(ctx, keepAlive));
-    if (functionMetaInfo == null) {
+    if (routerMatch != null) {
+      windwardRequestBuilder.routePath(routerMatch.getFunctionMetaInfo().getPath());
+    }
+    if (routerMatch == null) {
       return new SimpleWindwardContext(
           windwardRequestBuilder.build(), windwardResponseBuild.build());
     } else {
+      FunctionMetaInfo<I> functionMetaInfo = routerMatch.getFunctionMetaInfo();
       try {
         Class<? extends WindwardContext> context = functionMetaInfo.getContext();
         if (context.isAssignableFrom(SimpleWindwardContext.class)) {
           return new SimpleWindwardContext(
-              windwardRequestBuilder.pathVariables(functionMetaInfo.getPathVariables()).build(),
+              windwardRequestBuilder.pathVariables(routerMatch.getPathVariables()).build(),
               windwardResponseBuild.build());
         } else if (EnhancedWindwardContext.class.isAssignableFrom(context)) {
           Class<? extends WindwardContext> parameterType = functionMetaInfo.getParameterType();
           return parameterType
               .getConstructor(WindwardRequest.class, WindwardResponse.class)
               .newInstance(
-                  windwardRequestBuilder.pathVariables(functionMetaInfo.getPathVariables()).build(),
+                  windwardRequestBuilder.pathVariables(routerMatch.getPathVariables()).build(),
                   windwardResponseBuild.build());
         } else if (context.isAssignableFrom(WebSocketWindwardContext.class)) {
           return new WebSocketWindwardContext(
-              windwardRequestBuilder.pathVariables(functionMetaInfo.getPathVariables()).build(),
+              windwardRequestBuilder.pathVariables(routerMatch.getPathVariables()).build(),
               windwardResponseBuild.build(),
               functionMetaInfo.getArgs().stream()
                   .map(
@@ -283,7 +481,7 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
                   .collect(Collectors.toList()));
         } else if (context.isAssignableFrom(ResourceWindwardContext.class)) {
           return new ResourceWindwardContext(
-              windwardRequestBuilder.pathVariables(functionMetaInfo.getPathVariables()).build(),
+              windwardRequestBuilder.pathVariables(routerMatch.getPathVariables()).build(),
               windwardResponseBuild.build(),
               functionMetaInfo.getPath());
         }
@@ -294,6 +492,109 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
     return new EmptyWindwardContext();
   }
 
+  private void dispatch(
+      ChannelHandlerContext ctx,
+      FunctionMetaInfo<?> functionMetaInfo,
+      WindwardContext windwardContext,
+      NettyRequestBody body,
+      FormDecoding form,
+      NettyRequestContent content,
+      Admission admission) {
+    Executor executor = resolveExecutor(functionMetaInfo, windwardContext);
+    if (executor == null) {
+      handleWithHolder(ctx, functionMetaInfo, windwardContext, body, form, content, admission);
+      return;
+    }
+    offloaded = true;
+    try {
+      // Content of request is retained, it's safe to be handled out of event loop
+      executor.execute(
+          () -> {
+            try {
+              handleWithHolder(
+                  ctx, functionMetaInfo, windwardContext, body, form, content, admission);
+            } finally {
+              ctx.executor().execute(() -> resumePipelined(ctx));
+            }
+          });
+    } catch (RejectedExecutionException e) {
+      offloaded = false;
+      logger.atWarn().log("Handler rejected, executor is saturated");
+      windwardContext.writeString(
+          HttpStatus.SERVICE_UNAVAILABLE.value(), HttpStatus.SERVICE_UNAVAILABLE.reasonPhrase());
+      windwardContext.close();
+      if (body != null) {
+        body.close();
+      }
+      if (form != null) {
+        form.release();
+      }
+      if (content != null) {
+        content.release();
+      }
+      admission.release(true);
+    }
+  }
+
+  private static Executor resolveExecutor(
+      FunctionMetaInfo<?> functionMetaInfo, WindwardContext windwardContext) {
+    // Websocket events rely on ordering of event loop
+    if (functionMetaInfo == null || windwardContext instanceof WebSocketWindwardContext) {
+      return null;
+    }
+    switch (functionMetaInfo.getExecutionMode()) {
+      case EVENT_LOOP:
+        // Reading of streamed body blocks
+        return functionMetaInfo.isStreamBody() ? Windward.workerPool() : null;
+      case WORKER_POOL:
+        return Windward.workerPool();
+      case EXECUTOR:
+        return functionMetaInfo.getExecutor();
+      case VIRTUAL_THREAD:
+        return VirtualThreads.isAvailable() ? VirtualThreads.executor() : Windward.workerPool();
+      default:
+        return null;
+    }
+  }
+
+  private void handleWithHolder(
+      ChannelHandlerContext ctx,
+      FunctionMetaInfo<?> functionMetaInfo,
+      WindwardContext windwardContext,
+      NettyRequestBody body,
+      FormDecoding form,
+      NettyRequestContent content,
+      Admission admission) {
+    boolean delayed = windwardContext instanceof DelayContext;
+    if (delayed) {
+      // Set before handling, response may be completed before handler returns
+      ctx.channel().attr(HttpEventHandler.DELAY_CONTEXT).set((DelayContext) windwardContext);
+    }
+    try {
+      HttpRequestHolder.setContext(windwardContext);
+      handle(functionMetaInfo, windwardContext);
+    } finally {
+      HttpRequestHolder.resetContext();
+      admission.release(false);
+      if (body != null) {
+        // Rest of body is useless once handler returns, it's discarded so reading goes on
+        body.close();
+      }
+      if (!delayed) {
+        if (form != null) {
+          // Spilled files are deleted as well
+          form.release();
+        }
+        if (content != null) {
+          content.release();
+        }
+      } else if (content != null) {
+        // Delayed response may still read request
+        content.detach();
+      }
+    }
+  }
+
   private void handle(FunctionMetaInfo<?> functionMetaInfo, WindwardContext windwardContext) {
     if (windwardContext.isClosed()) {
       return;
@@ -310,6 +611,11 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
         windwardContext.close();
         return;
       }
+      // Filter has responded, such as rejecting request
+      if (windwardContext.isDone()) {
+        windwardContext.close();
+        return;
+      }
     }
     execute(functionMetaInfo, windwardContext);
   }
@@ -325,7 +631,9 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
         final Consumer<WindwardContext> contextConsumer = (Consumer<WindwardContext>) function;
         contextConsumer.accept(windwardContext);
         if (!windwardContext.isClosed()) {
-          windwardContext.writeString(null);
+          if (!windwardContext.isDone()) {
+            windwardContext.writeString(null);
+          }
           windwardContext.close();
         }
       } else if (function instanceof EnhancedFunction) {
@@ -345,6 +653,12 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
       } else {
         throw new HandlerNotFoundException("No handler found!");
       }
+    } catch (FormDecodeException e) {
+      if (!handleException(windwardContext, e)) {
+        logger.atWarn().log("Malformed form", e);
+        windwardContext.writeString(
+            HttpStatus.BAD_REQUEST.value(), HttpStatus.BAD_REQUEST.reasonPhrase());
+      }
     } catch (Exception e) {
       if (!handleException(windwardContext, e)) {
         logger.atError().log("Error occurred", e);
@@ -372,6 +686,124 @@ public class HttpServerHandler extends SimpleChannelInboundHandler<Object> {
     return alreadyDone;
   }
 
+  private static void reject(ChannelHandlerContext ctx, HttpRequest httpRequest) {
+    new NettyResponseWriter(ctx, HttpUtil.isKeepAlive(httpRequest))
+        .write(
+            HttpStatus.SERVICE_UNAVAILABLE.value(),
+            MediaType.TEXT_PLAIN_VALUE.value,
+            Collections.singletonMap(HttpHeader.RETRY_AFTER, RETRY_AFTER_SECONDS),
+            HttpStatus.SERVICE_UNAVAILABLE.reasonPhrase());
+  }
+
+  /** Slots a request holds in concurrency limits, given back once it's handled. */
+  private static final class Admission {
+    private static final Admission UNLIMITED = new Admission(null, null);
+    private final AimdLimiter serverLimiter;
+    private final AimdLimiter routerLimiter;
+    private final long startNanos;
+
+    private Admission(AimdLimiter serverLimiter, AimdLimiter routerLimiter) {
+      this.serverLimiter = serverLimiter;
+      this.routerLimiter = routerLimiter;
+      this.startNanos = serverLimiter == null && routerLimiter == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Take slots of server and router.
+     *
+     * @param functionMetaInfo matched router
+     * @return admission, or null if any limit is reached
+     */
+    private static Admission admit(FunctionMetaInfo<?> functionMetaInfo) {
+      // Requests without router are cheap, they are never limited
+      if (functionMetaInfo == null) {
+        return UNLIMITED;
+      }
+      AimdLimiter serverLimiter =
+          functionMetaInfo.isLimitExempt() ? null : Windward.concurrencyLimiter();
+      AimdLimiter routerLimiter = functionMetaInfo.getLimiter();
+      if (serverLimiter == null && routerLimiter == null) {
+        return UNLIMITED;
+      }
+      if (serverLimiter != null && !serverLimiter.tryAcquire()) {
+        return null;
+      }
+      if (routerLimiter != null && !routerLimiter.tryAcquire()) {
+        if (serverLimiter != null) {
+          serverLimiter.cancel();
+        }
+        return null;
+      }
+      return new Admission(serverLimiter, routerLimiter);
+    }
+
+    private void release(boolean dropped) {
+      if (this == UNLIMITED) {
+        return;
+      }
+      long latencyNanos = System.nanoTime() - startNanos;
+      if (routerLimiter != null) {
+        routerLimiter.release(latencyNanos, dropped);
+      }
+      if (serverLimiter != null) {
+        serverLimiter.release(latencyNanos, dropped);
+      }
+    }
+  }
+
+  /** Form of one request, decoded when it's read and released when request is done. */
+  private static final class FormDecoding implements Supplier<FormData> {
+    private final Supplier<NettyFormData> decoder;
+    // Content kept for decoding, or null if content is streamed
+    private final FullHttpRequest retained;
+    private NettyFormData formData;
+    private boolean decoded;
+
+    private FormDecoding(Supplier<NettyFormData> decoder, FullHttpRequest retained) {
+      this.decoder = decoder;
+      this.retained = retained;
+    }
+
+    private static FormDecoding of(HttpDataFactory httpDataFactory, FullHttpRequest request) {
+      FullHttpRequest retained = request.retainedDuplicate();
+      return new FormDecoding(() -> NettyFormData.decode(httpDataFactory, retained), retained);
+    }
+
+    private static FormDecoding of(
+        HttpDataFactory httpDataFactory, HttpRequest request, NettyRequestBody body) {
+      return new FormDecoding(() -> NettyFormData.decode(httpDataFactory, request, body), null);
+    }
+
+    @Override
+    public FormData get() {
+      if (!decoded) {
+        decoded = true;
+        try {
+          formData = decoder.get();
+        } finally {
+          releaseRetained();
+        }
+      }
+      return formData;
+    }
+
+    private void release() {
+      if (!decoded) {
+        decoded = true;
+        releaseRetained();
+      } else if (formData != null) {
+        formData.release();
+        formData = null;
+      }
+    }
+
+    private void releaseRetained() {
+      if (retained != null) {
+        retained.release();
+      }
+    }
+  }
+
   private static boolean isWebsocketUpgrade(HttpHeaders headers) {
     return headers.contains(HttpHeaderNames.UPGRADE)
         && headers.containsValue(HttpHeaderNames.CONNECTION, HttpHeaderValues.UPGRADE, true)
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.handler;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpStatusClass;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.netty.ConnectionStats;
+
+/**
+ * Guard of HTTP/1.1 connection. Headers of a request must arrive in time once connection is
+ * accepted or previous response is written, which stops clients that trickle headers. And a
+ * connection is not kept alive after it has served its maximum number of requests.
+ *
+ * @author esotericman
+ */
+public class RequestGuardHandler extends ChannelDuplexHandler {
+  private final ConnectionStats connectionStats;
+  private final long requestHeaderTimeoutMillis;
+  private final int maxRequests;
+  private int requests;
+  // Requests whose responses are not completely written
+  private int pendingRequests;
+  private boolean informational;
+  private ScheduledFuture<?> headerDeadline;
+
+  /**
+   * Guard of one connection.
+   *
+   * @param connectionStats counters of closed connections
+   * @param requestHeaderTimeoutMillis time allowed for headers of each request, 0 means no limit
+   * @param maxRequests maximum requests served by connection, 0 means no limit
+   */
+  public RequestGuardHandler(
+      ConnectionStats connectionStats, long requestHeaderTimeoutMillis, int maxRequests) {
+    this.connectionStats = connectionStats;
+    this.requestHeaderTimeoutMillis = requestHeaderTimeoutMillis;
+    this.maxRequests = maxRequests;
+  }
+
+  @Override
+  public void handlerAdded(ChannelHandlerContext ctx) {
+    armHeaderDeadline(ctx);
+  }
+
+  @Override
+  public void handlerRemoved(ChannelHandlerContext ctx) {
+    cancelHeaderDeadline();
+  }
+
+  @Override
+  public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+    cancelHeaderDeadline();
+    super.channelInactive(ctx);
+  }
+
+  @Override
+  public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+    if (msg instanceof HttpRequest) {
+      HttpRequest httpRequest = (HttpRequest) msg;
+      cancelHeaderDeadline();
+      pendingRequests++;
+      if (maxRequests > 0 && ++requests >= maxRequests && HttpUtil.isKeepAlive(httpRequest)) {
+        // Response of last request closes connection
+        HttpUtil.setKeepAlive(httpRequest, false);
+        connectionStats.recordMaxRequestsReached();
+      }
+    }
+    super.channelRead(ctx, msg);
+  }
+
+  @Override
+  public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise)
+      throws Exception {
+    if (msg instanceof HttpResponse) {
+      informational =
+          ((HttpResponse) msg).status().codeClass() == HttpStatusClass.INFORMATIONAL;
+    }
+    if (msg instanceof LastHttpContent
+        && !informational
+        && pendingRequests > 0
+        && --pendingRequests == 0) {
+      // Next request is expected once response is written
+      super.write(ctx, msg, promise.unvoid().addListener(future -> armHeaderDeadline(ctx)));
+      return;
+    }
+    super.write(ctx, msg, promise);
+  }
+
+  private void armHeaderDeadline(ChannelHandlerContext ctx) {
+    if (requestHeaderTimeoutMillis <= 0
+        || headerDeadline != null
+        || pendingRequests > 0
+        || ctx.isRemoved()
+        || !ctx.channel().isOpen()) {
+      return;
+    }
+    headerDeadline =
+        ctx.executor()
+            .schedule(
+                () -> {
+                  headerDeadline = null;
+                  if (pendingRequests == 0) {
+                    connectionStats.recordRequestHeaderTimeout();
+                    ctx.close();
+                  }
+                },
+                requestHeaderTimeoutMillis,
+                TimeUnit.MILLISECONDS);
+  }
+
+  private void cancelHeaderDeadline() {
+    if (headerDeadline != null) {
+      headerDeadline.cancel(false);
+      headerDeadline = null;
+    }
+  }
+}
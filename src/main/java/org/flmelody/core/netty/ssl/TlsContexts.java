@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.ssl;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.OpenSslSessionContext;
+import io.netty.handler.ssl.OpenSslSessionTicketKey;
+import io.netty.handler.ssl.SniHandler;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+import io.netty.util.DomainWildcardMappingBuilder;
+import io.netty.util.Mapping;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLSessionContext;
+import org.flmelody.core.exception.ServerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Contexts of TLS built from {@link TlsOptions}. They are swapped at once when certificate files
+ * change, connections accepted afterwards use new certificates while established ones keep theirs.
+ *
+ * @author esotericman
+ */
+public final class TlsContexts implements Mapping<String, SslContext> {
+  private static final Logger logger = LoggerFactory.getLogger(TlsContexts.class);
+  private static final int TICKET_KEY_PART_LENGTH = TlsOptions.TICKET_KEY_LENGTH / 3;
+  private final TlsOptions tlsOptions;
+  private final boolean http2;
+  private final SslProvider sslProvider;
+  private final LongAdder reloads = new LongAdder();
+  private volatile Snapshot snapshot;
+
+  /**
+   * Build contexts of all certificates.
+   *
+   * @param tlsOptions options of TLS
+   * @param http2 whether to offer HTTP/2 with ALPN
+   * @throws ServerException if a certificate can't be loaded
+   */
+  public TlsContexts(TlsOptions tlsOptions, boolean http2) throws ServerException {
+    this.tlsOptions = tlsOptions;
+    this.http2 = http2;
+    this.sslProvider = resolveProvider(tlsOptions.getSslProvider());
+    try {
+      this.snapshot = load();
+    } catch (Exception e) {
+      throw new ServerException("Failed to initialize ssl context", e);
+    }
+    logger.atInfo().log("TLS is provided by {}", sslProvider);
+  }
+
+  /**
+   * New handler of TLS, which chooses certificate by server name if there are several.
+   *
+   * @param allocator allocator of channel
+   * @return handler of TLS
+   */
+  public ChannelHandler newHandler(ByteBufAllocator allocator) {
+    if (tlsOptions.getSniCertificates().isEmpty()) {
+      return snapshot.defaultContext.newHandler(allocator);
+    }
+    return new SniHandler(this);
+  }
+
+  @Override
+  public SslContext map(String hostname) {
+    return snapshot.mapping.map(hostname);
+  }
+
+  /**
+   * Reload certificates if any of their files has changed, current contexts are kept if new ones
+   * can't be built, such as while files are being written.
+   *
+   * @return true if contexts are swapped
+   */
+  public boolean reloadIfModified() {
+    if (Arrays.equals(snapshot.stamps, stamps())) {
+      return false;
+    }
+    try {
+      snapshot = load();
+      reloads.increment();
+      logger.atInfo().log("Certificates are reloaded");
+      return true;
+    } catch (Exception e) {
+      logger.atError().log("Failed to reload certificates, current ones are kept", e);
+      return false;
+    }
+  }
+
+  public SslProvider getSslProvider() {
+    return sslProvider;
+  }
+
+  public boolean isForceSsl() {
+    return tlsOptions.isForceSsl();
+  }
+
+  public long getReloadIntervalMillis() {
+    return tlsOptions.getReloadIntervalMillis();
+  }
+
+  public long getReloadCount() {
+    return reloads.sum();
+  }
+
+  private Snapshot load() throws SSLException {
+    // Taken before reading, a change in between is picked up next time
+    long[] stamps = stamps();
+    SslContext defaultContext = newContext(tlsOptions.getDefaultCertificate());
+    DomainWildcardMappingBuilder<SslContext> mappingBuilder =
+        new DomainWildcardMappingBuilder<>(defaultContext);
+    for (TlsOptions.Certificate certificate : tlsOptions.getSniCertificates()) {
+      mappingBuilder.add(certificate.getHostname(), newContext(certificate));
+    }
+    return new Snapshot(defaultContext, mappingBuilder.build(), stamps);
+  }
+
+  private SslContext newContext(TlsOptions.Certificate certificate) throws SSLException {
+    SslContextBuilder sslContextBuilder =
+        certificate.isReloadable()
+            ? SslContextBuilder.forServer(certificate.getCertFile(), certificate.getKeyFile())
+            : SslContextBuilder.forServer(
+                new ByteArrayInputStream(certificate.getCert()),
+                new ByteArrayInputStream(certificate.getKey()));
+    sslContextBuilder.sslProvider(sslProvider);
+    if (tlsOptions.getSessionCacheSize() > 0) {
+      sslContextBuilder.sessionCacheSize(tlsOptions.getSessionCacheSize());
+    }
+    if (tlsOptions.getSessionTimeoutSeconds() > 0) {
+      sslContextBuilder.sessionTimeout(tlsOptions.getSessionTimeoutSeconds());
+    }
+    if (http2) {
+      configureAlpn(sslContextBuilder);
+    }
+    SslContext sslContext = sslContextBuilder.build();
+    SSLSessionContext sessionContext = sslContext.sessionContext();
+    if (tlsOptions.isSessionTickets() && sessionContext instanceof OpenSslSessionContext) {
+      ((OpenSslSessionContext) sessionContext).setTicketKeys(ticketKeys());
+    }
+    return sslContext;
+  }
+
+  private void configureAlpn(SslContextBuilder sslContextBuilder) {
+    if (!SslProvider.isAlpnSupported(sslProvider)) {
+      logger.atWarn().log("ALPN is not supported by {}, HTTP/2 is disabled on ssl", sslProvider);
+      return;
+    }
+    sslContextBuilder
+        .ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+        .applicationProtocolConfig(
+            new ApplicationProtocolConfig(
+                ApplicationProtocolConfig.Protocol.ALPN,
+                ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+                ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+                ApplicationProtocolNames.HTTP_2,
+                ApplicationProtocolNames.HTTP_1_1));
+  }
+
+  // No key means random keys of OpenSSL
+  private OpenSslSessionTicketKey[] ticketKeys() {
+    List<byte[]> keys = tlsOptions.getSessionTicketKeys();
+    OpenSslSessionTicketKey[] ticketKeys = new OpenSslSessionTicketKey[keys.size()];
+    for (int i = 0; i < ticketKeys.length; i++) {
+      byte[] key = keys.get(i);
+      ticketKeys[i] =
+          new OpenSslSessionTicketKey(
+              Arrays.copyOfRange(key, 0, TICKET_KEY_PART_LENGTH),
+              Arrays.copyOfRange(key, TICKET_KEY_PART_LENGTH, TICKET_KEY_PART_LENGTH * 2),
+              Arrays.copyOfRange(key, TICKET_KEY_PART_LENGTH * 2, TlsOptions.TICKET_KEY_LENGTH));
+    }
+    return ticketKeys;
+  }
+
+  // Modification time and length of every certificate file
+  private long[] stamps() {
+    List<TlsOptions.Certificate> certificates = tlsOptions.getSniCertificates();
+    long[] stamps = new long[(certificates.size() + 1) * 4];
+    stamp(tlsOptions.getDefaultCertificate(), stamps, 0);
+    for (int i = 0; i < certificates.size(); i++) {
+      stamp(certificates.get(i), stamps, (i + 1) * 4);
+    }
+    return stamps;
+  }
+
+  private static void stamp(TlsOptions.Certificate certificate, long[] stamps, int offset) {
+    if (certificate.isReloadable()) {
+      File certFile = certificate.getCertFile();
+      File keyFile = certificate.getKeyFile();
+      stamps[offset] = certFile.lastModified();
+      stamps[offset + 1] = certFile.length();
+      stamps[offset + 2] = keyFile.lastModified();
+      stamps[offset + 3] = keyFile.length();
+    }
+  }
+
+  private static SslProvider resolveProvider(SslProvider sslProvider) {
+    if (sslProvider != null) {
+      return sslProvider;
+    }
+    return isOpenSslAvailable() ? SslProvider.OPENSSL : SslProvider.JDK;
+  }
+
+  private static boolean isOpenSslAvailable() {
+    try {
+      return OpenSsl.isAvailable();
+    } catch (Throwable e) {
+      // Classes of netty-tcnative are missing
+      return false;
+    }
+  }
+
+  /** Contexts that are in use. */
+  private static final class Snapshot {
+    private final SslContext defaultContext;
+    private final Mapping<String, SslContext> mapping;
+    private final long[] stamps;
+
+    private Snapshot(
+        SslContext defaultContext, Mapping<String, SslContext> mapping, long[] stamps) {
+      this.defaultContext = defaultContext;
+      this.mapping = mapping;
+      this.stamps = stamps;
+    }
+  }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.core.netty.ssl;
+
+import io.netty.handler.ssl.SslProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.SslPair;
+
+/**
+ * Options of TLS. Certificates given as files are reloaded once they change on disk, and extra
+ * certificates are chosen by server name that client indicates.
+ *
+ * @author esotericman
+ */
+public final class TlsOptions {
+  // Name, hmac key and aes key, 16 bytes each
+  static final int TICKET_KEY_LENGTH = 48;
+  private final Certificate defaultCertificate;
+  private final List<Certificate> sniCertificates;
+  private final SslProvider sslProvider;
+  private final long sessionCacheSize;
+  private final long sessionTimeoutSeconds;
+  private final boolean sessionTickets;
+  private final List<byte[]> sessionTicketKeys;
+  private final long reloadIntervalMillis;
+  private final boolean forceSsl;
+
+  private TlsOptions(TlsOptionsBuilder builder) {
+    this.defaultCertificate = builder.defaultCertificate;
+    this.sniCertificates = Collections.unmodifiableList(new ArrayList<>(builder.sniCertificates));
+    this.sslProvider = builder.sslProvider;
+    this.sessionCacheSize = builder.sessionCacheSize;
+    this.sessionTimeoutSeconds = builder.sessionTimeoutSeconds;
+    this.sessionTickets = builder.sessionTickets;
+    this.sessionTicketKeys =
+        Collections.unmodifiableList(new ArrayList<>(builder.sessionTicketKeys));
+    this.reloadIntervalMillis = builder.reloadIntervalMillis;
+    this.forceSsl = builder.forceSsl;
+  }
+
+  public static TlsOptionsBuilder newBuilder() {
+    return new TlsOptionsBuilder();
+  }
+
+  /**
+   * Options of an ssl pair, whose certificate can't be reloaded.
+   *
+   * @param sslPair ssl pair
+   * @return options
+   */
+  public static TlsOptions of(SslPair sslPair) {
+    return newBuilder()
+        .certificate(sslPair.certFile(), sslPair.keyFile())
+        .forceSsl(sslPair.forceStatus())
+        .build();
+  }
+
+  public Certificate getDefaultCertificate() {
+    return defaultCertificate;
+  }
+
+  public List<Certificate> getSniCertificates() {
+    return sniCertificates;
+  }
+
+  /**
+   * Provider of TLS, OpenSSL is preferred when it's available.
+   *
+   * @return provider, or null if it's chosen automatically
+   */
+  public SslProvider getSslProvider() {
+    return sslProvider;
+  }
+
+  public long getSessionCacheSize() {
+    return sessionCacheSize;
+  }
+
+  public long getSessionTimeoutSeconds() {
+    return sessionTimeoutSeconds;
+  }
+
+  public boolean isSessionTickets() {
+    return sessionTickets;
+  }
+
+  public List<byte[]> getSessionTicketKeys() {
+    return sessionTicketKeys;
+  }
+
+  public long getReloadIntervalMillis() {
+    return reloadIntervalMillis;
+  }
+
+  public boolean isForceSsl() {
+    return forceSsl;
+  }
+
+  /** Certificate chain and its private key, both in PEM format. */
+  public static final class Certificate {
+    private final String hostname;
+    private final File certFile;
+    private final File keyFile;
+    private final byte[] cert;
+    private final byte[] key;
+
+    private Certificate(String hostname, File certFile, File keyFile) {
+      this.hostname = hostname;
+      this.certFile = Objects.requireNonNull(certFile, "CertFile must not be null");
+      this.keyFile = Objects.requireNonNull(keyFile, "KeyFile must not be null");
+      this.cert = null;
+      this.key = null;
+    }
+
+    private Certificate(String hostname, byte[] cert, byte[] key) {
+      this.hostname = hostname;
+      this.certFile = null;
+      this.keyFile = null;
+      this.cert = cert;
+      this.key = key;
+    }
+
+    /**
+     * Server name of certificate, which may start with a wildcard like {@code *.example.com}.
+     *
+     * @return server name, or null for default certificate
+     */
+    public String getHostname() {
+      return hostname;
+    }
+
+    public File getCertFile() {
+      return certFile;
+    }
+
+    public File getKeyFile() {
+      return keyFile;
+    }
+
+    public boolean isReloadable() {
+      return certFile != null;
+    }
+
+    byte[] getCert() {
+      return cert;
+    }
+
+    byte[] getKey() {
+      return key;
+    }
+  }
+
+  /** Builder for TlsOptions */
+  public static final class TlsOptionsBuilder {
+    private Certificate defaultCertificate;
+    private final List<Certificate> sniCertificates = new ArrayList<>();
+    private SslProvider sslProvider;
+    private long sessionCacheSize;
+    private long sessionTimeoutSeconds;
+    private boolean sessionTickets;
+    private final List<byte[]> sessionTicketKeys = new ArrayList<>();
+    private long reloadIntervalMillis;
+    private boolean forceSsl;
+
+    private TlsOptionsBuilder() {}
+
+    /**
+     * Default certificate, it's used when client indicates no server name or an unknown one.
+     *
+     * @param certFile X.509 certificate chain file in PEM format
+     * @param keyFile PKCS#8 private key file in PEM format
+     * @return builder
+     */
+    public TlsOptionsBuilder certificate(File certFile, File keyFile) {
+      this.defaultCertificate = new Certificate(null, certFile, keyFile);
+      return this;
+    }
+
+    /**
+     * Default certificate read from streams, which can't be reloaded.
+     *
+     * @param certStream X.509 certificate chain in PEM format
+     * @param keyStream PKCS#8 private key in PEM format
+     * @return builder
+     */
+    public TlsOptionsBuilder certificate(InputStream certStream, InputStream keyStream) {
+      this.defaultCertificate =
+          new Certificate(
+              null,
+              readFully(Objects.requireNonNull(certStream, "CertFile must not be null")),
+              readFully(Objects.requireNonNull(keyStream, "KeyFile must not be null")));
+      return this;
+    }
+
+    /**
+     * Certificate of a server name, it's chosen when client indicates this name.
+     *
+     * @param hostname server name, such as {@code api.example.com} or {@code *.example.com}
+     * @param certFile X.509 certificate chain file in PEM format
+     * @param keyFile PKCS#8 private key file in PEM format
+     * @return builder
+     */
+    public TlsOptionsBuilder certificate(String hostname, File certFile, File keyFile) {
+      this.sniCertificates.add(
+          new Certificate(Objects.requireNonNull(hostname), certFile, keyFile));
+      return this;
+    }
+
+    /**
+     * Provider of TLS, by default OpenSSL is used when netty-tcnative is on classpath, otherwise
+     * JDK.
+     *
+     * @param sslProvider provider
+     * @return builder
+     */
+    public TlsOptionsBuilder sslProvider(SslProvider sslProvider) {
+      this.sslProvider = sslProvider;
+      return this;
+    }
+
+    /**
+     * Number of sessions cached for resumption, 0 keeps default of provider.
+     *
+     * @param sessionCacheSize size of session cache
+     * @return builder
+     */
+    public TlsOptionsBuilder sessionCacheSize(long sessionCacheSize) {
+      if (sessionCacheSize < 0) {
+        throw new IllegalArgumentException("sessionCacheSize must not be negative!");
+      }
+      this.sessionCacheSize = sessionCacheSize;
+      return this;
+    }
+
+    /**
+     * How long a session can be resumed, 0 keeps default of provider.
+     *
+     * @param sessionTimeout timeout of session
+     * @param unit unit of time
+     * @return builder
+     */
+    public TlsOptionsBuilder sessionTimeout(long sessionTimeout, TimeUnit unit) {
+      if (sessionTimeout < 0) {
+        throw new IllegalArgumentException("sessionTimeout must not be negative!");
+      }
+      this.sessionTimeoutSeconds = unit.toSeconds(sessionTimeout);
+      return this;
+    }
+
+    /**
+     * Resume sessions with tickets, so that server keeps no state of them. It applies to OpenSSL,
+     * JDK follows system property {@code jdk.tls.server.enableSessionTicketExtension}.
+     *
+     * @param sessionTickets whether to issue session tickets
+     * @return builder
+     */
+    public TlsOptionsBuilder sessionTickets(boolean sessionTickets) {
+      this.sessionTickets = sessionTickets;
+      return this;
+    }
+
+    /**
+     * Keys of session tickets, so that servers sharing them resume sessions of each other. The
+     * first key encrypts new tickets, the others only decrypt. Random keys are used if none is
+     * given.
+     *
+     * @param sessionTicketKeys keys of 48 bytes, made of name, hmac key and aes key
+     * @return builder
+     */
+    public TlsOptionsBuilder sessionTicketKeys(byte[]... sessionTicketKeys) {
+      for (byte[] sessionTicketKey : sessionTicketKeys) {
+        if (sessionTicketKey.length != TICKET_KEY_LENGTH) {
+          throw new IllegalArgumentException(
+              "Session ticket key must have " + TICKET_KEY_LENGTH + " bytes!");
+        }
+        this.sessionTicketKeys.add(sessionTicketKey.clone());
+      }
+      this.sessionTickets = true;
+      return this;
+    }
+
+    /**
+     * Check certificate files at given interval, and swap them in once they change. 0 disables
+     * it.
+     *
+     * @param reloadInterval interval of checking
+     * @param unit unit of time
+     * @return builder
+     */
+    public TlsOptionsBuilder reloadInterval(long reloadInterval, TimeUnit unit) {
+      if (reloadInterval < 0) {
+        throw new IllegalArgumentException("reloadInterval must not be negative!");
+      }
+      this.reloadIntervalMillis = unit.toMillis(reloadInterval);
+      return this;
+    }
+
+    /**
+     * Refuse cleartext connections, otherwise both are accepted on the same port.
+     *
+     * @param forceSsl whether to force TLS
+     * @return builder
+     */
+    public TlsOptionsBuilder forceSsl(boolean forceSsl) {
+      this.forceSsl = forceSsl;
+      return this;
+    }
+
+    public TlsOptions build() {
+      if (Objects.isNull(defaultCertificate)) {
+        throw new IllegalStateException("Default certificate is required!");
+      }
+      return new TlsOptions(this);
+    }
+
+    private static byte[] readFully(InputStream inputStream) {
+      try (InputStream in = inputStream) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+          out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
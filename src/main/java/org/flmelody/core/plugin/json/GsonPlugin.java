@@ -19,8 +19,20 @@ package org.flmelody.core.plugin.json;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 import org.flmelody.core.exception.JsonDeserializeException;
 import org.flmelody.core.exception.JsonSerializeException;
 
@@ -29,30 +41,49 @@ import org.flmelody.core.exception.JsonSerializeException;
  */
 public class GsonPlugin implements JsonPlugin {
   protected final Gson gson;
+  private final JsonStringPolicy stringPolicy;
 
   public GsonPlugin() {
-    gson = gson();
+    this(JsonStringPolicy.DETECT);
+  }
+
+  public GsonPlugin(JsonStringPolicy stringPolicy) {
+    this.stringPolicy = Objects.requireNonNull(stringPolicy);
+    gson = gson().newBuilder().registerTypeAdapter(RawJson.class, new RawJsonAdapter()).create();
   }
 
   protected Gson gson() {
     return new GsonBuilder().serializeNulls().create();
   }
 
+  /** {@inheritDoc} */
+  @Override
+  public JsonStringPolicy getStringPolicy() {
+    return stringPolicy;
+  }
+
   /** {@inheritDoc} */
   @Override
   public <I> String toJson(I data) {
+    return toJson(data, stringPolicy);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <I> void writeJson(I data, OutputStream out) {
     try {
-      // whether string is json string already
-      if (data instanceof String) {
-        String result = String.valueOf(data);
-        try {
-          gson.getAdapter(JsonElement.class).fromJson(result);
-          return result;
-        } catch (Exception ignored) {
-          // do nothing
-        }
+      if (data instanceof RawJson) {
+        ((RawJson) data).writeTo(out);
+        out.flush();
+        return;
       }
-      return gson.toJson(data);
+      Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      if (data instanceof String && isJson((String) data, stringPolicy)) {
+        writer.write((String) data);
+      } else {
+        gson.toJson(data, writer);
+      }
+      writer.flush();
     } catch (Exception e) {
       throw new JsonSerializeException(e);
     }
@@ -72,6 +103,79 @@ public class GsonPlugin implements JsonPlugin {
   @Override
   public <I, O> O toObject(I data, Type type) {
     //noinspection unchecked
-    return (O) gson.fromJson(toJson(data), TypeToken.get(type));
+    return (O) gson.fromJson(toJson(data, JsonStringPolicy.DETECT), TypeToken.get(type));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <O> O toObject(InputStream json, Class<O> clazz) {
+    try {
+      return gson.fromJson(new InputStreamReader(json, StandardCharsets.UTF_8), clazz);
+    } catch (Exception e) {
+      throw new JsonDeserializeException(e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <O> O toObject(InputStream json, Type type) {
+    try {
+      //noinspection unchecked
+      return (O)
+          gson.fromJson(new InputStreamReader(json, StandardCharsets.UTF_8), TypeToken.get(type));
+    } catch (Exception e) {
+      throw new JsonDeserializeException(e);
+    }
+  }
+
+  private <I> String toJson(I data, JsonStringPolicy policy) {
+    if (data instanceof RawJson) {
+      return data.toString();
+    }
+    if (data instanceof String && isJson((String) data, policy)) {
+      return (String) data;
+    }
+    try {
+      return gson.toJson(data);
+    } catch (Exception e) {
+      throw new JsonSerializeException(e);
+    }
+  }
+
+  // Whether string is json string already
+  private boolean isJson(String value, JsonStringPolicy policy) {
+    switch (policy) {
+      case RAW:
+        return true;
+      case VALUE:
+        return false;
+      default:
+        if (!JsonStringPolicy.mayBeJson(value)) {
+          return false;
+        }
+        try {
+          gson.getAdapter(JsonElement.class).fromJson(value);
+          return true;
+        } catch (Exception ignored) {
+          return false;
+        }
+    }
+  }
+
+  // Raw json nested in other objects
+  private static class RawJsonAdapter extends TypeAdapter<RawJson> {
+    @Override
+    public void write(JsonWriter out, RawJson value) throws IOException {
+      if (value == null) {
+        out.nullValue();
+      } else {
+        out.jsonValue(value.toString());
+      }
+    }
+
+    @Override
+    public RawJson read(JsonReader in) {
+      return RawJson.of(JsonParser.parseReader(in).toString());
+    }
   }
 }
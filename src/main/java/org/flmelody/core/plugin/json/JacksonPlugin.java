@@ -17,41 +17,118 @@
 package org.flmelody.core.plugin.json;
 
 import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import org.flmelody.core.exception.JsonDeserializeException;
 import org.flmelody.core.exception.JsonSerializeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
+ * Json plugin backed by Jackson. Readers and writers are resolved once per type and reused, and
+ * Blackbird or Afterburner is registered when found on classpath.
+ *
  * @author esotericman
  */
 public class JacksonPlugin implements JsonPlugin {
+  private static final Logger logger = LoggerFactory.getLogger(JacksonPlugin.class);
+  // Bytecode accelerated modules, the first one found is used
+  private static final String[] ACCELERATED_MODULES = {
+    "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+    "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+  };
+  // Types seen at runtime are no longer cached beyond that
+  private static final int MAX_CACHED_TYPES = 1024;
   protected final ObjectMapper objectMapper = new ObjectMapper();
+  private final JsonStringPolicy stringPolicy;
+  private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
 
   {
     objectMapper
         .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
-        .configure(DeserializationFeature.FAIL_ON_TRAILING_TOKENS, true);
+        .configure(DeserializationFeature.FAIL_ON_TRAILING_TOKENS, true)
+        .registerModule(new SimpleModule().addSerializer(new RawJsonSerializer()));
+  }
+
+  public JacksonPlugin() {
+    this(JsonStringPolicy.DETECT);
+  }
+
+  public JacksonPlugin(JsonStringPolicy stringPolicy) {
+    this(stringPolicy, true);
+  }
+
+  /**
+   * Create plugin.
+   *
+   * @param stringPolicy how strings are serialized
+   * @param accelerated whether to register Blackbird or Afterburner if it is on classpath
+   */
+  public JacksonPlugin(JsonStringPolicy stringPolicy, boolean accelerated) {
+    this.stringPolicy = Objects.requireNonNull(stringPolicy);
+    if (accelerated) {
+      Module module = acceleratedModule();
+      if (module != null) {
+        objectMapper.registerModule(module);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void prepare(Collection<Class<?>> resultTypes) {
+    for (Class<?> resultType : resultTypes) {
+      if (isPreparable(resultType)) {
+        writers.computeIfAbsent(resultType, this::newWriter);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public JsonStringPolicy getStringPolicy() {
+    return stringPolicy;
   }
 
   /** {@inheritDoc} */
   @Override
   public <I> String toJson(I data) {
+    return toJson(data, stringPolicy);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <I> void writeJson(I data, OutputStream out) {
     try {
-      // whether string is json string already
-      if (data instanceof String) {
-        try {
-          String result = String.valueOf(data);
-          objectMapper.readTree(result);
-          return result;
-        } catch (JacksonException ignored) {
-          // do nothing
-        }
+      if (data instanceof RawJson) {
+        ((RawJson) data).writeTo(out);
+      } else if (data instanceof String && isJson((String) data, stringPolicy)) {
+        out.write(((String) data).getBytes(StandardCharsets.UTF_8));
+      } else {
+        writer(data).writeValue(out, data);
+        return;
       }
-      return objectMapper.writeValueAsString(data);
-    } catch (JsonProcessingException e) {
+      out.flush();
+    } catch (IOException e) {
       throw new JsonSerializeException(e);
     }
   }
@@ -60,7 +137,7 @@ public class JacksonPlugin implements JsonPlugin {
   @Override
   public <O> O toObject(String json, Class<O> clazz) {
     try {
-      return objectMapper.readValue(json, clazz);
+      return reader(clazz).readValue(json);
     } catch (JsonProcessingException e) {
       throw new JsonDeserializeException(e);
     }
@@ -70,9 +147,143 @@ public class JacksonPlugin implements JsonPlugin {
   @Override
   public <I, O> O toObject(I data, Type type) {
     try {
-      return objectMapper.readValue(toJson(data), objectMapper.constructType(type));
+      return reader(type).readValue(toJson(data, JsonStringPolicy.DETECT));
     } catch (JsonProcessingException e) {
       throw new JsonDeserializeException(e);
     }
   }
+
+  /** {@inheritDoc} */
+  @Override
+  public <O> O toObject(InputStream json, Class<O> clazz) {
+    try {
+      return reader(clazz).readValue(json);
+    } catch (IOException e) {
+      throw new JsonDeserializeException(e);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public <O> O toObject(InputStream json, Type type) {
+    try {
+      return reader(type).readValue(json);
+    } catch (IOException e) {
+      throw new JsonDeserializeException(e);
+    }
+  }
+
+  private <I> String toJson(I data, JsonStringPolicy policy) {
+    if (data instanceof RawJson) {
+      return data.toString();
+    }
+    if (data instanceof String && isJson((String) data, policy)) {
+      return (String) data;
+    }
+    try {
+      return writer(data).writeValueAsString(data);
+    } catch (JsonProcessingException e) {
+      throw new JsonSerializeException(e);
+    }
+  }
+
+  // Reader bound to type, so its JavaType and deserializer are resolved once
+  private ObjectReader reader(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (reader != null) {
+      return reader;
+    }
+    reader = objectMapper.readerFor(objectMapper.constructType(type));
+    if (readers.size() < MAX_CACHED_TYPES) {
+      readers.putIfAbsent(type, reader);
+    }
+    return reader;
+  }
+
+  // Writer bound to runtime class of data, which is what Jackson would serialize it as anyway
+  private ObjectWriter writer(Object data) {
+    if (data == null) {
+      return objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+    Class<?> type = data.getClass();
+    ObjectWriter writer = writers.get(type);
+    if (writer != null) {
+      return writer;
+    }
+    writer = newWriter(type);
+    if (writers.size() < MAX_CACHED_TYPES) {
+      writers.putIfAbsent(type, writer);
+    }
+    return writer;
+  }
+
+  private ObjectWriter newWriter(Class<?> type) {
+    return objectMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+  }
+
+  // Values are always of concrete classes, and strings or raw json never reach writers
+  private static boolean isPreparable(Class<?> type) {
+    return type != null
+        && !type.isPrimitive()
+        && !type.isInterface()
+        && !Modifier.isAbstract(type.getModifiers())
+        && type != Object.class
+        && type != Void.class
+        && type != String.class
+        && type != RawJson.class;
+  }
+
+  private static Module acceleratedModule() {
+    for (String moduleClass : ACCELERATED_MODULES) {
+      try {
+        Module module =
+            (Module)
+                Class.forName(moduleClass, true, JacksonPlugin.class.getClassLoader())
+                    .getDeclaredConstructor()
+                    .newInstance();
+        logger.atDebug().log("Jackson accelerated by {}", module.getModuleName());
+        return module;
+      } catch (ClassNotFoundException ignored) {
+        // try next one
+      } catch (ReflectiveOperationException | LinkageError e) {
+        logger.atWarn().log("Failed to load " + moduleClass, e);
+      }
+    }
+    return null;
+  }
+
+  // Whether string is json string already
+  private boolean isJson(String value, JsonStringPolicy policy) {
+    switch (policy) {
+      case RAW:
+        return true;
+      case VALUE:
+        return false;
+      default:
+        if (!JsonStringPolicy.mayBeJson(value)) {
+          return false;
+        }
+        try {
+          objectMapper.readTree(value);
+          return true;
+        } catch (JacksonException ignored) {
+          return false;
+        }
+    }
+  }
+
+  // Raw json nested in other objects
+  private static class RawJsonSerializer extends StdSerializer<RawJson> {
+    private static final long serialVersionUID = 1L;
+
+    RawJsonSerializer() {
+      super(RawJson.class);
+    }
+
+    @Override
+    public void serialize(RawJson value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeRawValue(value.toString());
+    }
+  }
 }
@@ -16,7 +16,15 @@
 
 package org.flmelody.core.plugin.json;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import org.flmelody.core.exception.JsonDeserializeException;
+import org.flmelody.core.exception.JsonSerializeException;
 import org.flmelody.core.plugin.Plugin;
 
 /**
@@ -26,6 +34,23 @@ import org.flmelody.core.plugin.Plugin;
  */
 public interface JsonPlugin extends Plugin {
 
+  /**
+   * How strings are serialized by this plugin
+   *
+   * @return policy of strings
+   */
+  default JsonStringPolicy getStringPolicy() {
+    return JsonStringPolicy.DETECT;
+  }
+
+  /**
+   * Prepare for types known at startup, such as result types of routers, so plugins can resolve
+   * whatever serializing them needs before the first request.
+   *
+   * @param resultTypes types that are written as json
+   */
+  default void prepare(Collection<Class<?>> resultTypes) {}
+
   /**
    * Convert data into json string
    *
@@ -35,6 +60,27 @@ public interface JsonPlugin extends Plugin {
    */
   <I> String toJson(I data);
 
+  /**
+   * Write data as json into stream, plugins should encode it without building string first. The
+   * stream is flushed but left open.
+   *
+   * @param data data
+   * @param out stream receives json in UTF-8
+   * @param <I> type of data
+   */
+  default <I> void writeJson(I data, OutputStream out) {
+    try {
+      if (data instanceof RawJson) {
+        ((RawJson) data).writeTo(out);
+      } else {
+        out.write(toJson(data).getBytes(StandardCharsets.UTF_8));
+      }
+      out.flush();
+    } catch (IOException e) {
+      throw new JsonSerializeException(e);
+    }
+  }
+
   /**
    * Convert json string into specific class
    *
@@ -55,4 +101,50 @@ public interface JsonPlugin extends Plugin {
    * @return converted object
    */
   <I, O> O toObject(I data, Type type);
+
+  /**
+   * Convert json stream into specific class, plugins should parse it without decoding it into
+   * string first
+   *
+   * @param json json stream in UTF-8
+   * @param clazz class
+   * @param <O> type of class
+   * @return converted object
+   */
+  default <O> O toObject(InputStream json, Class<O> clazz) {
+    return toObject(readString(json), clazz);
+  }
+
+  /**
+   * Convert json stream into specific type, plugins should parse it without decoding it into
+   * string first
+   *
+   * @param json json stream in UTF-8
+   * @param type type
+   * @param <O> type
+   * @return converted object
+   */
+  default <O> O toObject(InputStream json, Type type) {
+    return toObject(readString(json), type);
+  }
+
+  /**
+   * Read whole stream as string, for plugins that parse strings only
+   *
+   * @param json json stream in UTF-8
+   * @return json string
+   */
+  static String readString(InputStream json) {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = json.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new JsonDeserializeException(e);
+    }
+  }
 }
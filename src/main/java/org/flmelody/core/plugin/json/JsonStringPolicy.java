@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.flmelody.core.plugin.json;
+
+/**
+ * How {@link JsonPlugin} serializes {@link String}. Use {@link RawJson} to write json that has
+ * been serialized already regardless of policy.
+ *
+ * @author esotericman
+ */
+public enum JsonStringPolicy {
+  /**
+   * Strings that are valid json are written as they are, others are encoded as json string. Only
+   * strings that may start a json value are parsed to tell.
+   */
+  DETECT,
+  /** Strings are trusted to be json and written as they are, without any check. */
+  RAW,
+  /** Strings are always encoded as json string. */
+  VALUE;
+
+  /**
+   * Whether string may be json, so that plain text skips parsing. Blank strings are left to the
+   * parser.
+   *
+   * @param value string
+   * @return false if string can't be json
+   */
+  static boolean mayBeJson(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\r') {
+        continue;
+      }
+      return c == '{'
+          || c == '['
+          || c == '"'
+          || c == '-'
+          || (c >= '0' && c <= '9')
+          || c == 't'
+          || c == 'f'
+          || c == 'n';
+    }
+    return true;
+  }
+}
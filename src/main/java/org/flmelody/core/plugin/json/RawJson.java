@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.flmelody.core.plugin.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Json that has been serialized already, {@link JsonPlugin} writes it byte-for-byte without
+ * parsing or encoding it again.
+ *
+ * @author esotericman
+ */
+public final class RawJson {
+  private final byte[] bytes;
+  private String json;
+
+  private RawJson(byte[] bytes, String json) {
+    this.bytes = bytes;
+    this.json = json;
+  }
+
+  /**
+   * Raw json of string, caller guarantees it's valid json.
+   *
+   * @param json json string
+   * @return raw json
+   */
+  public static RawJson of(String json) {
+    Objects.requireNonNull(json);
+    return new RawJson(json.getBytes(StandardCharsets.UTF_8), json);
+  }
+
+  /**
+   * Raw json of bytes, caller guarantees it's valid json in UTF-8. Bytes are copied.
+   *
+   * @param json json bytes
+   * @return raw json
+   */
+  public static RawJson of(byte[] json) {
+    return new RawJson(Arrays.copyOf(json, json.length), null);
+  }
+
+  /**
+   * Length of json in bytes.
+   *
+   * @return length
+   */
+  public int length() {
+    return bytes.length;
+  }
+
+  /**
+   * Write json into stream as it is.
+   *
+   * @param out target stream
+   * @throws IOException if stream fails
+   */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(bytes);
+  }
+
+  /**
+   * Json as string.
+   *
+   * @return json string
+   */
+  @Override
+  public String toString() {
+    String result = json;
+    if (result == null) {
+      result = new String(bytes, StandardCharsets.UTF_8);
+      json = result;
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    return o instanceof RawJson && Arrays.equals(bytes, ((RawJson) o).bytes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(bytes);
+  }
+}
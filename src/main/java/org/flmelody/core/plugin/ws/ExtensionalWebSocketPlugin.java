@@ -34,8 +34,10 @@ import org.flmelody.util.AntPathMatcher;
  * @author esotericman
  */
 public class ExtensionalWebSocketPlugin implements WebSocketPlugin {
-  private final AntPathMatcher pathMatcher = AntPathMatcher.newBuild().withIgnoreCase().build();
+  private static final AntPathMatcher pathMatcher =
+      AntPathMatcher.newBuild().withIgnoreCase().build();
   protected final String pattern;
+  private final AntPathMatcher.CompiledPattern compiledPattern;
   private final List<WebSocketCodec> webSocketCodecs;
   private final List<WebSocketParser<?>> webSocketParsers;
 
@@ -56,6 +58,7 @@ public class ExtensionalWebSocketPlugin implements WebSocketPlugin {
       throw new IllegalArgumentException("Pattern can't be empty");
     }
     this.pattern = pattern;
+    this.compiledPattern = pathMatcher.compile(pattern);
     if (webSocketCodecs == null) {
       this.webSocketCodecs = Collections.emptyList();
     } else {
@@ -75,7 +78,7 @@ public class ExtensionalWebSocketPlugin implements WebSocketPlugin {
   }
 
   public boolean isMatch(String path) {
-    return this.pathMatcher.isMatch(pattern, path);
+    return this.compiledPattern.isMatch(path);
   }
 
   public List<WebSocketCodec> getWebSocketCodecs() {
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.flmelody.core.support;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Virtual threads, only available when running on Java 21 or later. This class is replaced by the
+ * one under META-INF/versions/21 of multi-release jar.
+ *
+ * @author esotericman
+ */
+public final class VirtualThreads {
+
+  private VirtualThreads() {}
+
+  /**
+   * Whether virtual threads are available on current runtime.
+   *
+   * @return false before Java 21
+   */
+  public static boolean isAvailable() {
+    return false;
+  }
+
+  /**
+   * Executor that starts a new virtual thread for each task.
+   *
+   * @return null before Java 21
+   */
+  public static Executor executor() {
+    return null;
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit that adapts to latency with additive increase and multiplicative decrease.
+ * Limit grows by one while requests complete in time and keep it busy, and shrinks by backoff
+ * ratio whenever a request is slower than latency threshold or dropped. Requests above limit are
+ * rejected immediately instead of queueing.
+ *
+ * @author esotericman
+ */
+public final class AimdLimiter {
+  private final int minLimit;
+  private final int maxLimit;
+  private final long latencyThresholdNanos;
+  private final double backoffRatio;
+  private final AtomicInteger limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  private AimdLimiter(AimdLimiterBuilder builder) {
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.latencyThresholdNanos = builder.latencyThresholdNanos;
+    this.backoffRatio = builder.backoffRatio;
+    this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, builder.initialLimit)));
+  }
+
+  public static AimdLimiterBuilder newBuilder() {
+    return new AimdLimiterBuilder();
+  }
+
+  /**
+   * Take a slot if limit is not reached.
+   *
+   * @return true if request is admitted, it must be released later
+   */
+  public boolean tryAcquire() {
+    for (; ; ) {
+      int current = inFlight.get();
+      if (current >= limit.get()) {
+        rejections.increment();
+        return false;
+      }
+      if (inFlight.compareAndSet(current, current + 1)) {
+        accepted.increment();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Give back slot of admitted request and adapt limit to its latency.
+   *
+   * @param latencyNanos time request took
+   * @param dropped whether request was dropped, which is a sign of overload as well
+   */
+  public void release(long latencyNanos, boolean dropped) {
+    int current = inFlight.getAndDecrement();
+    if (dropped || latencyNanos > latencyThresholdNanos) {
+      limit.updateAndGet(l -> Math.max(minLimit, (int) (l * backoffRatio)));
+    } else if (current * 2 >= limit.get()) {
+      // Limit only grows when it's actually used
+      limit.updateAndGet(l -> Math.min(maxLimit, l + 1));
+    }
+  }
+
+  /** Give back slot of a request that never ran, limit is left as it is. */
+  public void cancel() {
+    inFlight.decrementAndGet();
+  }
+
+  public int getLimit() {
+    return limit.get();
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getAcceptedCount() {
+    return accepted.sum();
+  }
+
+  public long getRejectionCount() {
+    return rejections.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "AimdLimiter{limit="
+        + getLimit()
+        + ", inFlight="
+        + getInFlight()
+        + ", accepted="
+        + getAcceptedCount()
+        + ", rejections="
+        + getRejectionCount()
+        + '}';
+  }
+
+  /** Builder for AimdLimiter */
+  public static final class AimdLimiterBuilder {
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 200;
+    private long latencyThresholdNanos = TimeUnit.SECONDS.toNanos(5);
+    private double backoffRatio = 0.9;
+
+    private AimdLimiterBuilder() {}
+
+    public AimdLimiterBuilder initialLimit(int initialLimit) {
+      this.initialLimit = requirePositive(initialLimit, "initialLimit");
+      return this;
+    }
+
+    /**
+     * Range that limit adapts in.
+     *
+     * @param minLimit lower bound of limit
+     * @param maxLimit upper bound of limit
+     * @return builder
+     */
+    public AimdLimiterBuilder limits(int minLimit, int maxLimit) {
+      if (minLimit <= 0 || maxLimit < minLimit) {
+        throw new IllegalArgumentException("Illegal limits: " + minLimit + ", " + maxLimit);
+      }
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Requests slower than threshold shrink limit.
+     *
+     * @param latencyThreshold threshold of latency
+     * @param unit unit of time
+     * @return builder
+     */
+    public AimdLimiterBuilder latencyThreshold(long latencyThreshold, TimeUnit unit) {
+      if (latencyThreshold <= 0) {
+        throw new IllegalArgumentException("latencyThreshold must be positive!");
+      }
+      this.latencyThresholdNanos = unit.toNanos(latencyThreshold);
+      return this;
+    }
+
+    /**
+     * Ratio that limit is multiplied by when it shrinks.
+     *
+     * @param backoffRatio ratio between 0.5 and 1, exclusive
+     * @return builder
+     */
+    public AimdLimiterBuilder backoffRatio(double backoffRatio) {
+      if (backoffRatio < 0.5 || backoffRatio >= 1) {
+        throw new IllegalArgumentException("Backoff ratio must be in [0.5, 1)!");
+      }
+      this.backoffRatio = backoffRatio;
+      return this;
+    }
+
+    public AimdLimiter build() {
+      return new AimdLimiter(this);
+    }
+
+    private static int requirePositive(int value, String name) {
+      if (value <= 0) {
+        throw new IllegalArgumentException(name + " must be positive!");
+      }
+      return value;
+    }
+  }
+}
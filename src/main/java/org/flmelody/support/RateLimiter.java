@@ -0,0 +1,286 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.support;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rate limit of many keys. State of every key is a single atomic long that is updated with
+ * compare-and-set, keys live in a concurrent map, so nothing is locked. Keys whose state has been
+ * at rest for a while, that is a full bucket or an empty window, are evicted without losing
+ * anything. Eviction sweeps a few keys per call, so no caller pays for all of them.
+ *
+ * @author esotericman
+ */
+public final class RateLimiter {
+  // Keys checked by one call while eviction is in progress
+  private static final int SWEEP_BATCH = 64;
+  private final Algorithm algorithm;
+  private final long evictAfterNanos;
+  private final LongSupplier nanoClock;
+  // Times are kept relative to creation of limiter
+  private final long origin;
+  private final ConcurrentHashMap<String, AtomicLong> states = new ConcurrentHashMap<>();
+  private final LongAdder rejections = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  // Held by the only caller that sweeps, which guards sweep and nextEviction
+  private final AtomicBoolean sweeping = new AtomicBoolean();
+  private volatile long nextEviction;
+  private volatile boolean sweepInProgress;
+  private Iterator<Map.Entry<String, AtomicLong>> sweep;
+
+  private RateLimiter(
+      Algorithm algorithm, long evictAfter, TimeUnit unit, LongSupplier nanoClock) {
+    if (evictAfter <= 0) {
+      throw new IllegalArgumentException("evictAfter must be positive!");
+    }
+    this.algorithm = algorithm;
+    this.evictAfterNanos = unit.toNanos(evictAfter);
+    this.nanoClock = nanoClock;
+    this.origin = nanoClock.getAsLong();
+    this.nextEviction = evictAfterNanos;
+  }
+
+  /**
+   * Token bucket, which allows bursts of given capacity and refills at given rate. It's
+   * implemented as generic cell rate algorithm, which keeps only the time bucket becomes full.
+   *
+   * @param capacity maximum burst
+   * @param permitsPerSecond rate of refilling
+   * @param evictAfter time a full bucket is kept
+   * @param unit unit of time
+   * @return rate limiter
+   */
+  public static RateLimiter tokenBucket(
+      int capacity, double permitsPerSecond, long evictAfter, TimeUnit unit) {
+    return tokenBucket(capacity, permitsPerSecond, evictAfter, unit, System::nanoTime);
+  }
+
+  static RateLimiter tokenBucket(
+      int capacity, double permitsPerSecond, long evictAfter, TimeUnit unit, LongSupplier clock) {
+    return new RateLimiter(new TokenBucket(capacity, permitsPerSecond), evictAfter, unit, clock);
+  }
+
+  /**
+   * Sliding window, which allows given number of requests in any window. Count of previous
+   * window is weighted by how much of it still overlaps the sliding window.
+   *
+   * @param limit requests allowed in a window
+   * @param window length of window
+   * @param unit unit of time
+   * @return rate limiter
+   */
+  public static RateLimiter slidingWindow(int limit, long window, TimeUnit unit) {
+    return slidingWindow(limit, window, unit, System::nanoTime);
+  }
+
+  static RateLimiter slidingWindow(int limit, long window, TimeUnit unit, LongSupplier clock) {
+    SlidingWindow slidingWindow = new SlidingWindow(limit, unit.toNanos(window));
+    // Both windows are empty by then
+    return new RateLimiter(slidingWindow, window * 2, unit, clock);
+  }
+
+  /**
+   * Take a permit of key.
+   *
+   * @param key key, such as address of client
+   * @return true if permitted
+   */
+  public boolean tryAcquire(String key) {
+    long now = nanoClock.getAsLong() - origin;
+    evictIfDue(now);
+    AtomicLong state = states.get(key);
+    if (state == null) {
+      state = states.computeIfAbsent(key, k -> new AtomicLong(algorithm.initialState(now)));
+    }
+    for (; ; ) {
+      long current = state.get();
+      long next = algorithm.acquire(current, now);
+      if (next == Algorithm.REJECTED) {
+        rejections.increment();
+        return false;
+      }
+      if (state.compareAndSet(current, next)) {
+        return true;
+      }
+    }
+  }
+
+  public int size() {
+    return states.size();
+  }
+
+  public long getRejectionCount() {
+    return rejections.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "RateLimiter{size="
+        + size()
+        + ", rejections="
+        + getRejectionCount()
+        + ", evictions="
+        + getEvictionCount()
+        + '}';
+  }
+
+  private void evictIfDue(long now) {
+    if (!sweepInProgress && now - nextEviction < 0) {
+      return;
+    }
+    // Only one caller sweeps at a time, others go on
+    if (!sweeping.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      if (sweep == null) {
+        if (now - nextEviction < 0) {
+          return;
+        }
+        sweep = states.entrySet().iterator();
+        sweepInProgress = true;
+      }
+      // A permit taken from a state right when it's evicted is forgotten, which is harmless
+      for (int i = 0; i < SWEEP_BATCH && sweep.hasNext(); i++) {
+        Map.Entry<String, AtomicLong> entry = sweep.next();
+        AtomicLong state = entry.getValue();
+        if (algorithm.isAtRest(state.get(), now, evictAfterNanos)
+            && states.remove(entry.getKey(), state)) {
+          evictions.increment();
+        }
+      }
+      if (!sweep.hasNext()) {
+        sweep = null;
+        nextEviction = now + evictAfterNanos;
+        sweepInProgress = false;
+      }
+    } finally {
+      sweeping.set(false);
+    }
+  }
+
+  /** Algorithm that computes next state of a key from current one. */
+  private interface Algorithm {
+    long REJECTED = Long.MIN_VALUE;
+
+    long initialState(long now);
+
+    /**
+     * Next state after taking a permit.
+     *
+     * @param state current state
+     * @param now current time
+     * @return next state, or {@link #REJECTED}
+     */
+    long acquire(long state, long now);
+
+    boolean isAtRest(long state, long now, long restNanos);
+  }
+
+  private static final class TokenBucket implements Algorithm {
+    // Time to refill one token
+    private final long intervalNanos;
+    // How far theoretical arrival time may run ahead of now
+    private final long toleranceNanos;
+
+    private TokenBucket(int capacity, double permitsPerSecond) {
+      if (capacity <= 0 || permitsPerSecond <= 0) {
+        throw new IllegalArgumentException("Capacity and rate must be positive!");
+      }
+      this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+      this.toleranceNanos = intervalNanos * (capacity - 1);
+    }
+
+    @Override
+    public long initialState(long now) {
+      return now;
+    }
+
+    @Override
+    public long acquire(long state, long now) {
+      long arrival = Math.max(state, now);
+      if (arrival - now > toleranceNanos) {
+        return REJECTED;
+      }
+      return arrival + intervalNanos;
+    }
+
+    @Override
+    public boolean isAtRest(long state, long now, long restNanos) {
+      return now - state >= restNanos;
+    }
+  }
+
+  /** State holds low 16 bits of window index, counts of previous and current window. */
+  private static final class SlidingWindow implements Algorithm {
+    private static final long COUNT_MASK = (1L << 24) - 1;
+    private static final long INDEX_MASK = (1L << 16) - 1;
+    private final int limit;
+    private final long windowNanos;
+
+    private SlidingWindow(int limit, long windowNanos) {
+      if (limit <= 0 || limit > COUNT_MASK || windowNanos <= 0) {
+        throw new IllegalArgumentException("Illegal sliding window: " + limit + ", " + windowNanos);
+      }
+      this.limit = limit;
+      this.windowNanos = windowNanos;
+    }
+
+    @Override
+    public long initialState(long now) {
+      return ((now / windowNanos) & INDEX_MASK) << 48;
+    }
+
+    @Override
+    public long acquire(long state, long now) {
+      long index = now / windowNanos;
+      long elapsed = (index - (state >>> 48)) & INDEX_MASK;
+      long previous = (state >>> 24) & COUNT_MASK;
+      long current = state & COUNT_MASK;
+      if (elapsed == 1) {
+        previous = current;
+        current = 0;
+      } else if (elapsed != 0) {
+        previous = 0;
+        current = 0;
+      }
+      double overlap = 1 - (double) (now % windowNanos) / windowNanos;
+      if (previous * overlap + current >= limit) {
+        return REJECTED;
+      }
+      return ((index & INDEX_MASK) << 48) | (previous << 24) | (current + 1);
+    }
+
+    @Override
+    public boolean isAtRest(long state, long now, long restNanos) {
+      long elapsed = ((now / windowNanos) - (state >>> 48)) & INDEX_MASK;
+      return elapsed * windowNanos >= restNanos;
+    }
+  }
+}
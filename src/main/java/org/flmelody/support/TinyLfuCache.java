@@ -0,0 +1,288 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.flmelody.support;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Size bounded cache with frequency based admission. Reads never block or lock, they are recorded
+ * in striped lossy buffers which are drained into a count-min sketch by writers, and a new key only
+ * replaces the oldest one when it has been requested more often. Keys that are seen once, such as
+ * random paths of crawlers, hardly ever get in.
+ *
+ * @author esotericman
+ */
+public final class TinyLfuCache<K, V> {
+  // Power of two, enough to keep threads of a busy server apart
+  private static final int READ_BUFFER_STRIPES =
+      Math.max(
+          1,
+          Math.min(
+              Integer.highestOneBit(Runtime.getRuntime().availableProcessors() - 1) << 1, 64));
+  private final int maximumSize;
+  private final ConcurrentHashMap<K, V> data;
+  // Insertion order of keys, the head is the victim of eviction
+  private final Queue<K> order = new ConcurrentLinkedQueue<>();
+  private final FrequencySketch sketch;
+  // Sketch and eviction are guarded by this lock, contended updates are simply dropped
+  private final ReentrantLock lock = new ReentrantLock();
+  // Reads are recorded here without locking, and replayed into sketch by whoever holds the lock
+  private final ReadBuffer[] readBuffers = new ReadBuffer[READ_BUFFER_STRIPES];
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder rejections = new LongAdder();
+
+  public TinyLfuCache(int maximumSize) {
+    if (maximumSize < 0) {
+      throw new IllegalArgumentException("Maximum size of cache must not be negative!");
+    }
+    this.maximumSize = maximumSize;
+    this.data = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 10));
+    this.sketch = new FrequencySketch(maximumSize);
+    for (int i = 0; i < readBuffers.length; i++) {
+      readBuffers[i] = new ReadBuffer();
+    }
+  }
+
+  /**
+   * Return cached value and record the access of key.
+   *
+   * @param key key
+   * @return cached value or null
+   */
+  public V get(K key) {
+    V value = data.get(key);
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    ReadBuffer readBuffer = readBuffers[stripe()];
+    // Lock is only tried once buffer of this thread is full
+    if (!readBuffer.offer(key) && lock.tryLock()) {
+      try {
+        drainReadBuffers();
+      } finally {
+        lock.unlock();
+      }
+    }
+    return value;
+  }
+
+  /**
+   * Offer value to cache, it may be rejected when cache is full and key is not popular enough.
+   *
+   * @param key key
+   * @param value value
+   */
+  public void put(K key, V value) {
+    if (maximumSize == 0 || data.containsKey(key) || !lock.tryLock()) {
+      return;
+    }
+    try {
+      drainReadBuffers();
+      if (data.size() >= maximumSize) {
+        K victim = order.peek();
+        if (victim != null
+            && sketch.frequency(key.hashCode()) <= sketch.frequency(victim.hashCode())) {
+          rejections.increment();
+          return;
+        }
+        order.poll();
+        if (victim != null && data.remove(victim) != null) {
+          evictions.increment();
+        }
+      }
+      data.put(key, value);
+      order.offer(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Discard all cached values. */
+  public void clear() {
+    lock.lock();
+    try {
+      data.clear();
+      order.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int size() {
+    return data.size();
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getRejectionCount() {
+    return rejections.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "TinyLfuCache{size="
+        + size()
+        + ", maximumSize="
+        + maximumSize
+        + ", hits="
+        + getHitCount()
+        + ", misses="
+        + getMissCount()
+        + ", evictions="
+        + getEvictionCount()
+        + ", rejections="
+        + getRejectionCount()
+        + '}';
+  }
+
+  // Threads are spread over stripes by their ids, which is stable for each thread
+  private int stripe() {
+    int h = (int) Thread.currentThread().getId() * 0x9e3779b9;
+    return (h ^ (h >>> 16)) & (readBuffers.length - 1);
+  }
+
+  // Called with lock held
+  private void drainReadBuffers() {
+    for (ReadBuffer readBuffer : readBuffers) {
+      readBuffer.drainTo(sketch);
+    }
+  }
+
+  /**
+   * Lossy ring of keys that have been read. Writers only race for the tail of their own stripe,
+   * and reads are dropped when the ring is full or the race is lost, frequencies are estimates
+   * anyway.
+   */
+  private static final class ReadBuffer {
+    private static final int SIZE = 32;
+    private static final int MASK = SIZE - 1;
+    private final AtomicReferenceArray<Object> keys = new AtomicReferenceArray<>(SIZE);
+    private final AtomicLong writes = new AtomicLong();
+    // Only advanced with lock of cache held
+    private volatile long reads;
+
+    /**
+     * Record read of key.
+     *
+     * @param key key
+     * @return false if buffer is full and should be drained
+     */
+    private boolean offer(Object key) {
+      long tail = writes.get();
+      if (tail - reads >= SIZE) {
+        return false;
+      }
+      if (writes.compareAndSet(tail, tail + 1)) {
+        keys.lazySet((int) (tail & MASK), key);
+      }
+      return true;
+    }
+
+    private void drainTo(FrequencySketch sketch) {
+      long head = reads;
+      long tail = writes.get();
+      for (; head < tail; head++) {
+        int index = (int) (head & MASK);
+        Object key = keys.get(index);
+        if (key == null) {
+          // Slot is taken but not written yet, the next drain picks it up
+          break;
+        }
+        keys.lazySet(index, null);
+        sketch.increment(key.hashCode());
+      }
+      reads = head;
+    }
+  }
+
+  /** Count-min sketch with four rows of 4-bit counters, halved periodically to forget old keys. */
+  private static final class FrequencySketch {
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xa1e38a15, 0x4f1bbcdd, 0x7d3f2b95};
+    private final byte[] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    private FrequencySketch(int maximumSize) {
+      // Small caches still need enough counters to tell popular keys apart
+      int width = Integer.highestOneBit(Math.max(maximumSize, 64) - 1) << 1;
+      this.counters = new byte[width * SEEDS.length];
+      this.mask = width - 1;
+      this.sampleSize = width * 10;
+    }
+
+    private void increment(int hash) {
+      boolean added = false;
+      for (int i = 0; i < SEEDS.length; i++) {
+        int index = indexOf(hash, i);
+        if (counters[index] < MAX_COUNT) {
+          counters[index]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    private int frequency(int hash) {
+      int frequency = MAX_COUNT;
+      for (int i = 0; i < SEEDS.length; i++) {
+        frequency = Math.min(frequency, counters[indexOf(hash, i)]);
+      }
+      return frequency;
+    }
+
+    private int indexOf(int hash, int row) {
+      int h = (hash + SEEDS[row]) * SEEDS[row];
+      h ^= h >>> 16;
+      return row * (mask + 1) + (h & mask);
+    }
+
+    private void reset() {
+      for (int i = 0; i < counters.length; i++) {
+        counters[i] >>= 1;
+      }
+      additions >>= 1;
+    }
+  }
+}
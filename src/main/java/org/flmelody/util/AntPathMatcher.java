@@ -1,5 +1,8 @@
 package org.flmelody.util;
 
+import java.util.Arrays;
+import org.flmelody.support.TinyLfuCache;
+
 /**
  * Path matcher implementation for Ant-style path patterns. This implementation matches URLs using
  * the following rules:
@@ -25,11 +28,15 @@ public class AntPathMatcher {
   private static final char QUESTION = '?';
   private static final char BLANK = ' ';
   private static final int ASCII_CASE_DIFFERENCE_VALUE = 32;
+  // Patterns passed to isMatch(String, String), compiled once while they stay popular
+  private static final int COMPILED_CACHE_SIZE = 256;
 
   private final char pathSeparator;
   private final boolean ignoreCase;
   private final boolean matchStart;
   private final boolean trimTokens;
+  private final TinyLfuCache<String, CompiledPattern> compiledPatterns =
+      new TinyLfuCache<>(COMPILED_CACHE_SIZE);
 
   private AntPathMatcher(
       final char pathSeparator, boolean ignoreCase, boolean matchStart, boolean trimTokens) {
@@ -39,77 +46,293 @@ public class AntPathMatcher {
     this.trimTokens = trimTokens;
   }
 
+  /**
+   * Match path against pattern, compiled patterns are cached by this matcher.
+   *
+   * @param pattern Ant-style pattern
+   * @param path path
+   * @return true if path matches
+   */
   public boolean isMatch(final String pattern, final String path) {
-    if (pattern.isEmpty()) {
-      return path.isEmpty();
-    } else if (path.isEmpty() && pattern.charAt(0) == pathSeparator) {
-      if (matchStart) {
-        return true;
-      } else if (pattern.length() == 2 && pattern.charAt(1) == ASTERISK) {
-        return false;
+    CompiledPattern compiledPattern = compiledPatterns.get(pattern);
+    if (compiledPattern == null) {
+      compiledPattern = compile(pattern);
+      compiledPatterns.put(pattern, compiledPattern);
+    }
+    return compiledPattern.isMatch(path);
+  }
+
+  /**
+   * Compile pattern with options of this matcher, the result can be reused for any path.
+   *
+   * @param pattern Ant-style pattern
+   * @return compiled pattern
+   */
+  public CompiledPattern compile(final String pattern) {
+    return new CompiledPattern(pattern);
+  }
+
+  public static AntPathMatcher.Builder newBuild() {
+    return new AntPathMatcher.Builder();
+  }
+
+  private boolean compareChar(final char pathChar, final char patternChar) {
+    if (ignoreCase) {
+      return pathChar == patternChar
+          || ((pathChar > patternChar)
+              ? pathChar == patternChar + ASCII_CASE_DIFFERENCE_VALUE
+              : pathChar == patternChar - ASCII_CASE_DIFFERENCE_VALUE);
+    }
+    return pathChar == patternChar;
+  }
+
+  /**
+   * Immutable pattern compiled into a small NFA. A path is matched in one pass over its characters
+   * while a bit set keeps all states that are still alive, so there is neither recursion nor
+   * backtracking, and nothing is allocated unless pattern has more than 64 states.
+   *
+   * <p>Every position of pattern is a state. A '*' that is not the last character has an extra
+   * state that loops over any character and then moves on, while a trailing '*' only loops over
+   * characters other than the separator. '**' followed by one more character may also skip that
+   * character when it is entered. A literal has an extra state that skips blanks if tokens are
+   * trimmed. When the path is exhausted a separator of pattern is optional, unless it's followed by
+   * a trailing '*'. All transitions without input go forward, so one pass computes the closure.
+   */
+  public final class CompiledPattern {
+    private static final byte END = 0;
+    private static final byte LITERAL = 1;
+    private static final byte BLANKS = 2;
+    private static final byte STAR = 3;
+    private static final byte STAR_LOOP = 4;
+    private static final byte TRAILING_STAR = 5;
+    private final String pattern;
+    private final byte[] kinds;
+    private final char[] chars;
+    // State after a literal matched
+    private final int[] nexts;
+    // State after a blank is skipped
+    private final int[] blanks;
+    // States reached without input, or -1
+    private final int[] epsilons;
+    private final int[] skips;
+    // State reached without input only when path is exhausted, or -1
+    private final int[] exhausted;
+    private final int words;
+
+    private CompiledPattern(final String pattern) {
+      this.pattern = pattern;
+      final int length = pattern.length();
+      // Index of first state of every position
+      final int[] entries = new int[length + 1];
+      int count = 0;
+      for (int i = 0; i < length; i++) {
+        entries[i] = count;
+        final char c = pattern.charAt(i);
+        count += (c == ASTERISK && i < length - 1) || (c != ASTERISK && trimTokens) ? 2 : 1;
+      }
+      entries[length] = count++;
+      this.kinds = new byte[count];
+      this.chars = new char[count];
+      this.nexts = new int[count];
+      this.blanks = new int[count];
+      this.epsilons = new int[count];
+      this.skips = new int[count];
+      this.exhausted = new int[count];
+      Arrays.fill(nexts, -1);
+      Arrays.fill(blanks, -1);
+      Arrays.fill(epsilons, -1);
+      Arrays.fill(skips, -1);
+      Arrays.fill(exhausted, -1);
+      for (int i = 0; i < length; i++) {
+        final int state = entries[i];
+        final char c = pattern.charAt(i);
+        chars[state] = c;
+        if (c == ASTERISK && i == length - 1) {
+          kinds[state] = TRAILING_STAR;
+        } else if (c == ASTERISK) {
+          kinds[state] = STAR;
+          kinds[state + 1] = STAR_LOOP;
+          epsilons[state] = state + 1;
+          epsilons[state + 1] = entries[i + 1];
+          if (pattern.charAt(i + 1) == ASTERISK && length - i > 2) {
+            skips[state] = entries[i + 3];
+          }
+        } else {
+          kinds[state] = LITERAL;
+          nexts[state] = entries[i + 1];
+          if (trimTokens) {
+            kinds[state + 1] = BLANKS;
+            chars[state + 1] = c;
+            nexts[state + 1] = entries[i + 1];
+            blanks[state] = state + 1;
+            blanks[state + 1] = state + 1;
+          }
+          // A separator followed by a trailing '*' is not optional
+          if (c == pathSeparator
+              && !matchStart
+              && !(length - i == 2 && pattern.charAt(i + 1) == ASTERISK)) {
+            exhausted[state] = entries[i + 1];
+          }
+        }
       }
-      return isMatch(pattern.substring(1), path);
+      kinds[count - 1] = END;
+      this.words = (count + 63) >>> 6;
+    }
+
+    public String getPattern() {
+      return pattern;
     }
 
-    final char patternStart = pattern.charAt(0);
-    if (patternStart == ASTERISK) {
+    public boolean isMatch(final CharSequence path) {
+      return isMatch(path, 0, path.length());
+    }
 
-      if (pattern.length() == 1) {
-        return path.isEmpty()
-            || path.charAt(0) != pathSeparator && isMatch(pattern, path.substring(1));
-      } else if (doubleAsteriskMatch(pattern, path)) {
-        return true;
+    /**
+     * Match region of path, so that callers don't have to cut it out.
+     *
+     * @param path path
+     * @param from start index, inclusive
+     * @param to end index, exclusive
+     * @return true if region matches this pattern
+     */
+    public boolean isMatch(final CharSequence path, final int from, final int to) {
+      if (words == 1) {
+        return matchWord(path, from, to);
       }
+      return matchWords(path, from, to);
+    }
 
-      int start = 0;
-      while (start < path.length()) {
-        if (isMatch(pattern.substring(1), path.substring(start))) {
+    private boolean matchWord(final CharSequence path, final int from, final int to) {
+      long alive = closure(1L, from == to);
+      for (int i = from; i < to; i++) {
+        final char c = path.charAt(i);
+        long next = 0L;
+        for (long states = alive; states != 0L; states &= states - 1) {
+          final int target = step(Long.numberOfTrailingZeros(states), c);
+          if (target >= 0) {
+            next |= 1L << target;
+          }
+        }
+        if (next == 0L) {
+          return false;
+        }
+        alive = closure(next, i == to - 1);
+      }
+      for (long states = alive; states != 0L; states &= states - 1) {
+        if (accepts(Long.numberOfTrailingZeros(states))) {
           return true;
         }
-        start++;
       }
-      return isMatch(pattern.substring(1), path.substring(start));
+      return false;
     }
 
-    int pointer = skipBlanks(path);
+    private boolean matchWords(final CharSequence path, final int from, final int to) {
+      long[] alive = new long[words];
+      long[] next = new long[words];
+      alive[0] = 1L;
+      closure(alive, from == to);
+      for (int i = from; i < to; i++) {
+        final char c = path.charAt(i);
+        boolean any = false;
+        for (int w = 0; w < words; w++) {
+          for (long states = alive[w]; states != 0L; states &= states - 1) {
+            final int target = step((w << 6) + Long.numberOfTrailingZeros(states), c);
+            if (target >= 0) {
+              next[target >>> 6] |= 1L << target;
+              any = true;
+            }
+          }
+        }
+        if (!any) {
+          return false;
+        }
+        final long[] swap = alive;
+        alive = next;
+        next = swap;
+        Arrays.fill(next, 0L);
+        closure(alive, i == to - 1);
+      }
+      for (int w = 0; w < words; w++) {
+        for (long states = alive[w]; states != 0L; states &= states - 1) {
+          if (accepts((w << 6) + Long.numberOfTrailingZeros(states))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
 
-    return !path.isEmpty()
-        && (compareChar(path.charAt(pointer), patternStart) || patternStart == QUESTION)
-        && isMatch(pattern.substring(1), path.substring(pointer + 1));
-  }
+    // Consume one character at state, return the next state or -1
+    private int step(final int state, final char c) {
+      switch (kinds[state]) {
+        case STAR_LOOP:
+          return state;
+        case TRAILING_STAR:
+          return c != pathSeparator ? state : -1;
+        case LITERAL:
+        case BLANKS:
+          if (trimTokens && c == BLANK) {
+            return blanks[state];
+          }
+          final char p = chars[state];
+          return p == QUESTION || compareChar(c, p) ? nexts[state] : -1;
+        default:
+          return -1;
+      }
+    }
 
-  private boolean doubleAsteriskMatch(final String pattern, final String path) {
-    if (pattern.charAt(1) != ASTERISK) {
-      return false;
-    } else if (pattern.length() > 2) {
-      return isMatch(pattern.substring(3), path);
+    // Whether state matches when path is exhausted
+    private boolean accepts(final int state) {
+      final byte kind = kinds[state];
+      return kind == END
+          || kind == TRAILING_STAR
+          || (kind == LITERAL && matchStart && chars[state] == pathSeparator);
     }
 
-    return false;
-  }
+    private long closure(long states, final boolean end) {
+      long pending = states;
+      while (pending != 0L) {
+        final int state = Long.numberOfTrailingZeros(pending);
+        pending &= pending - 1;
+        long added = bit(epsilons[state]) | bit(skips[state]);
+        if (end) {
+          added |= bit(exhausted[state]);
+        }
+        added &= ~states;
+        states |= added;
+        pending |= added;
+      }
+      return states;
+    }
 
-  public static AntPathMatcher.Builder newBuild() {
-    return new AntPathMatcher.Builder();
-  }
+    private void closure(final long[] states, final boolean end) {
+      // Targets are always greater, so one pass in ascending order is enough
+      for (int state = 0; state < kinds.length; state++) {
+        if ((states[state >>> 6] & (1L << state)) == 0L) {
+          continue;
+        }
+        set(states, epsilons[state]);
+        set(states, skips[state]);
+        if (end) {
+          set(states, exhausted[state]);
+        }
+      }
+    }
+
+    private long bit(final int state) {
+      return state < 0 ? 0L : 1L << state;
+    }
 
-  private int skipBlanks(final String path) {
-    int pointer = 0;
-    if (trimTokens) {
-      while (!path.isEmpty() && pointer < path.length() && path.charAt(pointer) == BLANK) {
-        pointer++;
+    private void set(final long[] states, final int state) {
+      if (state >= 0) {
+        states[state >>> 6] |= 1L << state;
       }
     }
-    return pointer;
-  }
 
-  private boolean compareChar(final char pathChar, final char patternChar) {
-    if (ignoreCase) {
-      return pathChar == patternChar
-          || ((pathChar > patternChar)
-              ? pathChar == patternChar + ASCII_CASE_DIFFERENCE_VALUE
-              : pathChar == patternChar - ASCII_CASE_DIFFERENCE_VALUE);
+    @Override
+    public String toString() {
+      return pattern;
     }
-    return pathChar == patternChar;
   }
 
   /** Builder for AntPathMatcher */
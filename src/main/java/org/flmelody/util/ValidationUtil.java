@@ -20,6 +20,7 @@ import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validation;
 import jakarta.validation.Validator;
 import jakarta.validation.ValidatorFactory;
+import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.util.Objects;
 import java.util.Optional;
@@ -67,6 +68,38 @@ public final class ValidationUtil {
     return validate(jsonPlugin.toObject(content, type), groups);
   }
 
+  /**
+   * Try to convert json stream to target object
+   *
+   * @param jsonPlugin jsonPlugin
+   * @param content json stream
+   * @param targetClass target class that convert to
+   * @param groups validator group
+   * @param <T> return type
+   * @return object that convert from json content
+   */
+  public static <T> T validate(
+      JsonPlugin jsonPlugin, InputStream content, Class<T> targetClass, Class<?>... groups)
+      throws ValidationException {
+    return validate(jsonPlugin.toObject(content, targetClass), groups);
+  }
+
+  /**
+   * Try to convert json stream to target object
+   *
+   * @param jsonPlugin jsonPlugin
+   * @param content json stream
+   * @param type type of target class
+   * @param groups validator group
+   * @param <T> return type
+   * @return object that convert from json content
+   */
+  public static <T> T validate(
+      JsonPlugin jsonPlugin, InputStream content, Type type, Class<?>... groups)
+      throws ValidationException {
+    return validate(jsonPlugin.<T>toObject(content, type), groups);
+  }
+
   private static <T> T validate(T target, Class<?>... groups) {
     Validator validator = validatorFactory.getValidator();
     Set<ConstraintViolation<T>> validate;
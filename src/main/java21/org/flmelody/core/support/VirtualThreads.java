@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2023 Flmelody.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.flmelody.core.support;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads of Java 21, every task runs on its own virtual thread.
+ *
+ * @author esotericman
+ */
+public final class VirtualThreads {
+  private static final ExecutorService EXECUTOR =
+      Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("windward-virtual-", 0).factory());
+
+  private VirtualThreads() {}
+
+  /**
+   * Whether virtual threads are available on current runtime.
+   *
+   * @return true
+   */
+  public static boolean isAvailable() {
+    return true;
+  }
+
+  /**
+   * Executor that starts a new virtual thread for each task.
+   *
+   * @return executor
+   */
+  public static Executor executor() {
+    return EXECUTOR;
+  }
+}
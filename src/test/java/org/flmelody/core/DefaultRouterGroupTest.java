@@ -1,8 +1,11 @@
 package org.flmelody.core;
 
+import java.util.function.Supplier;
 import org.junit.Test;
 
 import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
 
 /**
  * @author esotericman
@@ -12,21 +15,87 @@ public class DefaultRouterGroupTest {
   @Test
   public void getTest() {
     DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/");
-    FunctionMetaInfo<?> functionMetaInfo =
+    RouterMatch<?> routerMatch =
         defaultRouterGroup
             .get("/dev/v1/{name}", () -> "hello world")
             .matchRouter("/dev/v1/esotericman", HttpMethod.GET.name());
-    assertEquals(functionMetaInfo.getPathVariables().get("name"), "esotericman");
+    assertEquals(routerMatch.getPathVariables().get("name"), "esotericman");
   }
 
   @Test
   public void postTest() {
     DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/");
-    FunctionMetaInfo<?> functionMetaInfo =
+    RouterMatch<?> routerMatch =
         defaultRouterGroup
             .post("/dev/{version}/{name}/post", () -> "hello world")
             .matchRouter("/dev/v1/esotericman/post", HttpMethod.POST.name());
-    assertEquals(functionMetaInfo.getPathVariables().get("version"), "v1");
-    assertEquals(functionMetaInfo.getPathVariables().get("name"), "esotericman");
+    assertEquals(routerMatch.getPathVariables().get("version"), "v1");
+    assertEquals(routerMatch.getPathVariables().get("name"), "esotericman");
+  }
+
+  @Test
+  public void staticFirstTest() {
+    DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/");
+    defaultRouterGroup.get("/user/{id}", () -> "id").get("/user/new", () -> "new");
+    RouterMatch<?> routerMatch =
+        defaultRouterGroup.matchRouter("/user/new/", HttpMethod.GET.name());
+    assertEquals("/user/new", routerMatch.getFunctionMetaInfo().getPath());
+    routerMatch = defaultRouterGroup.matchRouter("/user/1", HttpMethod.GET.name());
+    assertEquals("/user/{id}", routerMatch.getFunctionMetaInfo().getPath());
+    assertNull(defaultRouterGroup.matchRouter("/user/1/2", HttpMethod.GET.name()));
+    assertNull(defaultRouterGroup.matchRouter("/user/1", HttpMethod.POST.name()));
+  }
+
+  @Test
+  public void segmentVariablesTest() {
+    DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/api");
+    RouterMatch<?> routerMatch =
+        defaultRouterGroup
+            .get("/file/{name}.{extension}", () -> "file")
+            .matchRouter("/api/file/windward.tar.gz", HttpMethod.GET.name());
+    assertEquals("windward.tar", routerMatch.getPathVariables().get("name"));
+    assertEquals("gz", routerMatch.getPathVariables().get("extension"));
+    assertNull(defaultRouterGroup.matchRouter("/file/windward.gz", HttpMethod.GET.name()));
+  }
+
+  @Test
+  public void resourcesTest() {
+    DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/", true);
+    defaultRouterGroup.resources("/static", "/static/**", "/**.js");
+    assertNotNull(defaultRouterGroup.matchRouter("/static/css/a.css", HttpMethod.GET.name()));
+    assertNotNull(defaultRouterGroup.matchRouter("/lib/a.js", HttpMethod.GET.name()));
+    assertNull(defaultRouterGroup.matchRouter("/lib/a.css", HttpMethod.GET.name()));
+    assertNull(defaultRouterGroup.matchRouter("/static/a.css", HttpMethod.POST.name()));
+  }
+
+  @Test
+  public void mergeTest() {
+    DefaultRouterGroup first = new DefaultRouterGroup(null, "/");
+    first.get("/user/{id}", () -> "first").get("/files/*", () -> "files");
+    DefaultRouterGroup second = new DefaultRouterGroup(null, "/");
+    second.get("/user/{name}", () -> "second").get("/user/new", () -> "new");
+    RouterTree routerTree = new RouterTree();
+    routerTree.merge(first.routerTree(), first.resourceRouter);
+    routerTree.merge(second.routerTree(), second.resourceRouter);
+    routerTree.freeze();
+    int[] captures = routerTree.newCaptures();
+    RouterTree.Route route = routerTree.match("/user/1", HttpMethod.GET.name(), true, captures);
+    assertEquals("first", ((Supplier<?>) route.getFunctionMetaInfo().getFunction()).get());
+    route = routerTree.match("/user/new", HttpMethod.GET.name(), true, captures);
+    assertEquals("/user/new", route.getPath());
+    // Patterns of normal groups are not Ant-style patterns
+    assertNull(routerTree.match("/files/a", HttpMethod.GET.name(), true, captures));
+    assertNotNull(routerTree.match("/files/*", HttpMethod.GET.name(), true, captures));
+  }
+
+  @Test
+  public void concurrentMatchTest() {
+    DefaultRouterGroup defaultRouterGroup = new DefaultRouterGroup(null, "/");
+    defaultRouterGroup.get("/user/{id}", () -> "user");
+    RouterMatch<?> first = defaultRouterGroup.matchRouter("/user/1", HttpMethod.GET.name());
+    RouterMatch<?> second = defaultRouterGroup.matchRouter("/user/2", HttpMethod.GET.name());
+    assertEquals("1", first.getPathVariables().get("id"));
+    assertEquals("2", second.getPathVariables().get("id"));
+    assertEquals(first.getFunctionMetaInfo(), second.getFunctionMetaInfo());
   }
 }
@@ -0,0 +1,60 @@
+package org.flmelody.core;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class RequestUriTest {
+
+  @Test
+  public void parseTest() {
+    String uri = "/user/1/";
+    RequestUri requestUri = RequestUri.parse(uri);
+    assertSame(uri, requestUri.getPath());
+    assertSame(uri, requestUri.routePath());
+    assertEquals(7, requestUri.routeEnd());
+    assertFalse(requestUri.hasQuery());
+
+    requestUri = RequestUri.parse("/user/1?name=windward#top");
+    assertEquals("/user/1", requestUri.getPath());
+    assertEquals(7, requestUri.routeEnd());
+    assertTrue(requestUri.hasQuery());
+
+    requestUri = RequestUri.parse("/?a=1");
+    assertEquals(1, requestUri.routeEnd());
+
+    requestUri = RequestUri.parse("/user/{1}");
+    assertEquals("/user/1", requestUri.routePath().substring(0, requestUri.routeEnd()));
+  }
+
+  @Test
+  public void absoluteFormTest() {
+    RequestUri requestUri = RequestUri.parse("http://localhost:8080/user/1?name=windward");
+    assertEquals("/user/1", requestUri.getPath());
+    assertEquals("/user/1?name=windward", requestUri.getUri());
+    assertTrue(requestUri.hasQuery());
+
+    assertEquals("/", RequestUri.parse("https://localhost").getPath());
+    requestUri = RequestUri.parse("http://localhost?a=1");
+    assertEquals("/", requestUri.getPath());
+    assertTrue(requestUri.hasQuery());
+  }
+
+  @Test
+  public void illegalTest() {
+    assertNull(RequestUri.parse(""));
+    assertNull(RequestUri.parse("*"));
+    assertNull(RequestUri.parse("localhost/user"));
+    assertNull(RequestUri.parse("http:///user"));
+    assertNull(RequestUri.parse("http://local host/user"));
+    assertNull(RequestUri.parse("/user\r\n/1"));
+    assertNull(RequestUri.parse("/user?name=\u0000"));
+  }
+}
@@ -0,0 +1,84 @@
+package org.flmelody.core.netty;
+
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.multipart.DefaultHttpDataFactory;
+import io.netty.util.CharsetUtil;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import org.flmelody.core.FormFile;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class NettyFormDataTest {
+  private static final String MULTIPART =
+      "--xyz\r\n"
+          + "Content-Disposition: form-data; name=\"name\"\r\n\r\n"
+          + "windward\r\n"
+          + "--xyz\r\n"
+          + "Content-Disposition: form-data; name=\"small\"; filename=\"a.txt\"\r\n"
+          + "Content-Type: text/plain\r\n\r\n"
+          + "tiny\r\n"
+          + "--xyz\r\n"
+          + "Content-Disposition: form-data; name=\"large\"; filename=\"b.txt\"\r\n"
+          + "Content-Type: text/plain\r\n\r\n"
+          + "a file larger than threshold\r\n"
+          + "--xyz--\r\n";
+
+  @Test
+  public void urlencodedTest() {
+    FullHttpRequest request =
+        new DefaultFullHttpRequest(
+            HttpVersion.HTTP_1_1,
+            HttpMethod.POST,
+            "/",
+            Unpooled.copiedBuffer("a=1&b=%20x&a=2", CharsetUtil.UTF_8));
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/x-www-form-urlencoded");
+    assertTrue(NettyFormData.isForm(request));
+    NettyFormData formData = NettyFormData.decode(new DefaultHttpDataFactory(16), request);
+    assertEquals("1", formData.getAttribute("a"));
+    assertEquals(2, formData.getAttributes("a").size());
+    assertEquals(" x", formData.getAttribute("b"));
+    formData.release();
+    request.release();
+  }
+
+  @Test
+  public void spillTest() throws IOException {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/");
+    request.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/form-data; boundary=xyz");
+    assertTrue(NettyFormData.isForm(request));
+    DefaultHttpDataFactory factory = new DefaultHttpDataFactory(16);
+    factory.setDeleteOnExit(false);
+    InputStream body = new ByteArrayInputStream(MULTIPART.getBytes(CharsetUtil.UTF_8));
+    NettyFormData formData = NettyFormData.decode(factory, request, body);
+    assertEquals("windward", formData.getAttribute("name"));
+    FormFile small = formData.getFile("small");
+    assertEquals("a.txt", small.getFilename());
+    assertTrue(small.isInMemory());
+    try (FileChannel fileChannel = small.getFileChannel()) {
+      assertEquals(4, fileChannel.size());
+    }
+    FormFile large = formData.getFile("large");
+    assertFalse(large.isInMemory());
+    assertEquals(28, large.length());
+    try (FileChannel fileChannel = large.getFileChannel()) {
+      assertEquals(28, fileChannel.size());
+    }
+    formData.release();
+  }
+}
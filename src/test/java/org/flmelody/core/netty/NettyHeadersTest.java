@@ -0,0 +1,41 @@
+package org.flmelody.core.netty;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.HttpHeaders;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.flmelody.core.WindwardRequest;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class NettyHeadersTest {
+
+  @Test
+  public void viewTest() {
+    HttpHeaders httpHeaders = new DefaultHttpHeaders();
+    httpHeaders.add("Content-Type", "application/json");
+    httpHeaders.add("Accept", "text/html");
+    httpHeaders.add("accept", "application/json");
+    Map<String, List<String>> headers = new NettyHeaders(httpHeaders);
+    assertEquals(Collections.singletonList("application/json"), headers.get("content-type"));
+    assertEquals(Arrays.asList("text/html", "application/json"), headers.get("ACCEPT"));
+    assertTrue(headers.containsKey("Accept"));
+    assertNull(headers.get("Origin"));
+    assertFalse(headers.containsKey("Origin"));
+    // Same names are grouped when iterated
+    assertEquals(2, headers.size());
+
+    WindwardRequest windwardRequest = WindwardRequest.newBuild().headersView(headers).build();
+    assertEquals("text/html", windwardRequest.getHeader("accept").get(0));
+    assertTrue(windwardRequest.getHeader("Origin").isEmpty());
+  }
+}
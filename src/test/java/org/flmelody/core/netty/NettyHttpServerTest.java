@@ -0,0 +1,265 @@
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.DefaultChannelId;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.http2.DefaultHttp2FrameReader;
+import io.netty.handler.codec.http2.DefaultHttp2FrameWriter;
+import io.netty.handler.codec.http2.DefaultHttp2Headers;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2FrameAdapter;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameWriter;
+import io.netty.handler.codec.http2.Http2Headers;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.flmelody.core.Windward;
+import org.flmelody.core.netty.handler.HttpBodyAggregator;
+import org.flmelody.core.netty.handler.HttpEventHandler;
+import org.flmelody.core.netty.handler.HttpServerHandler;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class NettyHttpServerTest {
+  private static final String PATH = "/netty/protocol";
+  private static final String UPGRADE_SETTINGS = "AAMAAABkAARAAAAAAAIAAAAA";
+
+  @Test
+  public void http1FallbackTest() {
+    EmbeddedChannel channel = newChannel(ServerOptions.newBuilder().http2(true).build());
+    channel.writeInbound(ascii("GET " + PATH + " HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+    String response = readAscii(channel);
+    assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+    assertTrue(response.endsWith("pong"));
+    assertNotNull(channel.pipeline().get(HttpServerHandler.class));
+    assertNull(channel.pipeline().get(Http2FrameCodec.class));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void h2cUpgradeTest() throws Http2Exception {
+    EmbeddedChannel channel = newChannel(ServerOptions.newBuilder().http2(true).build());
+    channel.writeInbound(
+        ascii(
+            "GET "
+                + PATH
+                + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Connection: Upgrade, HTTP2-Settings\r\n"
+                + "Upgrade: h2c\r\n"
+                + "HTTP2-Settings: "
+                + UPGRADE_SETTINGS
+                + "\r\n\r\n"));
+    channel.runPendingTasks();
+    ByteBuf out = readOutbound(channel);
+    String switching = "HTTP/1.1 101 Switching Protocols";
+    assertEquals(switching, out.toString(0, switching.length(), CharsetUtil.US_ASCII));
+    // Frames of HTTP/2 follow head of 101 response
+    ByteBuf headEnd = ascii("\r\n\r\n");
+    out.readerIndex(ByteBufUtil.indexOf(headEnd, out) + headEnd.readableBytes());
+    headEnd.release();
+    // Upgrade request is answered on stream 1
+    DefaultHttp2FrameReader reader = new DefaultHttp2FrameReader();
+    assertEquals("200 pong", readResponses(reader, out).get(1));
+    assertHttp2Pipeline(channel);
+    // Further streams go through pipelines of their own
+    channel.writeInbound(clientFrames(3));
+    channel.runPendingTasks();
+    assertEquals("200 pong", readResponses(reader, readOutbound(channel)).get(3));
+    reader.close();
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void priorKnowledgeTest() throws Http2Exception {
+    EmbeddedChannel channel = newChannel(ServerOptions.newBuilder().http2(true).build());
+    channel.writeInbound(clientFrames(1));
+    channel.runPendingTasks();
+    DefaultHttp2FrameReader reader = new DefaultHttp2FrameReader();
+    assertEquals("200 pong", readResponses(reader, readOutbound(channel)).get(1));
+    reader.close();
+    assertHttp2Pipeline(channel);
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void keepAliveTest() {
+    EmbeddedChannel channel = newChannel(ServerOptions.newBuilder().build());
+    for (int i = 0; i < 2; i++) {
+      channel.writeInbound(ascii("GET " + PATH + " HTTP/1.1\r\nHost: localhost\r\n\r\n"));
+      String response = readAscii(channel);
+      assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+      assertTrue(response.contains("connection: keep-alive"));
+      assertTrue(channel.isOpen());
+    }
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void connectionCloseTest() {
+    EmbeddedChannel channel = newChannel(ServerOptions.newBuilder().build());
+    channel.writeInbound(
+        ascii("GET " + PATH + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"));
+    channel.runPendingTasks();
+    String response = readAscii(channel);
+    assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+    assertFalse(response.contains("connection: keep-alive"));
+    assertFalse(channel.isOpen());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void flushConsolidationTest() {
+    // Responses of requests pipelined in one read are flushed together
+    assertEquals(1, flushesOfPipelinedRequests(ServerOptions.newBuilder().build()));
+    assertEquals(
+        3, flushesOfPipelinedRequests(ServerOptions.newBuilder().flushConsolidation(0).build()));
+  }
+
+  private static int flushesOfPipelinedRequests(ServerOptions serverOptions) {
+    EmbeddedChannel channel = newChannel(serverOptions);
+    AtomicInteger flushes = new AtomicInteger();
+    channel
+        .pipeline()
+        .addFirst(
+            new ChannelOutboundHandlerAdapter() {
+              @Override
+              public void flush(ChannelHandlerContext ctx) {
+                flushes.incrementAndGet();
+                ctx.flush();
+              }
+            });
+    String request = "GET " + PATH + " HTTP/1.1\r\nHost: localhost\r\n\r\n";
+    channel.writeInbound(ascii(request + request + request));
+    String responses = readAscii(channel);
+    assertEquals(3, responses.split("HTTP/1.1 200 OK", -1).length - 1);
+    channel.finishAndReleaseAll();
+    return flushes.get();
+  }
+
+  static EmbeddedChannel newChannel(ServerOptions serverOptions) {
+    Windward.setup(ServerOptions.newBuilder().build())
+        .get(
+            PATH,
+            windwardContext -> {
+              windwardContext.writeString("pong");
+            });
+    // Child of a server channel, as HTTP/2 tells server from client by it
+    return new EmbeddedChannel(
+        new LocalServerChannel(),
+        DefaultChannelId.newInstance(),
+        true,
+        false,
+        new NettyHttpServer.ServerChannelInitializer(serverOptions, new ConnectionStats()));
+  }
+
+  // Handlers of HTTP/1.1 are gone from connection, streams have them instead
+  private static void assertHttp2Pipeline(EmbeddedChannel channel) {
+    assertNotNull(channel.pipeline().get(Http2FrameCodec.class));
+    assertNotNull(channel.pipeline().get(Http2MultiplexHandler.class));
+    assertNull(channel.pipeline().get(HttpBodyAggregator.class));
+    assertNull(channel.pipeline().get(ChunkedWriteHandler.class));
+    assertNull(channel.pipeline().get(HttpServerHandler.class));
+    assertNull(channel.pipeline().get(HttpEventHandler.class));
+  }
+
+  static ByteBuf ascii(String data) {
+    return Unpooled.copiedBuffer(data, CharsetUtil.US_ASCII);
+  }
+
+  static ByteBuf readOutbound(EmbeddedChannel channel) {
+    CompositeByteBuf out = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+    ByteBuf msg;
+    while ((msg = channel.readOutbound()) != null) {
+      out.addComponent(true, msg);
+    }
+    return out;
+  }
+
+  static String readAscii(EmbeddedChannel channel) {
+    ByteBuf out = readOutbound(channel);
+    try {
+      return out.toString(CharsetUtil.US_ASCII);
+    } finally {
+      out.release();
+    }
+  }
+
+  // Preface, settings and a request on given stream, as a client of prior knowledge sends them
+  private static ByteBuf clientFrames(int streamId) {
+    EmbeddedChannel writerChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    ChannelHandlerContext ctx = writerChannel.pipeline().firstContext();
+    Http2FrameWriter writer = new DefaultHttp2FrameWriter();
+    ctx.write(Http2CodecUtil.connectionPrefaceBuf());
+    writer.writeSettings(ctx, new Http2Settings(), ctx.newPromise());
+    Http2Headers headers =
+        new DefaultHttp2Headers().method("GET").scheme("http").authority("localhost").path(PATH);
+    writer.writeHeaders(ctx, streamId, headers, 0, true, ctx.newPromise());
+    ctx.flush();
+    ByteBuf frames = readOutbound(writerChannel);
+    writerChannel.finishAndReleaseAll();
+    return frames;
+  }
+
+  // Status and body of every stream, reader of connection decodes frames as client does
+  private static Map<Integer, String> readResponses(DefaultHttp2FrameReader reader, ByteBuf frames)
+      throws Http2Exception {
+    EmbeddedChannel readerChannel = new EmbeddedChannel(new ChannelInboundHandlerAdapter());
+    Map<Integer, String> responses = new HashMap<>();
+    Http2FrameAdapter listener =
+        new Http2FrameAdapter() {
+          @Override
+          public void onHeadersRead(
+              ChannelHandlerContext ctx,
+              int streamId,
+              Http2Headers headers,
+              int padding,
+              boolean endOfStream) {
+            responses.put(streamId, String.valueOf(headers.status()));
+          }
+
+          @Override
+          public int onDataRead(
+              ChannelHandlerContext ctx,
+              int streamId,
+              ByteBuf data,
+              int padding,
+              boolean endOfStream) {
+            if (data.isReadable()) {
+              responses.merge(streamId, " " + data.toString(CharsetUtil.UTF_8), String::concat);
+            }
+            return data.readableBytes() + padding;
+          }
+        };
+    try {
+      while (frames.isReadable()) {
+        reader.readFrame(readerChannel.pipeline().firstContext(), frames, listener);
+      }
+    } finally {
+      frames.release();
+      readerChannel.finishAndReleaseAll();
+    }
+    return responses;
+  }
+}
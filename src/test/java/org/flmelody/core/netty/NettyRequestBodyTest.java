@@ -0,0 +1,65 @@
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class NettyRequestBodyTest {
+
+  @Test
+  public void readTest() throws IOException {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    NettyRequestBody body = new NettyRequestBody(channel, 1024, () -> {});
+    ByteBuf first = Unpooled.copiedBuffer("hello ", CharsetUtil.UTF_8);
+    ByteBuf second = Unpooled.copiedBuffer("windward", CharsetUtil.UTF_8);
+    body.offer(first);
+    body.offer(second);
+    body.complete();
+    first.release();
+    second.release();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    byte[] bytes = new byte[4];
+    int read;
+    while ((read = body.read(bytes)) > 0) {
+      outputStream.write(bytes, 0, read);
+    }
+    assertEquals("hello windward", outputStream.toString("UTF-8"));
+    assertEquals(0, first.refCnt());
+    assertEquals(0, second.refCnt());
+  }
+
+  @Test
+  public void backpressureTest() throws IOException {
+    EmbeddedChannel channel = new EmbeddedChannel();
+    AtomicInteger drained = new AtomicInteger();
+    NettyRequestBody body = new NettyRequestBody(channel, 8, drained::incrementAndGet);
+    ByteBuf content = Unpooled.wrappedBuffer(new byte[16]);
+    body.offer(content);
+    content.release();
+    assertTrue(body.isPaused());
+    // Body never touches reading of channel, it only tells its owner
+    assertTrue(channel.config().isAutoRead());
+    assertEquals(2, body.read(new byte[2]));
+    assertTrue(body.isPaused());
+    assertEquals(10, body.read(new byte[10]));
+    assertFalse(body.isPaused());
+    channel.runPendingTasks();
+    assertEquals(1, drained.get());
+    body.close();
+    channel.runPendingTasks();
+    assertEquals(1, drained.get());
+    assertEquals(0, content.refCnt());
+  }
+}
@@ -0,0 +1,66 @@
+package org.flmelody.core.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.flmelody.core.plugin.json.JacksonPlugin;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.fail;
+
+/**
+ * @author esotericman
+ */
+public class NettyRequestContentTest {
+
+  @Test
+  public void contentTest() {
+    ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+    buffer.writeCharSequence("{\"name\":\"windward\"}", StandardCharsets.UTF_8);
+    NettyRequestContent content = new NettyRequestContent(buffer);
+    // Request itself is released by netty, content keeps its own reference
+    buffer.release();
+    assertEquals(19, content.length());
+    assertEquals(19, content.asByteBuffer().remaining());
+    Map<?, ?> map = new JacksonPlugin().toObject(content.asInputStream(), Map.class);
+    assertEquals("windward", map.get("name"));
+    // Stream is a view, content can be read again
+    assertEquals("{\"name\":\"windward\"}", content.toString(StandardCharsets.UTF_8));
+    content.release();
+    assertEquals(0, buffer.refCnt());
+    try {
+      content.length();
+      fail();
+    } catch (IllegalStateException ignored) {
+      // released
+    }
+  }
+
+  @Test
+  public void detachTest() {
+    ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+    buffer.writeCharSequence("delayed", StandardCharsets.UTF_8);
+    NettyRequestContent content = new NettyRequestContent(buffer);
+    buffer.release();
+    content.detach();
+    assertEquals(0, buffer.refCnt());
+    assertEquals("delayed", new String(content.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void byteBufferTest() {
+    ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer();
+    buffer.writeCharSequence("kept", StandardCharsets.UTF_8);
+    NettyRequestContent content = new NettyRequestContent(buffer);
+    buffer.release();
+    ByteBuffer byteBuffer = content.asByteBuffer();
+    // Buffer handed out is a heap copy, pooled memory is given back at once
+    assertEquals(0, buffer.refCnt());
+    content.release();
+    assertEquals(4, byteBuffer.remaining());
+    assertEquals('k', byteBuffer.get(0));
+  }
+}
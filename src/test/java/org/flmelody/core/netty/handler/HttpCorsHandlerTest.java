@@ -0,0 +1,125 @@
+package org.flmelody.core.netty.handler;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.netty.CorsPolicy;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+
+/**
+ * @author esotericman
+ */
+public class HttpCorsHandlerTest {
+  private final HttpCorsHandler httpCorsHandler =
+      new HttpCorsHandler(
+          CorsPolicy.newBuilder()
+              .origins("https://a.example")
+              .allowedMethods(org.flmelody.core.HttpMethod.GET, org.flmelody.core.HttpMethod.PUT)
+              .allowedHeaders("Content-Type")
+              .maxAge(10, TimeUnit.MINUTES)
+              .build());
+
+  @Test
+  public void preflightTest() {
+    // Same handler on every channel
+    for (int i = 0; i < 2; i++) {
+      EmbeddedChannel channel = new EmbeddedChannel(httpCorsHandler);
+      channel.writeInbound(preflight("https://a.example"));
+      assertNull(channel.readInbound());
+      HttpResponse response = channel.readOutbound();
+      assertEquals(HttpResponseStatus.OK, response.status());
+      assertEquals(
+          "https://a.example",
+          response.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN));
+      assertEquals("GET,PUT", response.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS));
+      assertEquals(
+          "Content-Type", response.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_HEADERS));
+      assertEquals("600", response.headers().get(HttpHeaderNames.ACCESS_CONTROL_MAX_AGE));
+      channel.finishAndReleaseAll();
+    }
+    EmbeddedChannel channel = new EmbeddedChannel(httpCorsHandler);
+    channel.writeInbound(preflight("https://b.example"));
+    HttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.FORBIDDEN, response.status());
+    assertNull(response.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void responseTest() {
+    EmbeddedChannel channel = new EmbeddedChannel(httpCorsHandler);
+    assertEquals("https://a.example", allowOriginOf(channel, "https://a.example"));
+    assertNull(allowOriginOf(channel, "https://b.example"));
+    assertNull(allowOriginOf(channel, null));
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void pipeliningTest() {
+    EmbeddedChannel channel =
+        new EmbeddedChannel(
+            new HttpCorsHandler(
+                CorsPolicy.newBuilder().origins("https://a.example", "https://c.example").build()));
+    channel.writeInbound(request("https://a.example"), request("https://c.example"));
+    channel.writeInbound(preflight("https://a.example"));
+    ReferenceCountUtil.release(channel.readInbound());
+    ReferenceCountUtil.release(channel.readInbound());
+    assertNull(channel.readInbound());
+    // Preflight waits for responses of requests ahead of it
+    assertNull(channel.readOutbound());
+    channel.writeOutbound(
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    assertEquals("https://a.example", allowOriginOf(channel.readOutbound()));
+    assertNull(channel.readOutbound());
+    channel.writeOutbound(
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    // Every response keeps origin of its own request
+    assertEquals("https://c.example", allowOriginOf(channel.readOutbound()));
+    HttpResponse preflight = channel.readOutbound();
+    assertNotNull(preflight.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_METHODS));
+    assertEquals("https://a.example", allowOriginOf(preflight));
+    channel.finishAndReleaseAll();
+  }
+
+  private static String allowOriginOf(EmbeddedChannel channel, String origin) {
+    channel.writeInbound(request(origin));
+    ReferenceCountUtil.release(channel.readInbound());
+    channel.writeOutbound(
+        new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    return allowOriginOf(channel.readOutbound());
+  }
+
+  private static String allowOriginOf(HttpResponse response) {
+    ReferenceCountUtil.release(response);
+    return response.headers().get(HttpHeaderNames.ACCESS_CONTROL_ALLOW_ORIGIN);
+  }
+
+  private static FullHttpRequest request(String origin) {
+    FullHttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+    if (origin != null) {
+      request.headers().set(HttpHeaderNames.ORIGIN, origin);
+    }
+    return request;
+  }
+
+  private static FullHttpRequest preflight(String origin) {
+    FullHttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.OPTIONS, "/users");
+    request.headers().set(HttpHeaderNames.ORIGIN, origin);
+    request.headers().set(HttpHeaderNames.ACCESS_CONTROL_REQUEST_METHOD, "PUT");
+    return request;
+  }
+}
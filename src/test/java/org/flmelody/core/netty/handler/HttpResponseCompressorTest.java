@@ -0,0 +1,62 @@
+package org.flmelody.core.netty.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import java.util.EnumSet;
+import org.flmelody.core.MediaType;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNull;
+
+/**
+ * @author esotericman
+ */
+public class HttpResponseCompressorTest {
+
+  @Test
+  public void compressTest() {
+    assertEquals("gzip", encodingOf(MediaType.APPLICATION_JSON_VALUE, 2048));
+    // Too small to be worth it
+    assertNull(encodingOf(MediaType.APPLICATION_JSON_VALUE, 100));
+    // Already compressed
+    assertNull(encodingOf(MediaType.IMAGE_PNG_VALUE, 2048));
+    // Events would be held back
+    assertNull(encodingOf(MediaType.TEXT_EVENT_STREAM_VALUE, 2048));
+  }
+
+  private static String encodingOf(MediaType mediaType, int length) {
+    EmbeddedChannel channel =
+        new EmbeddedChannel(
+            new HttpResponseCompressor(
+                6,
+                1024,
+                EnumSet.of(MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE)));
+    FullHttpRequest request =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+    request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip, deflate");
+    channel.writeInbound(request);
+    ReferenceCountUtil.release(channel.readInbound());
+    FullHttpResponse response =
+        new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(new byte[length]));
+    response.headers().set(HttpHeaderNames.CONTENT_TYPE, mediaType.value);
+    response.headers().set(HttpHeaderNames.CONTENT_LENGTH, length);
+    channel.writeOutbound(response);
+    HttpResponse encoded = channel.readOutbound();
+    String encoding = encoded.headers().get(HttpHeaderNames.CONTENT_ENCODING);
+    ReferenceCountUtil.release(encoded);
+    channel.finishAndReleaseAll();
+    return encoding;
+  }
+}
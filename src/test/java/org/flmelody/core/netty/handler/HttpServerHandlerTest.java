@@ -0,0 +1,497 @@
+package org.flmelody.core.netty.handler;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpRequest;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.CharsetUtil;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.flmelody.core.ExecutionMode;
+import org.flmelody.core.RateLimitFilter;
+import org.flmelody.core.Windward;
+import org.flmelody.core.netty.ServerOptions;
+import org.flmelody.core.sse.SseEjector;
+import org.flmelody.core.sse.SseEventSource;
+import org.flmelody.core.support.HttpRequestHolder;
+import org.flmelody.support.AimdLimiter;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class HttpServerHandlerTest {
+  // Only requests with this header are limited, other tests share filters of Windward
+  private static final String RATE_CLIENT = "X-Rate-Client";
+
+  @Test
+  public void rateLimitTest() {
+    AtomicInteger handled = new AtomicInteger();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .registerFilter(
+            RateLimitFilter.newBuilder()
+                .tokenBucket(1, 0.001)
+                .clientKey(
+                    windwardContext -> {
+                      List<String> values =
+                          windwardContext.windwardRequest().getHeader(RATE_CLIENT);
+                      return values.isEmpty() ? null : values.get(0);
+                    })
+                .build())
+        .get(
+            "/handler/limited",
+            windwardContext -> {
+              handled.incrementAndGet();
+              windwardContext.writeString("ok");
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    FullHttpRequest request = newRequest("/handler/limited");
+    request.headers().set(RATE_CLIENT, "a");
+    channel.writeInbound(request.retainedDuplicate());
+    assertResponse(channel, HttpResponseStatus.OK, "ok");
+    channel.writeInbound(request);
+    assertResponse(channel, HttpResponseStatus.TOO_MANY_REQUESTS, "Too Many Requests");
+    // Handler never ran for rejected request
+    assertEquals(1, handled.get());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void sseOnWorkerPoolTest() throws InterruptedException {
+    AtomicReference<SseEjector> ejector = new AtomicReference<>();
+    AtomicReference<String> thread = new AtomicReference<>();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .executeOn(ExecutionMode.WORKER_POOL)
+        .sse(
+            "/handler/sse",
+            sseWindwardContext -> {
+              thread.set(Thread.currentThread().getName());
+              SseEjector sseEjector = new SseEjector(sseWindwardContext);
+              sseEjector.send(SseEventSource.builder().data("hello"));
+              ejector.set(sseEjector);
+              return sseEjector.keepAlive(60L);
+            });
+    EmbeddedChannel channel =
+        new EmbeddedChannel(
+            new ChunkedWriteHandler(), new HttpServerHandler(), new HttpEventHandler());
+    long completed = workerPool().getCompletedTaskCount();
+    channel.writeInbound(newRequest("/handler/sse"));
+    awaitWorkers(completed + 1);
+    assertTrue(thread.get().startsWith("windward-worker-"));
+    assertTrue(channel.<Object>readOutbound() instanceof DefaultHttpResponse);
+    channel.releaseOutbound();
+    assertNotNull(channel.attr(HttpEventHandler.DELAY_CONTEXT).get());
+    // Completed neither on worker nor on event loop, context is still found and destroyed
+    ejector.get().complete();
+    channel.runPendingTasks();
+    assertNull(channel.attr(HttpEventHandler.DELAY_CONTEXT).get());
+    // Keep-alive connection waits for next request
+    assertTrue(channel.isOpen());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void virtualThreadFallbackTest() throws InterruptedException {
+    AtomicReference<String> thread = new AtomicReference<>();
+    AtomicReference<Boolean> held = new AtomicReference<>();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .executeOn(ExecutionMode.VIRTUAL_THREAD)
+        .get(
+            "/handler/virtual",
+            windwardContext -> {
+              thread.set(Thread.currentThread().getName());
+              held.set(HttpRequestHolder.getContext() == windwardContext);
+              windwardContext.writeString("virtual");
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    long completed = workerPool().getCompletedTaskCount();
+    channel.writeInbound(newRequest("/handler/virtual"));
+    // Base class of VirtualThreads is tested, handler falls back to worker pool
+    awaitWorkers(completed + 1);
+    channel.runPendingTasks();
+    assertTrue(thread.get().startsWith("windward-worker-"));
+    assertResponse(channel, HttpResponseStatus.OK, "virtual");
+    assertTrue(held.get());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void requestHolderTest() throws Exception {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Windward.setup(ServerOptions.newBuilder().build())
+          .executeOn(executor)
+          .get(
+              "/handler/holder",
+              windwardContext -> {
+                windwardContext.writeString(
+                    String.valueOf(HttpRequestHolder.getContext() == windwardContext));
+              });
+      EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+      channel.writeInbound(newRequest("/handler/holder"));
+      // Tasks of executor run in order, context is reset once handler returns
+      assertNull(executor.submit(HttpRequestHolder::getContext).get(5, TimeUnit.SECONDS));
+      channel.runPendingTasks();
+      assertResponse(channel, HttpResponseStatus.OK, "true");
+      channel.finishAndReleaseAll();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void pipeliningTest() throws InterruptedException {
+    Windward.setup(ServerOptions.newBuilder().build())
+        .executeOn(ExecutionMode.WORKER_POOL)
+        .get(
+            "/handler/slow",
+            windwardContext -> {
+              try {
+                Thread.sleep(50);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              windwardContext.writeString("slow");
+            });
+    Windward.setup(ServerOptions.newBuilder().build())
+        .get(
+            "/handler/fast",
+            windwardContext -> {
+              windwardContext.writeString("fast");
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    long completed = workerPool().getCompletedTaskCount();
+    channel.writeInbound(newRequest("/handler/slow"), newRequest("/handler/fast"));
+    // Second request waits for first one handled by worker
+    assertNull(channel.readOutbound());
+    assertFalse(channel.config().isAutoRead());
+    awaitWorkers(completed + 1);
+    channel.runPendingTasks();
+    assertResponse(channel, HttpResponseStatus.OK, "slow");
+    assertResponse(channel, HttpResponseStatus.OK, "fast");
+    assertTrue(channel.config().isAutoRead());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void unauthorizedUpgradeTest() {
+    AimdLimiter limiter = AimdLimiter.newBuilder().initialLimit(1).limits(1, 1).build();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .concurrencyLimit(limiter)
+        .ws("/handler/ws", windwardContext -> {}, windwardContext -> false);
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    FullHttpRequest request = newRequest("/handler/ws");
+    request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.UPGRADE);
+    request.headers().set(HttpHeaderNames.UPGRADE, HttpHeaderValues.WEBSOCKET);
+    request.content().writeCharSequence("hello", CharsetUtil.UTF_8);
+    channel.writeInbound(request);
+    assertFalse(channel.isOpen());
+    // Slot of limit and content of request are both given back
+    assertEquals(0, limiter.getInFlight());
+    assertEquals(0, request.refCnt());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void websocketWithoutUpgradeTest() {
+    Windward.setup(ServerOptions.newBuilder().build())
+        .ws("/handler/plain-ws", windwardContext -> {})
+        .post(
+            "/handler/echo",
+            windwardContext -> {
+              windwardContext.writeString(windwardContext.windwardRequest().getRequestBody());
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    FullHttpRequest request = newRequest("/handler/plain-ws");
+    request.content().writeCharSequence("ignored", CharsetUtil.UTF_8);
+    channel.writeInbound(request);
+    channel.releaseOutbound();
+    assertEquals(0, request.refCnt());
+    // Next request on connection gets its own context and content
+    FullHttpRequest echo =
+        new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/handler/echo");
+    echo.content().writeCharSequence("echo", CharsetUtil.UTF_8);
+    channel.writeInbound(echo);
+    assertResponse(channel, HttpResponseStatus.OK, "echo");
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void streamBodyTest() throws Exception {
+    // Embedded channel is always on its event loop, body is read once it has arrived
+    CountDownLatch arrived = new CountDownLatch(1);
+    Windward.setup(ServerOptions.newBuilder().build())
+        .streamBody(true)
+        .post(
+            "/handler/stream",
+            windwardContext -> {
+              try {
+                arrived.await();
+                byte[] body = readAll(windwardContext.windwardRequest().getBodyStream());
+                windwardContext.writeString(new String(body, CharsetUtil.UTF_8));
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            })
+        .post(
+            "/handler/stream-ignored",
+            windwardContext -> {
+              windwardContext.writeString("ignored");
+            });
+    EmbeddedChannel channel =
+        new EmbeddedChannel(new HttpBodyAggregator(1024), new HttpServerHandler());
+    long completed = workerPool().getCompletedTaskCount();
+    channel.writeInbound(streamingRequest("/handler/stream"));
+    // Body passes aggregator, larger than its limit
+    for (int i = 0; i < 4; i++) {
+      channel.writeInbound(new DefaultHttpContent(Unpooled.copiedBuffer(chunk(512, 'a'))));
+    }
+    channel.writeInbound(new DefaultLastHttpContent(Unpooled.copiedBuffer(chunk(1, 'b'))));
+    arrived.countDown();
+    awaitWorkers(completed + 1);
+    channel.runPendingTasks();
+    assertResponse(channel, HttpResponseStatus.OK, repeat('a', 2048) + "b");
+    // Handler returned without reading body, rest of it is discarded while reading goes on
+    channel.writeInbound(streamingRequest("/handler/stream-ignored"));
+    awaitWorkers(completed + 2);
+    channel.runPendingTasks();
+    assertResponse(channel, HttpResponseStatus.OK, "ignored");
+    for (int i = 0; i < 160; i++) {
+      channel.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk(512, 'c'))));
+    }
+    channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT);
+    assertTrue(channel.config().isAutoRead());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void streamBodyPipeliningTest() throws Exception {
+    CountDownLatch arrived = new CountDownLatch(1);
+    CountDownLatch drained = new CountDownLatch(1);
+    CountDownLatch respond = new CountDownLatch(1);
+    Windward.setup(ServerOptions.newBuilder().build())
+        .streamBody(true)
+        .post(
+            "/handler/stream-pipelined",
+            windwardContext -> {
+              try {
+                arrived.await();
+                int length = readAll(windwardContext.windwardRequest().getBodyStream()).length;
+                drained.countDown();
+                respond.await();
+                windwardContext.writeString(String.valueOf(length));
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+    Windward.setup(ServerOptions.newBuilder().build())
+        .get(
+            "/handler/after-stream",
+            windwardContext -> {
+              windwardContext.writeString("after");
+            });
+    EmbeddedChannel channel =
+        new EmbeddedChannel(new HttpBodyAggregator(1024), new HttpServerHandler());
+    long completed = workerPool().getCompletedTaskCount();
+    channel.writeInbound(streamingRequest("/handler/stream-pipelined"));
+    // Body beyond its high water mark pauses reading
+    for (int i = 0; i < 160; i++) {
+      channel.writeInbound(new DefaultHttpContent(Unpooled.wrappedBuffer(chunk(512, 'a'))));
+    }
+    assertFalse(channel.config().isAutoRead());
+    channel.writeInbound(LastHttpContent.EMPTY_LAST_CONTENT, newRequest("/handler/after-stream"));
+    arrived.countDown();
+    assertTrue(drained.await(5, TimeUnit.SECONDS));
+    // Drained body doesn't resume reading while pipelined request still waits
+    channel.runPendingTasks();
+    assertFalse(channel.config().isAutoRead());
+    assertNull(channel.readOutbound());
+    respond.countDown();
+    awaitWorkers(completed + 1);
+    channel.runPendingTasks();
+    assertResponse(channel, HttpResponseStatus.OK, String.valueOf(160 * 512));
+    assertResponse(channel, HttpResponseStatus.OK, "after");
+    assertTrue(channel.config().isAutoRead());
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void routerLimitTest() {
+    AimdLimiter limiter = AimdLimiter.newBuilder().initialLimit(1).limits(1, 1).build();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .concurrencyLimit(limiter)
+        .get(
+            "/handler/router-limited",
+            windwardContext -> {
+              windwardContext.writeString("ok");
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    channel.writeInbound(newRequest("/handler/router-limited"));
+    assertResponse(channel, HttpResponseStatus.OK, "ok");
+    assertEquals(1, limiter.getAcceptedCount());
+    assertEquals(0, limiter.getInFlight());
+    // Slot held elsewhere saturates limit of router
+    assertTrue(limiter.tryAcquire());
+    channel.writeInbound(newRequest("/handler/router-limited"));
+    FullHttpResponse response = channel.readOutbound();
+    assertEquals(HttpResponseStatus.SERVICE_UNAVAILABLE, response.status());
+    assertEquals("1", response.headers().get(HttpHeaderNames.RETRY_AFTER));
+    response.release();
+    assertEquals(1, limiter.getRejectionCount());
+    limiter.cancel();
+    channel.finishAndReleaseAll();
+  }
+
+  @Test
+  public void limitExemptTest() {
+    AimdLimiter serverLimiter = AimdLimiter.newBuilder().initialLimit(1).limits(1, 1).build();
+    Windward windward = Windward.setup(ServerOptions.newBuilder().build());
+    windward
+        .group("/handler/exempt")
+        .limitExempt(true)
+        .get(
+            "/health",
+            windwardContext -> {
+              windwardContext.writeString("up");
+            })
+        .end()
+        .get(
+            "/handler/not-exempt",
+            windwardContext -> {
+              windwardContext.writeString("ok");
+            });
+    assertTrue(serverLimiter.tryAcquire());
+    windward.withConcurrencyLimit(serverLimiter);
+    try {
+      EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+      // Limit of server is saturated, only exempt router is still served
+      channel.writeInbound(newRequest("/handler/exempt/health"));
+      assertResponse(channel, HttpResponseStatus.OK, "up");
+      channel.writeInbound(newRequest("/handler/not-exempt"));
+      assertResponse(
+          channel,
+          HttpResponseStatus.SERVICE_UNAVAILABLE,
+          HttpResponseStatus.SERVICE_UNAVAILABLE.reasonPhrase());
+      assertEquals(1, serverLimiter.getInFlight());
+      channel.finishAndReleaseAll();
+    } finally {
+      windward.withConcurrencyLimit(null);
+    }
+  }
+
+  @Test
+  public void rejectedExecutionTest() {
+    AimdLimiter limiter = AimdLimiter.newBuilder().initialLimit(1).limits(1, 1).build();
+    Windward.setup(ServerOptions.newBuilder().build())
+        .concurrencyLimit(limiter)
+        .executeOn(
+            command -> {
+              throw new RejectedExecutionException();
+            })
+        .get(
+            "/handler/rejected",
+            windwardContext -> {
+              windwardContext.writeString("never");
+            });
+    EmbeddedChannel channel = new EmbeddedChannel(new HttpServerHandler());
+    channel.writeInbound(newRequest("/handler/rejected"));
+    assertResponse(
+        channel,
+        HttpResponseStatus.SERVICE_UNAVAILABLE,
+        HttpResponseStatus.SERVICE_UNAVAILABLE.reasonPhrase());
+    // Slot is given back, next request is admitted again
+    assertEquals(0, limiter.getInFlight());
+    assertTrue(limiter.tryAcquire());
+    limiter.cancel();
+    channel.finishAndReleaseAll();
+  }
+
+  static HttpRequest streamingRequest(String uri) {
+    HttpRequest request = new DefaultHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, uri);
+    HttpUtil.setTransferEncodingChunked(request, true);
+    return request;
+  }
+
+  static byte[] chunk(int length, char c) {
+    return repeat(c, length).getBytes(CharsetUtil.UTF_8);
+  }
+
+  static String repeat(char c, int count) {
+    StringBuilder stringBuilder = new StringBuilder(count);
+    for (int i = 0; i < count; i++) {
+      stringBuilder.append(c);
+    }
+    return stringBuilder.toString();
+  }
+
+  static byte[] readAll(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    int b;
+    while ((b = inputStream.read()) >= 0) {
+      out.write(b);
+    }
+    return out.toByteArray();
+  }
+
+  static ThreadPoolExecutor workerPool() {
+    return (ThreadPoolExecutor) Windward.workerPool();
+  }
+
+  // Waits until worker pool has completed given number of tasks in total
+  static void awaitWorkers(long completed) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (workerPool().getCompletedTaskCount() < completed) {
+      assertTrue("Worker pool is stuck", System.nanoTime() < deadline);
+      Thread.sleep(1);
+    }
+  }
+
+  static FullHttpRequest newRequest(String uri) {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+  }
+
+  static void assertResponse(EmbeddedChannel channel, HttpResponseStatus status, String content) {
+    FullHttpResponse response = channel.readOutbound();
+    try {
+      assertEquals(status, response.status());
+      assertEquals(content, response.content().toString(CharsetUtil.UTF_8));
+    } finally {
+      response.release();
+    }
+  }
+}
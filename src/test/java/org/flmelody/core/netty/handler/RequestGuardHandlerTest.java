@@ -0,0 +1,66 @@
+package org.flmelody.core.netty.handler;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+import java.util.concurrent.TimeUnit;
+import org.flmelody.core.netty.ConnectionStats;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class RequestGuardHandlerTest {
+
+  @Test
+  public void requestHeaderTimeoutTest() {
+    ConnectionStats connectionStats = new ConnectionStats();
+    EmbeddedChannel channel = new EmbeddedChannel();
+    channel.freezeTime();
+    channel.pipeline().addLast(new RequestGuardHandler(connectionStats, 1000, 0));
+    channel.writeInbound(newRequest());
+    ReferenceCountUtil.release(channel.readInbound());
+    // Handler may take its time
+    channel.advanceTimeBy(2, TimeUnit.SECONDS);
+    channel.runScheduledPendingTasks();
+    assertTrue(channel.isOpen());
+    channel.writeOutbound(new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK));
+    ReferenceCountUtil.release(channel.readOutbound());
+    // Next request never comes
+    channel.advanceTimeBy(2, TimeUnit.SECONDS);
+    channel.runScheduledPendingTasks();
+    assertFalse(channel.isOpen());
+    assertEquals(1, connectionStats.getRequestHeaderTimeoutCount());
+  }
+
+  @Test
+  public void maxRequestsTest() {
+    ConnectionStats connectionStats = new ConnectionStats();
+    EmbeddedChannel channel =
+        new EmbeddedChannel(new RequestGuardHandler(connectionStats, 0, 2));
+    channel.writeInbound(newRequest());
+    FullHttpRequest first = channel.readInbound();
+    assertTrue(HttpUtil.isKeepAlive(first));
+    channel.writeInbound(newRequest());
+    FullHttpRequest second = channel.readInbound();
+    assertFalse(HttpUtil.isKeepAlive(second));
+    assertEquals(1, connectionStats.getMaxRequestsReachedCount());
+    first.release();
+    second.release();
+    channel.finishAndReleaseAll();
+  }
+
+  private static FullHttpRequest newRequest() {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, "/");
+  }
+}
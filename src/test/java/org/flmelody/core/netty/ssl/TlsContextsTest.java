@@ -0,0 +1,72 @@
+package org.flmelody.core.netty.ssl;
+
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertSame;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class TlsContextsTest {
+
+  @Test
+  public void reloadTest() throws Exception {
+    SelfSignedCertificate first = new SelfSignedCertificate("localhost");
+    SelfSignedCertificate second = new SelfSignedCertificate("localhost");
+    SelfSignedCertificate api = new SelfSignedCertificate("api.example.com");
+    File certFile = File.createTempFile("cert", ".pem");
+    File keyFile = File.createTempFile("key", ".pem");
+    try {
+      copy(first, certFile, keyFile, 0);
+      TlsContexts tlsContexts =
+          new TlsContexts(
+              TlsOptions.newBuilder()
+                  .certificate(certFile, keyFile)
+                  .certificate("*.example.com", api.certificate(), api.privateKey())
+                  .build(),
+              false);
+      SslContext defaultContext = tlsContexts.map(null);
+      assertSame(defaultContext, tlsContexts.map("unknown.org"));
+      assertNotSame(defaultContext, tlsContexts.map("api.example.com"));
+      assertFalse(tlsContexts.reloadIfModified());
+      // Rotated certificate is swapped in
+      copy(second, certFile, keyFile, 10_000);
+      assertTrue(tlsContexts.reloadIfModified());
+      assertNotSame(defaultContext, tlsContexts.map(null));
+      assertEquals(1, tlsContexts.getReloadCount());
+      // Broken one is not
+      defaultContext = tlsContexts.map(null);
+      Files.write(certFile.toPath(), "broken".getBytes(StandardCharsets.US_ASCII));
+      assertFalse(tlsContexts.reloadIfModified());
+      assertSame(defaultContext, tlsContexts.map(null));
+    } finally {
+      first.delete();
+      second.delete();
+      api.delete();
+      certFile.delete();
+      keyFile.delete();
+    }
+  }
+
+  private static void copy(
+      SelfSignedCertificate certificate, File certFile, File keyFile, long ahead)
+      throws Exception {
+    Files.copy(
+        certificate.certificate().toPath(), certFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.copy(
+        certificate.privateKey().toPath(), keyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    // Modification time may be too coarse to tell copies apart
+    certFile.setLastModified(certFile.lastModified() + ahead);
+    keyFile.setLastModified(keyFile.lastModified() + ahead);
+  }
+}
@@ -0,0 +1,123 @@
+package org.flmelody.core.plugin.json;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+
+/**
+ * @author esotericman
+ */
+public class JsonPluginTest {
+
+  @Test
+  public void writeJsonTest() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("name", "windward 风");
+    data.put("port", 8080);
+    for (JsonPlugin plugin : new JsonPlugin[] {new JacksonPlugin(), new GsonPlugin()}) {
+      assertEquals(plugin.toJson(data), write(plugin, data));
+      // String which is json already is written as it is
+      assertEquals("{\"a\":1}", write(plugin, "{\"a\":1}"));
+      assertEquals("\"plain\"", write(plugin, "plain"));
+    }
+  }
+
+  @Test
+  public void stringPolicyTest() {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("raw", RawJson.of("{\"a\":[1,2]}"));
+    for (JsonStringPolicy policy : JsonStringPolicy.values()) {
+      JsonPlugin[] plugins = {new JacksonPlugin(policy), new GsonPlugin(policy)};
+      for (JsonPlugin plugin : plugins) {
+        // Raw json is written as it is whatever the policy is
+        assertEquals("[1, 2]", write(plugin, RawJson.of("[1, 2]")));
+        byte[] bytes = "[1, 2]".getBytes(StandardCharsets.UTF_8);
+        assertEquals("[1, 2]", plugin.toJson(RawJson.of(bytes)));
+        assertEquals("{\"raw\":{\"a\":[1,2]}}", write(plugin, data));
+        String plain = policy == JsonStringPolicy.RAW ? "plain" : "\"plain\"";
+        assertEquals(plain, write(plugin, "plain"));
+        String json = policy == JsonStringPolicy.VALUE ? "\"{\\\"a\\\":1}\"" : "{\"a\":1}";
+        assertEquals(json, write(plugin, "{\"a\":1}"));
+        assertEquals(json, plugin.toJson("{\"a\":1}"));
+      }
+    }
+    // Strings are not checked at all
+    assertEquals("not json", write(new JacksonPlugin(JsonStringPolicy.RAW), "not json"));
+    assertEquals("not json", new GsonPlugin(JsonStringPolicy.RAW).toJson("not json"));
+  }
+
+  @Test
+  public void cachedTypesTest() throws Exception {
+    Type listOfItems = JsonPluginTest.class.getDeclaredField("items").getGenericType();
+    JsonPlugin[] plugins = {
+      new JacksonPlugin(), new JacksonPlugin(JsonStringPolicy.DETECT, false)
+    };
+    for (JsonPlugin plugin : plugins) {
+      plugin.prepare(Arrays.asList(Item.class, SubItem.class, Object.class, Runnable.class));
+      // Writers of prepared and runtime types serialize subclasses entirely
+      for (int i = 0; i < 2; i++) {
+        assertEquals("{\"name\":\"a\"}", plugin.toJson(new Item("a")));
+        assertEquals("{\"name\":\"b\",\"size\":1}", write(plugin, new SubItem("b", 1)));
+        assertEquals("null", plugin.toJson(null));
+        assertEquals(
+            "{\"x\":{\"name\":\"b\",\"size\":1}}",
+            plugin.toJson(Collections.singletonMap("x", new SubItem("b", 1))));
+      }
+      // Readers keep generic types apart
+      String json = "[{\"name\":\"a\"},{\"name\":\"b\"}]";
+      for (int i = 0; i < 2; i++) {
+        List<Item> read = plugin.toObject(json, listOfItems);
+        assertEquals("b", read.get(1).name);
+        read =
+            plugin.toObject(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), listOfItems);
+        assertEquals("a", read.get(0).name);
+        List<?> raw = plugin.toObject(json, List.class);
+        assertEquals(LinkedHashMap.class, raw.get(0).getClass());
+      }
+    }
+  }
+
+  @SuppressWarnings("unused")
+  private List<Item> items;
+
+  public static class Item {
+    public String name;
+
+    public Item() {}
+
+    Item(String name) {
+      this.name = name;
+    }
+  }
+
+  public static class SubItem extends Item {
+    public int size;
+
+    SubItem(String name, int size) {
+      super(name);
+      this.size = size;
+    }
+  }
+
+  private static String write(JsonPlugin plugin, Object data) {
+    ByteBuf buffer = PooledByteBufAllocator.DEFAULT.buffer();
+    try {
+      plugin.writeJson(data, new ByteBufOutputStream(buffer));
+      return buffer.toString(StandardCharsets.UTF_8);
+    } finally {
+      buffer.release();
+    }
+  }
+}
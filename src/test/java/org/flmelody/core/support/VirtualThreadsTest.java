@@ -0,0 +1,53 @@
+package org.flmelody.core.support;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class VirtualThreadsTest {
+  private static final File CLASSES = new File("target/classes");
+  private static final File VERSIONED_CLASSES = new File(CLASSES, "META-INF/versions/21");
+
+  @Test
+  public void baseTest() {
+    // Classes directory isn't a multi-release jar, base class is used on any runtime
+    assertFalse(VirtualThreads.isAvailable());
+    assertNull(VirtualThreads.executor());
+  }
+
+  @Test
+  public void versionedTest() throws Exception {
+    // Only built by profile java21
+    Assume.assumeTrue(VERSIONED_CLASSES.isDirectory());
+    try (URLClassLoader classLoader =
+        new URLClassLoader(
+            new URL[] {VERSIONED_CLASSES.toURI().toURL(), CLASSES.toURI().toURL()}, null)) {
+      Class<?> versioned = classLoader.loadClass(VirtualThreads.class.getName());
+      assertTrue((Boolean) versioned.getMethod("isAvailable").invoke(null));
+      Executor executor = (Executor) versioned.getMethod("executor").invoke(null);
+      AtomicReference<Thread> thread = new AtomicReference<>();
+      CountDownLatch ran = new CountDownLatch(1);
+      executor.execute(
+          () -> {
+            thread.set(Thread.currentThread());
+            ran.countDown();
+          });
+      assertTrue(ran.await(5, TimeUnit.SECONDS));
+      assertTrue(thread.get().getName().startsWith("windward-virtual-"));
+      assertTrue((Boolean) Thread.class.getMethod("isVirtual").invoke(thread.get()));
+    }
+  }
+}
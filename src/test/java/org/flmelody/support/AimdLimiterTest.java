@@ -0,0 +1,42 @@
+package org.flmelody.support;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class AimdLimiterTest {
+
+  @Test
+  public void limitTest() {
+    AimdLimiter limiter =
+        AimdLimiter.newBuilder()
+            .initialLimit(2)
+            .limits(1, 3)
+            .latencyThreshold(100, TimeUnit.MILLISECONDS)
+            .backoffRatio(0.5)
+            .build();
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+    assertEquals(1, limiter.getRejectionCount());
+    // Fast and busy, limit grows
+    limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+    assertEquals(3, limiter.getLimit());
+    limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+    assertEquals(3, limiter.getLimit());
+    assertEquals(0, limiter.getInFlight());
+    // Slow, limit shrinks but never below minimum
+    assertTrue(limiter.tryAcquire());
+    limiter.release(TimeUnit.MILLISECONDS.toNanos(200), false);
+    assertEquals(1, limiter.getLimit());
+    assertTrue(limiter.tryAcquire());
+    limiter.release(0, true);
+    assertEquals(1, limiter.getLimit());
+  }
+}
@@ -0,0 +1,77 @@
+package org.flmelody.support;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertTrue;
+
+/**
+ * @author esotericman
+ */
+public class RateLimiterTest {
+
+  @Test
+  public void tokenBucketTest() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter rateLimiter =
+        RateLimiter.tokenBucket(3, 10, 100, TimeUnit.MILLISECONDS, clock::get);
+    assertTrue(rateLimiter.tryAcquire("a"));
+    assertTrue(rateLimiter.tryAcquire("a"));
+    assertTrue(rateLimiter.tryAcquire("a"));
+    assertFalse(rateLimiter.tryAcquire("a"));
+    // Other keys have their own bucket
+    assertTrue(rateLimiter.tryAcquire("b"));
+    assertEquals(1, rateLimiter.getRejectionCount());
+    // One token is back
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+    assertTrue(rateLimiter.tryAcquire("a"));
+    assertFalse(rateLimiter.tryAcquire("a"));
+    // Full again, and idle long enough to be evicted
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    assertTrue(rateLimiter.tryAcquire("c"));
+    assertEquals(1, rateLimiter.size());
+    assertEquals(2, rateLimiter.getEvictionCount());
+    assertTrue(rateLimiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void slidingWindowTest() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter rateLimiter = RateLimiter.slidingWindow(5, 200, TimeUnit.MILLISECONDS, clock::get);
+    for (int i = 0; i < 5; i++) {
+      assertTrue(rateLimiter.tryAcquire("a"));
+    }
+    assertFalse(rateLimiter.tryAcquire("a"));
+    // Half of previous window still counts
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(300));
+    for (int i = 0; i < 3; i++) {
+      assertTrue(rateLimiter.tryAcquire("a"));
+    }
+    assertFalse(rateLimiter.tryAcquire("a"));
+    // Both windows have passed
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(450));
+    assertTrue(rateLimiter.tryAcquire("a"));
+  }
+
+  @Test
+  public void incrementalEvictionTest() {
+    AtomicLong clock = new AtomicLong();
+    RateLimiter rateLimiter =
+        RateLimiter.tokenBucket(1, 10, 100, TimeUnit.MILLISECONDS, clock::get);
+    for (int i = 0; i < 200; i++) {
+      assertTrue(rateLimiter.tryAcquire("key-" + i));
+    }
+    clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+    // Every call sweeps a batch of keys only
+    rateLimiter.tryAcquire("key-0");
+    assertTrue(rateLimiter.getEvictionCount() < 200);
+    for (int i = 0; i < 10; i++) {
+      rateLimiter.tryAcquire("key-0");
+    }
+    assertTrue(rateLimiter.getEvictionCount() >= 199);
+    assertTrue(rateLimiter.size() <= 2);
+  }
+}
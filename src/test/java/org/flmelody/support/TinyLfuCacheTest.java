@@ -0,0 +1,80 @@
+package org.flmelody.support;
+
+import org.junit.Test;
+
+import static junit.framework.TestCase.assertEquals;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNull;
+
+/**
+ * @author esotericman
+ */
+public class TinyLfuCacheTest {
+
+  @Test
+  public void boundedTest() {
+    TinyLfuCache<String, String> cache = new TinyLfuCache<>(16);
+    for (int i = 0; i < 1000; i++) {
+      String key = "/random/" + i;
+      if (cache.get(key) == null) {
+        cache.put(key, key);
+      }
+    }
+    assertEquals(16, cache.size());
+    assertEquals(1000, cache.getMissCount());
+  }
+
+  @Test
+  public void admissionTest() {
+    TinyLfuCache<String, String> cache = new TinyLfuCache<>(4);
+    for (int i = 0; i < 4; i++) {
+      cache.put("/hot/" + i, "hot");
+      cache.get("/hot/" + i);
+      cache.get("/hot/" + i);
+    }
+    // Keys seen only once can't replace popular ones
+    for (int i = 0; i < 100; i++) {
+      cache.get("/cold/" + i);
+      cache.put("/cold/" + i, "cold");
+    }
+    for (int i = 0; i < 4; i++) {
+      assertNotNull(cache.get("/hot/" + i));
+    }
+    assertNull(cache.get("/cold/0"));
+    assertEquals(0, cache.getEvictionCount());
+    // A key requested often enough is admitted
+    for (int i = 0; i < 5; i++) {
+      cache.get("/warm");
+    }
+    cache.put("/warm", "warm");
+    assertNotNull(cache.get("/warm"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+
+  @Test
+  public void concurrentReadTest() throws Exception {
+    TinyLfuCache<String, String> cache = new TinyLfuCache<>(4);
+    for (int i = 0; i < 4; i++) {
+      cache.put("/cold/" + i, "cold");
+    }
+    // Reads of many threads overflow their buffers, they are counted without any lock
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 1000; i++) {
+                  cache.get("/hot");
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(4000, cache.getMissCount());
+    cache.put("/hot", "hot");
+    assertNotNull(cache.get("/hot"));
+    assertEquals(1, cache.getEvictionCount());
+  }
+}
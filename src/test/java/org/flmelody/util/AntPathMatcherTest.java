@@ -22,5 +22,32 @@ public class AntPathMatcherTest {
     Assert.assertTrue(antPathMatcher.isMatch("/api/**.js", "/api/test/a.js"));
 
     Assert.assertFalse(antPathMatcher.isMatch("/static/**.js", "/api/test/a.js"));
+    // Cached patterns keep options of their matcher
+    for (int i = 0; i < 3; i++) {
+      Assert.assertTrue(antPathMatcher.isMatch("/API/**", "/api/test"));
+      Assert.assertFalse(AntPathMatcher.newBuild().build().isMatch("/API/**", "/api/test"));
+    }
+  }
+
+  @Test
+  public void compiledTest() {
+    AntPathMatcher antPathMatcher = AntPathMatcher.newBuild().build();
+    AntPathMatcher.CompiledPattern compiledPattern = antPathMatcher.compile("/static/**");
+    Assert.assertTrue(compiledPattern.isMatch("/static/css/a.css"));
+    Assert.assertTrue(compiledPattern.isMatch("/static"));
+    Assert.assertFalse(compiledPattern.isMatch("/api/static/a.css"));
+    // Only region of path is matched
+    Assert.assertTrue(compiledPattern.isMatch("/api/static/a.css", 4, 17));
+    Assert.assertFalse(antPathMatcher.compile("/*").isMatch("/api/test"));
+    Assert.assertTrue(antPathMatcher.compile("/*/test").isMatch("/api/v1/test"));
+    Assert.assertTrue(antPathMatcher.compile("/a?c").isMatch("/a/c"));
+    Assert.assertTrue(
+        AntPathMatcher.newBuild().withIgnoreCase().build().compile("/API/**").isMatch("/api/a"));
+    // Long paths are matched in linear time
+    StringBuilder path = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      path.append("/a");
+    }
+    Assert.assertFalse(antPathMatcher.compile("/**/**/**/**/**/**/b").isMatch(path));
   }
 }